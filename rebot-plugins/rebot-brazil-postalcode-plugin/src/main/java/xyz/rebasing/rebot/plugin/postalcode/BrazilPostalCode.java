@@ -25,6 +25,7 @@ package xyz.rebasing.rebot.plugin.postalcode;
 
 import java.lang.invoke.MethodHandles;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
@@ -34,14 +35,19 @@ import xyz.rebasing.rebot.api.conf.BotConfig;
 import xyz.rebasing.rebot.api.domain.MessageUpdate;
 import xyz.rebasing.rebot.api.i18n.I18nHelper;
 import xyz.rebasing.rebot.api.spi.CommandProvider;
+import xyz.rebasing.rebot.api.spi.options.CommandOptions;
+import xyz.rebasing.rebot.api.spi.options.ParsedOptions;
 import xyz.rebasing.rebot.plugin.postalcode.utils.BrazilPostalCodeUtils;
 
 @ApplicationScoped
 public class BrazilPostalCode implements CommandProvider {
 
     private final Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
-    private Long DEFAULT_RESULT_LIMIT = 2L;
-    private boolean RETURN_ONLY_UF = false;
+    // -limit=<results>, -uf
+    private static final CommandOptions OPTIONS = CommandOptions.builder()
+            .integer("limit", 2, 0)
+            .flag("uf")
+            .build();
 
     @Inject
     BotConfig config;
@@ -59,32 +65,27 @@ public class BrazilPostalCode implements CommandProvider {
 
     @Override
     public Object execute(Optional<String> key, MessageUpdate messageUpdate, String locale) {
-        long limitResult = DEFAULT_RESULT_LIMIT;
-        boolean returnOnlyUf = RETURN_ONLY_UF;
-        String query = key.get();
-        for (String str : key.get().split(" ")) {
-            if (str.contains("-limit=")) {
-                try {
-                    limitResult = Long.parseLong(str.split("=")[1]);
-                    log.debugv("Result limit is {0}", limitResult);
-                } catch (final Exception e) {
-                    log.warnv("Failed to parse {0}, error message: {1}", str.split("="), e.getMessage());
-                    log.warnv("Defaulting to {0}", limitResult);
-                }
-                query = key.get().replace(str, "");
-            }
-            if (str.contains("-uf")) {
-                returnOnlyUf = true;
-                limitResult = 1;
-                query = key.get().replace(str, "");
-            }
+        ParsedOptions options = OPTIONS.parse(key.get());
+        if (options.hasError()) {
+            return options.error(locale);
         }
+        // only the first result is needed to get the UF
+        boolean returnOnlyUf = options.flag("uf");
+        long limitResult = returnOnlyUf ? 1 : options.integer("limit");
+        String query = options.text();
+        log.debugv("Result limit is {0}", limitResult);
 
         return key.get().length() > 0 ? service.query(query, limitResult, returnOnlyUf, locale) :
                 String.format(I18nHelper.resource("PostalCodeMessages",
                                                   locale, "usage"), this.name());
     }
 
+    @Override
+    public long cacheTtl(String key) {
+        // the postal codes are loaded once
+        return TimeUnit.HOURS.toSeconds(1);
+    }
+
     @Override
     public String name() {
         return "/ddd";
@@ -25,6 +25,10 @@ package xyz.rebasing.rebot.plugin.chucknorris;
 
 import java.lang.invoke.MethodHandles;
 import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.regex.Pattern;
 
 import javax.enterprise.context.ApplicationScoped;
@@ -34,6 +38,7 @@ import org.jboss.logging.Logger;
 import xyz.rebasing.rebot.api.conf.BotConfig;
 import xyz.rebasing.rebot.api.domain.MessageUpdate;
 import xyz.rebasing.rebot.api.spi.PluginProvider;
+import xyz.rebasing.rebot.api.spi.PluginTrigger;
 import xyz.rebasing.rebot.plugin.chucknorris.helper.ChuckHelper;
 import xyz.rebasing.rebot.service.persistence.domain.Fact;
 import xyz.rebasing.rebot.service.persistence.repository.ChuckRepository;
@@ -50,8 +55,6 @@ public class ChuckNorris implements PluginProvider {
     @Inject
     ChuckRepository chuckRepository;
 
-    Fact fact = new Fact();
-
     @Override
     public void load() {
         log.debug("Enabling Chuck Norris plugin.");
@@ -62,12 +65,17 @@ public class ChuckNorris implements PluginProvider {
         return "chuck-norris";
     }
 
+    @Override
+    public PluginTrigger trigger() {
+        return PluginTrigger.builder().literals("chuck norris").build();
+    }
+
     @Override
     public String process(MessageUpdate update, String locale) {
         if (canProcess(update.getMessage().getText())) {
             StringBuilder response = new StringBuilder();
 
-            fact = ChuckHelper.getFact();
+            Fact fact = ChuckHelper.getFact();
             response.append(fact.getValue());
 
             // Persist chuck fact Asynchronously
@@ -77,6 +85,22 @@ public class ChuckNorris implements PluginProvider {
         return null;
     }
 
+    @Override
+    public CompletionStage<String> processAsync(MessageUpdate update, String locale, Executor executor) {
+        if (!canProcess(update.getMessage().getText())) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return ChuckHelper.getFactAsync().thenApply(fact -> {
+            try {
+                // persist chuck fact asynchronously, the reply doesn't wait for it
+                CompletableFuture.runAsync(() -> chuckRepository.persistChuckFact(fact), executor);
+            } catch (RejectedExecutionException e) {
+                log.debugv("Chuck Norris fact not persisted: {0}", e.getMessage());
+            }
+            return fact.getValue();
+        });
+    }
+
     @Override
     public boolean deleteMessage() {
         return config.deleteMessages();
@@ -24,6 +24,7 @@
 package xyz.rebasing.rebot.plugin.chucknorris.helper;
 
 import java.lang.invoke.MethodHandles;
+import java.util.concurrent.CompletionStage;
 
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
@@ -51,4 +52,23 @@ public abstract class ChuckHelper {
 
         return response.readEntity(Fact.class);
     }
+
+    /**
+     * Same as {@link #getFact()} without blocking the caller while the api replies.
+     *
+     * @return completes with a random fact
+     */
+    public static CompletionStage<Fact> getFactAsync() {
+        Client client = ClientBuilder.newClient();
+        return client.target(CHUCK_NORRIS_FACTS_ENDPOINT).request().rx().get()
+                .thenApply(response -> {
+                    if (response.getStatus() != 200) {
+                        log.warnv("Failed to connect in the endpoint {0}, status code is: {1}",
+                                  CHUCK_NORRIS_FACTS_ENDPOINT,
+                                  response.getStatus());
+                    }
+                    return response.readEntity(Fact.class);
+                })
+                .whenComplete((fact, e) -> client.close());
+    }
 }
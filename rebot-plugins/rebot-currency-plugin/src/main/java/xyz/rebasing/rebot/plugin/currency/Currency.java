@@ -27,6 +27,7 @@ import java.lang.invoke.MethodHandles;
 import java.util.Arrays;
 import java.util.Locale;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
@@ -146,6 +147,12 @@ public class Currency implements CommandProvider {
         }
     }
 
+    @Override
+    public long cacheTtl(String key) {
+        // the rates only change when the ECB ones are refreshed, which invalidates the replies
+        return null != ecbClient.cache().getIfPresent("time") ? TimeUnit.HOURS.toSeconds(12) : 0;
+    }
+
     @Override
     public String help(String locale) {
         StringBuilder response = new StringBuilder(this.name() + " - " + this.description(locale));
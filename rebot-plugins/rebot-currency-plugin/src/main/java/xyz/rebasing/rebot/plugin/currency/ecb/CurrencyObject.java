@@ -23,23 +23,32 @@
 
 package xyz.rebasing.rebot.plugin.currency.ecb;
 
-import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalInt;
 
-import org.jboss.logging.Logger;
+import xyz.rebasing.rebot.api.spi.options.CommandOptions;
 
+/**
+ * Arguments of the currency command, e.g. <b>base eur brl,gbp,usd 48</b>, tokenized once when created.
+ */
 public class CurrencyObject {
 
-    private final Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
-
-    private String query;
-    private String firstParameter;
-    private int exchangeValue;
+    private final List<String> tokens;
+    private final String firstParameter;
+    private final int exchangeValue;
 
     public CurrencyObject(String query) {
-        query = query.trim().replaceAll("\\s{2,}", " ");
-        this.firstParameter = query.split(" ")[0].trim();
-        this.exchangeValue = 1;
-        this.query = query;
+        this.tokens = joinSymbols(CommandOptions.none().parse(query).arguments());
+        this.firstParameter = tokens.isEmpty() ? "" : tokens.get(0);
+        int value = 1;
+        for (String token : tokens) {
+            OptionalInt number = CommandOptions.parseInt(token);
+            if (number.isPresent()) {
+                value = number.getAsInt();
+            }
+        }
+        this.exchangeValue = value;
     }
 
     public String firstParameter() {
@@ -47,49 +56,56 @@ public class CurrencyObject {
     }
 
     public String[] symbols() {
-        String[] symbols = query.replaceAll("\\s*,\\s*",",").split(" ");
         int pos = "base".equalsIgnoreCase(firstParameter) ? 2 : 0;
-        try {
-            symbols = symbols[pos].split(",");
-        } catch (final Exception e) {
-            symbols = ECBHelper.DEFAULT_SYMBOLS.split(",");
+        if (tokens.size() <= pos) {
+            return ECBHelper.DEFAULT_SYMBOLS.split(",");
         }
-
-        if (isInteger(symbols[0])) {
-            symbols = ECBHelper.DEFAULT_SYMBOLS.split(",");
+        String[] symbols = split(tokens.get(pos));
+        if (symbols.length == 0 || CommandOptions.parseInt(symbols[0]).isPresent()) {
+            return ECBHelper.DEFAULT_SYMBOLS.split(",");
         }
-
         return symbols;
     }
 
     public String symbol() {
-        return query.split(" ")[1];
+        return tokens.get(1);
     }
 
     public String baseCurrency() {
-        return this.firstParameter.equalsIgnoreCase("base") ? query.split(" ")[1] : "";
+        return this.firstParameter.equalsIgnoreCase("base") ? tokens.get(1) : "";
     }
 
     public int exchangeValue() {
+        return exchangeValue;
+    }
 
-        for (String value : query.split(" ")) {
-            try {
-                exchangeValue = Integer.parseInt(value);
-            } catch (Exception ignore) {
-                if (log.isTraceEnabled()) {
-                    log.tracev("Failed to parse currency value {0}.", value);
-                }
+    /**
+     * Joins the symbols separated by commas and spaces, e.g. <b>brl, gbp , zar</b>, into a single token.
+     */
+    private static List<String> joinSymbols(List<String> arguments) {
+        List<String> tokens = new ArrayList<>(arguments.size());
+        for (String argument : arguments) {
+            int last = tokens.size() - 1;
+            if (last >= 0 && (argument.startsWith(",") || tokens.get(last).endsWith(","))) {
+                tokens.set(last, tokens.get(last) + argument);
+            } else {
+                tokens.add(argument);
             }
         }
-        return exchangeValue;
+        return tokens;
     }
 
-    private boolean isInteger(String value) {
-        try {
-            Integer.parseInt(value);
-            return true;
-        } catch (Exception ignore) {
-            return false;
+    private static String[] split(String symbols) {
+        List<String> split = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i <= symbols.length(); i++) {
+            if (i == symbols.length() || symbols.charAt(i) == ',') {
+                if (i > start) {
+                    split.add(symbols.substring(start, i));
+                }
+                start = i + 1;
+            }
         }
+        return split.toArray(new String[0]);
     }
-}
\ No newline at end of file
+}
@@ -26,6 +26,7 @@ package xyz.rebasing.rebot.plugin.currency.ecb;
 import java.lang.invoke.MethodHandles;
 
 import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Event;
 import javax.inject.Inject;
 import javax.xml.XMLConstants;
 import javax.xml.parsers.SAXParserFactory;
@@ -40,6 +41,7 @@ import org.apache.http.client.methods.HttpGet;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
 import org.jboss.logging.Logger;
+import xyz.rebasing.rebot.api.spi.InvalidateResponses;
 import xyz.rebasing.rebot.service.persistence.repository.EcbRepository;
 
 @ApplicationScoped
@@ -55,6 +57,9 @@ public class ECBClient {
     @Inject
     EcbRepository repository;
 
+    @Inject
+    Event<InvalidateResponses> invalidate;
+
     Cache<String, Object> c = Caffeine.newBuilder().build();
 
     public Cache<String, Object> cache() {
@@ -81,6 +86,8 @@ public class ECBClient {
                 c.put(cube.getCurrency(), cube);
                 c.put("time", handler.cubes().getTime());
             });
+            // replies computed with the previous rates are not valid anymore
+            invalidate.fire(InvalidateResponses.commands("/currency"));
         } catch (final Exception e) {
             log.errorv("Error to retrieve currency rates from {0} - message: {1}", ECB_XML_ADDRESS, e.getMessage());
         } finally {
@@ -60,6 +60,12 @@ public class Faq implements CommandProvider {
                 this.name());
     }
 
+    @Override
+    public long cacheTtl(String key) {
+        // same as the projects refresh
+        return 1800;
+    }
+
     @Override
     public String name() {
         return "/faq";
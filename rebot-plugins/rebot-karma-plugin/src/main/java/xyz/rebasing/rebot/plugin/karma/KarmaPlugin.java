@@ -45,7 +45,7 @@ import xyz.rebasing.rebot.api.domain.MessageUpdate;
 import xyz.rebasing.rebot.api.emojis.Emoji;
 import xyz.rebasing.rebot.api.i18n.I18nHelper;
 import xyz.rebasing.rebot.api.spi.PluginProvider;
-import xyz.rebasing.rebot.service.persistence.domain.Karma;
+import xyz.rebasing.rebot.api.spi.PluginTrigger;
 import xyz.rebasing.rebot.service.persistence.repository.KarmaRepository;
 
 import static xyz.rebasing.rebot.api.utils.Formatter.normalize;
@@ -93,6 +93,12 @@ public class KarmaPlugin implements PluginProvider {
         return "karma";
     }
 
+    @Override
+    public PluginTrigger trigger() {
+        // ++, --, em dash and en dash, edits are ignored to not count the same karma twice
+        return PluginTrigger.builder().literals("++", "--", "\u2014", "\u2013").edits(false).build();
+    }
+
     @Override
     public String process(MessageUpdate update, String locale) {
         StringBuilder response = new StringBuilder();
@@ -140,6 +146,7 @@ public class KarmaPlugin implements PluginProvider {
 
     /**
      * Process the karma, to trigger it is necessary to use ++ or -- at the end of any string.
+     * Messages from different chats are processed in parallel, the votes are added atomically by the repository.
      *
      * @param operator ++ or --
      * @param target   key that will have its karma changed
@@ -153,21 +160,24 @@ public class KarmaPlugin implements PluginProvider {
                                  Emoji.DIZZY_FACE);
         }
 
-        final int currentKarma = karma.get(target);
+        // the warm-up votes are not counted
+        if (config.isWarmingUp()) {
+            return String.format(I18nHelper.resource("KarmaMessages", locale, "karma.updated"),
+                                 normalize(target), karma.get(target));
+        }
+
+        final String vote = target + ":" + username;
         switch (operator) {
             case "++":
-                if (karmaCache.getIfPresent(target + ":" + username) == null) {
-                    // update it when Quarkus cache supports event listeners
-                    karmaCache.put(target + ":" + username, currentKarma + 1);
-                    karma.updateOrCreateKarma(new Karma(target, String.valueOf(currentKarma + 1)));
+                // the first vote of the user for the target within the timeout is the only one counted
+                if (karmaCache.asMap().putIfAbsent(vote, 0) == null) {
+                    karmaCache.put(vote, karma.add(target, 1));
                 }
                 break;
 
             case "--":
-                if (karmaCache.getIfPresent(target + ":" + username) == null) {
-                    // update it when Quarkus cache supports event listeners
-                    karmaCache.put(target + ":" + username, currentKarma - 1);
-                    karma.updateOrCreateKarma(new Karma(target, String.valueOf(currentKarma - 1)));
+                if (karmaCache.asMap().putIfAbsent(vote, 0) == null) {
+                    karmaCache.put(vote, karma.add(target, -1));
                 }
                 break;
 
@@ -176,7 +186,7 @@ public class KarmaPlugin implements PluginProvider {
                 break;
         }
         return String.format(I18nHelper.resource("KarmaMessages", locale, "karma.updated"),
-                             normalize(target), karmaCache.getIfPresent(target + ":" + username));
+                             normalize(target), karmaCache.getIfPresent(vote));
     }
 
     /**
@@ -25,6 +25,10 @@ package xyz.rebasing.rebot.plugin.packt;
 
 import java.lang.invoke.MethodHandles;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
@@ -71,6 +75,29 @@ public class Packt implements CommandProvider {
         }
     }
 
+    @Override
+    public CompletionStage<Object> executeAsync(Optional<String> key, MessageUpdate messageUpdate, String locale,
+                                                Executor executor) {
+        if (key.isPresent() && ("notify".equals(key.get()) || "off".equals(key.get()))) {
+            // the subscriptions are kept on the database, so they still need a thread
+            return CompletableFuture.supplyAsync(() -> execute(key, messageUpdate, locale), executor);
+        }
+        return packtNotifier.getAsync(locale)
+                .<Object>thenApply(book -> book)
+                .exceptionally(e -> String.format(
+                        I18nHelper.resource("Packt", locale, "error.state"), this.name(),
+                        (null != e.getCause() ? e.getCause() : e).getMessage()));
+    }
+
+    @Override
+    public long cacheTtl(String key) {
+        // the subscriptions are not cached, the offer is until the next refresh invalidates it
+        if ("notify".equals(key) || "off".equals(key) || !packtNotifier.isLoaded()) {
+            return 0;
+        }
+        return TimeUnit.HOURS.toSeconds(24);
+    }
+
     @Override
     public String name() {
         return "/packt";
@@ -23,6 +23,7 @@
 
 package xyz.rebasing.rebot.plugin.packt.notifier;
 
+import java.io.IOException;
 import java.lang.invoke.MethodHandles;
 import java.time.LocalDate;
 import java.time.ZoneId;
@@ -30,14 +31,20 @@ import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
 
 import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Event;
 import javax.inject.Inject;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import io.quarkus.scheduler.Scheduled;
+import okhttp3.Call;
+import okhttp3.Callback;
 import okhttp3.ConnectionSpec;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
@@ -48,6 +55,7 @@ import xyz.rebasing.rebot.api.domain.Message;
 import xyz.rebasing.rebot.api.domain.MessageUpdate;
 import xyz.rebasing.rebot.api.i18n.I18nHelper;
 import xyz.rebasing.rebot.api.shared.components.message.sender.OutcomeMessageProcessor;
+import xyz.rebasing.rebot.api.spi.InvalidateResponses;
 import xyz.rebasing.rebot.plugin.packt.domain.DailyOffer;
 import xyz.rebasing.rebot.plugin.packt.domain.LoadDailyOffer;
 import xyz.rebasing.rebot.service.persistence.domain.PacktNotification;
@@ -62,6 +70,14 @@ public class PacktNotifier {
     private static final String PACKT_LOAD_OFFER_ENDPOINT = "https://services.packtpub.com/free-learning-v1/offers?dateFrom=%sT00:00:00.000Z&dateTo=%sT00:00:00.000Z";
     private static final String PACKT_DAILY_OFFER_ENDPOINT = "https://static.packt-cdn.com/products/%s/summary";
 
+    // shared by all calls, so the connections and the threads of the client are reused
+    private static final OkHttpClient CLIENT = new OkHttpClient.Builder()
+            .connectionSpecs(Arrays.asList(ConnectionSpec.MODERN_TLS, ConnectionSpec.COMPATIBLE_TLS))
+            .callTimeout(10, TimeUnit.SECONDS)
+            .build();
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
     Cache<String, Object> cache = Caffeine.newBuilder().build();
 
     @Inject
@@ -70,20 +86,55 @@ public class PacktNotifier {
     @Inject
     private PacktRepository repository;
 
+    @Inject
+    Event<InvalidateResponses> invalidate;
+
+    /**
+     * @return true once the daily offer is known
+     */
+    public boolean isLoaded() {
+        return null != cache.getIfPresent("book");
+    }
+
     public String get(String locale) {
+        return format((DailyOffer) cache.getIfPresent("book"), locale);
+    }
+
+    /**
+     * Same as {@link #get(String)}, fetching the daily offer without blocking the caller when it is not known yet.
+     *
+     * @param locale locale configured by user
+     * @return completes with the daily free ebook
+     */
+    public CompletionStage<String> getAsync(String locale) {
         DailyOffer dailyOffer = (DailyOffer) cache.getIfPresent("book");
-        String pages = null != dailyOffer.getPages() ? dailyOffer.getPages().toString() : "N/A";
-        return String.format(
-                I18nHelper.resource("Packt", locale, "book"),
-                dailyOffer.getTitle(),
-                dailyOffer.getOneLiner(),
-                pages,
-                FREE_LEARNING_URL);
+        if (null != dailyOffer) {
+            return CompletableFuture.completedFuture(format(dailyOffer, locale));
+        }
+        return fetch().thenApply(offer -> format(offer, locale));
     }
 
     @Scheduled(cron = "0 30 05 * * ?")
     public void populate() {
+        try {
+            fetch().toCompletableFuture().join();
+
+            repository.get().stream().forEach(packtNotification ->
+                                                      this.notify(packtNotification.getChatId(),
+                                                                  packtNotification.getLocale())
+            );
+        } catch (final Exception e) {
+            e.printStackTrace();
+            log.warnv("Failed to obtain the ebook information: {0}", e.getMessage());
+        }
+    }
 
+    /**
+     * Retrieves the daily free ebook and keeps it on cache.
+     *
+     * @return completes with the daily offer
+     */
+    private CompletionStage<DailyOffer> fetch() {
         if (log.isDebugEnabled()) {
             log.debug("Retrieving information about the daily free ebook.");
         }
@@ -91,26 +142,14 @@ public class PacktNotifier {
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
         LocalDate localDate = today.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
 
-        OkHttpClient client = new OkHttpClient.Builder()
-                .connectionSpecs(Arrays.asList(ConnectionSpec.MODERN_TLS, ConnectionSpec.COMPATIBLE_TLS))
-                .build();
-
         Request loadDailyOfferRequest = new Request.Builder()
                 .url(String.format(PACKT_LOAD_OFFER_ENDPOINT, localDate.format(formatter),
                                    localDate.plus(1, ChronoUnit.DAYS).format(formatter)))
                 .get()
                 .build();
 
-        try (Response response = client.newCall(loadDailyOfferRequest).execute()) {
-
-            if (response.code() != 200) {
-                log.warnv("Failed to connect in the endpoint {0}, status code is: {1}",
-                          loadDailyOfferRequest.url(),
-                          response.code());
-            }
-
-            ObjectMapper objectMapper = new ObjectMapper();
-            LoadDailyOffer loadDailyOffer = objectMapper.readValue(response.body().string(), LoadDailyOffer.class);
+        return call(loadDailyOfferRequest).thenCompose(body -> {
+            LoadDailyOffer loadDailyOffer = read(body, LoadDailyOffer.class);
             if (log.isDebugEnabled()) {
                 log.debug(loadDailyOffer.toString());
             }
@@ -123,31 +162,66 @@ public class PacktNotifier {
             if (log.isTraceEnabled()) {
                 log.tracev("Getting daily pack offer with URI: {0}", getDailyOfferRequest.url());
             }
-
-            Response getDailyOfferResponse = client.newCall(getDailyOfferRequest).execute();
-            if (getDailyOfferResponse.code() != 200) {
-                log.warnv("Failed to connect in the endpoint {0}, status code is: {1}",
-                          getDailyOfferRequest.url(), getDailyOfferResponse.code());
-            }
-
-            DailyOffer dailyOffer = objectMapper.readValue(getDailyOfferResponse.body().string(), DailyOffer.class);
+            return call(getDailyOfferRequest);
+        }).thenApply(body -> {
+            DailyOffer dailyOffer = read(body, DailyOffer.class);
             if (log.isDebugEnabled()) {
                 log.debug(dailyOffer.toString());
             }
 
             cache.invalidateAll();
             cache.put("book", dailyOffer);
+            invalidate.fire(InvalidateResponses.commands("/packt"));
+            return dailyOffer;
+        });
+    }
 
-            repository.get().stream().forEach(packtNotification ->
-                                                      this.notify(packtNotification.getChatId(),
-                                                                  packtNotification.getLocale())
-            );
-        } catch (final Exception e) {
-            e.printStackTrace();
-            log.warnv("Failed to obtain the ebook information: {0}", e.getMessage());
+    /**
+     * @return completes with the body of the response, logging when the endpoint doesn't reply with 200
+     */
+    private CompletionStage<String> call(Request request) {
+        CompletableFuture<String> body = new CompletableFuture<>();
+        CLIENT.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                body.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (response) {
+                    if (response.code() != 200) {
+                        log.warnv("Failed to connect in the endpoint {0}, status code is: {1}",
+                                  request.url(),
+                                  response.code());
+                    }
+                    body.complete(response.body().string());
+                } catch (final Exception e) {
+                    body.completeExceptionally(e);
+                }
+            }
+        });
+        return body;
+    }
+
+    private <T> T read(String body, Class<T> type) {
+        try {
+            return objectMapper.readValue(body, type);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to read the ebook information: " + e.getMessage(), e);
         }
     }
 
+    private String format(DailyOffer dailyOffer, String locale) {
+        String pages = null != dailyOffer.getPages() ? dailyOffer.getPages().toString() : "N/A";
+        return String.format(
+                I18nHelper.resource("Packt", locale, "book"),
+                dailyOffer.getTitle(),
+                dailyOffer.getOneLiner(),
+                pages,
+                FREE_LEARNING_URL);
+    }
+
     public String registerNotification(MessageUpdate message, String locale) {
         String channel;
         if ("group".equals(message.getMessage().getChat().getType()) || "supergroup".equals(message.getMessage().getChat().getType())) {
@@ -25,6 +25,9 @@ package xyz.rebasing.rebot.plugin.urbandictionary;
 
 import java.lang.invoke.MethodHandles;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
@@ -54,11 +57,19 @@ public class UrbanDictionary implements CommandProvider {
 
     @Override
     public Object execute(Optional<String> key, MessageUpdate messageUpdate, String locale) {
-        return key.get().length() > 0 ? helper.query(key.get()) : String.format(
+        return key.get().length() > 0 ? helper.query(key.get(), locale) : String.format(
                 I18nHelper.resource("Urban", locale, "required.parameter"),
                 this.name());
     }
 
+    @Override
+    public CompletionStage<Object> executeAsync(Optional<String> key, MessageUpdate messageUpdate, String locale,
+                                                Executor executor) {
+        return key.get().length() > 0
+                ? helper.queryAsync(key.get(), locale).thenApply(definitions -> definitions)
+                : CompletableFuture.completedFuture(execute(key, messageUpdate, locale));
+    }
+
     @Override
     public String name() {
         return "/urban";
@@ -24,6 +24,7 @@
 package xyz.rebasing.rebot.plugin.urbandictionary.client;
 
 import java.io.UnsupportedEncodingException;
+import java.util.concurrent.CompletionStage;
 
 import xyz.rebasing.rebot.plugin.urbandictionary.domain.CustomTermResponse;
 
@@ -36,4 +37,12 @@ public interface IUrbanDictionaryClient<T> {
      * @throws UnsupportedEncodingException for unsupported encoding operations
      */
     T execute() throws UnsupportedEncodingException;
+
+    /**
+     * Execute the request without blocking the caller
+     *
+     * @return completes with the {@link CustomTermResponse}
+     * @throws UnsupportedEncodingException for unsupported encoding operations
+     */
+    CompletionStage<T> executeAsync() throws UnsupportedEncodingException;
 }
@@ -23,12 +23,18 @@
 
 package xyz.rebasing.rebot.plugin.urbandictionary.client;
 
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import okhttp3.Call;
+import okhttp3.Callback;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
@@ -40,6 +46,11 @@ public class UrbanDictionaryClient implements IUrbanDictionaryClient {
 
     private static final String URBAN_DICTIONARY_ENDPOINT = "http://api.urbandictionary.com/v0/define";
 
+    // shared by all clients, so the connections and the threads of the http client are reused
+    private static final OkHttpClient HTTP_CLIENT = new OkHttpClient.Builder()
+            .callTimeout(10, TimeUnit.SECONDS)
+            .build();
+
     private String term;
     private int numberOfResults;
     private boolean showExample;
@@ -77,43 +88,71 @@ public class UrbanDictionaryClient implements IUrbanDictionaryClient {
      * @return {@link CustomTermResponse}
      */
     public List<CustomTermResponse> execute() throws UnsupportedEncodingException {
+        try (Response response = HTTP_CLIENT.newCall(request()).execute()) {
+            return terms(response);
+        } catch (final Exception e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
 
-        OkHttpClient client = new OkHttpClient.Builder()
-                .build();
-        Request request = new Request.Builder()
+    /**
+     * Execute the request without blocking the caller while Urban Dictionary replies
+     *
+     * @return completes with the {@link CustomTermResponse}, empty if the request failed
+     */
+    @Override
+    public CompletionStage<List<CustomTermResponse>> executeAsync() throws UnsupportedEncodingException {
+        CompletableFuture<List<CustomTermResponse>> terms = new CompletableFuture<>();
+        HTTP_CLIENT.newCall(request()).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                terms.complete(new ArrayList<>());
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (response) {
+                    terms.complete(terms(response));
+                } catch (final Exception e) {
+                    terms.complete(new ArrayList<>());
+                }
+            }
+        });
+        return terms;
+    }
+
+    private Request request() throws UnsupportedEncodingException {
+        return new Request.Builder()
                 .url(this.URBAN_DICTIONARY_ENDPOINT + "?term=" + encode(this.term))
                 .get()
                 .build();
+    }
 
-        try (Response response = client.newCall(request).execute()) {
-
-            if (response.code() == 404) {
-                throw new RuntimeException("Failed to connect in the urban dictionary endpoint " +
-                                                   this.URBAN_DICTIONARY_ENDPOINT + ", status code is: " + response.code());
-            }
-
-            List<CustomTermResponse> c = new ArrayList<>();
-            ObjectMapper objectMapper = new ObjectMapper();
+    private List<CustomTermResponse> terms(Response response) throws IOException {
+        if (response.code() == 404) {
+            throw new RuntimeException("Failed to connect in the urban dictionary endpoint " +
+                                               this.URBAN_DICTIONARY_ENDPOINT + ", status code is: " + response.code());
+        }
 
-            if (null == response.body()) {
-                throw new RuntimeException("Failed to retrieve Urban dictionary response body, response is null");
-            }
+        List<CustomTermResponse> c = new ArrayList<>();
+        ObjectMapper objectMapper = new ObjectMapper();
 
-            Term t = objectMapper.readValue(response.body().string(), Term.class);
-            t.getList()
-                    .stream().limit(this.numberOfResults)
-                    .forEach(entry -> {
-                        if (this.showExample) {
-                            c.add(new CustomTermResponse(entry.getWord(), entry.getDefinition(), entry.getExample(), entry.getPermalink()));
-                        } else {
-                            c.add(new CustomTermResponse(entry.getWord(), entry.getDefinition(), entry.getPermalink()));
-                        }
-                    });
-            return c;
-        } catch (final Exception e) {
-            e.printStackTrace();
-            return new ArrayList<>();
+        if (null == response.body()) {
+            throw new RuntimeException("Failed to retrieve Urban dictionary response body, response is null");
         }
+
+        Term t = objectMapper.readValue(response.body().string(), Term.class);
+        t.getList()
+                .stream().limit(this.numberOfResults)
+                .forEach(entry -> {
+                    if (this.showExample) {
+                        c.add(new CustomTermResponse(entry.getWord(), entry.getDefinition(), entry.getExample(), entry.getPermalink()));
+                    } else {
+                        c.add(new CustomTermResponse(entry.getWord(), entry.getDefinition(), entry.getPermalink()));
+                    }
+                });
+        return c;
     }
 
     /**
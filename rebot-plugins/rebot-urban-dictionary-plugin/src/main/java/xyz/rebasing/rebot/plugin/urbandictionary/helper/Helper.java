@@ -27,6 +27,8 @@ import java.io.UnsupportedEncodingException;
 import java.lang.invoke.MethodHandles;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
@@ -35,6 +37,9 @@ import javax.enterprise.context.ApplicationScoped;
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import org.jboss.logging.Logger;
+import xyz.rebasing.rebot.api.i18n.SupportedLocales;
+import xyz.rebasing.rebot.api.spi.options.CommandOptions;
+import xyz.rebasing.rebot.api.spi.options.ParsedOptions;
 import xyz.rebasing.rebot.plugin.urbandictionary.client.UrbanDictionaryClient;
 import xyz.rebasing.rebot.plugin.urbandictionary.client.builder.UrbanDictionaryClientBuilder;
 import xyz.rebasing.rebot.plugin.urbandictionary.domain.CustomTermResponse;
@@ -44,7 +49,12 @@ public class Helper {
 
     private final Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
 
-    private UrbanDictionaryClient client;
+    // -c number of definitions, -e show examples
+    private static final CommandOptions OPTIONS = CommandOptions.builder()
+            .integer("c", 1, 0)
+            .flag("e")
+            .unknownAsArguments()
+            .build();
 
     Cache<Object, List<CustomTermResponse>> cache = Caffeine.newBuilder()
             .expireAfterWrite(1, TimeUnit.DAYS)
@@ -52,44 +62,47 @@ public class Helper {
             .build();
 
     public String query(String param) {
-        String term = "";
-        int numberOfResults = 1;
-        boolean showExample = false;
-        String[] parameters = param.split(" ");
-
-        // prepare the parameters
-        for (int i = 0; i < parameters.length; i++) {
-
-            if ("-c".equals(parameters[i])) {
-                i += 1;
-                try {
-                    numberOfResults = Integer.parseInt(parameters[i]);
-                    if (numberOfResults < 0) {
-                        return "Only positive values are valid: " + numberOfResults;
-                    }
-                } catch (NumberFormatException e) {
-                    return "Parameter " + parameters[i] + " is not valid.";
-                }
-            } else if (parameters[i].equals("-e")) {
-                showExample = true;
-            } else {
-                if (parameters.length > i + 1) {
-                    term += parameters[i] + " ";
-                } else {
-                    term += parameters[i];
-                }
+        return query(param, SupportedLocales.en_us.localeName());
+    }
+
+    public String query(String param, String locale) {
+        return queryAsync(param, locale).toCompletableFuture().join();
+    }
+
+    /**
+     * Same as {@link #query(String, String)} without blocking the caller while Urban Dictionary replies.
+     *
+     * @param param  the term and its options
+     * @param locale locale of the chat, used on the usage errors
+     * @return completes with the definitions found
+     */
+    public CompletionStage<String> queryAsync(String param, String locale) {
+        ParsedOptions options = OPTIONS.parse(param);
+        if (options.hasError()) {
+            switch (options.errorType()) {
+                case NOT_INTEGER:
+                    return CompletableFuture.completedFuture("Parameter " + options.errorToken() + " is not valid.");
+                case BELOW_MIN:
+                    return CompletableFuture.completedFuture("Only positive values are valid: " + options.errorToken());
+                default:
+                    return CompletableFuture.completedFuture(options.error(locale));
             }
         }
+        String term = options.text();
+        int numberOfResults = options.integer("c");
+        boolean showExample = options.flag("e");
 
-        List<CustomTermResponse> ubResponse = new ArrayList<>();
-        StringBuilder response = new StringBuilder();
         try {
-            ubResponse = processRequest(term, numberOfResults, showExample);
+            return processRequest(term, numberOfResults, showExample).thenApply(ubResponse -> format(ubResponse, new StringBuilder()));
         } catch (UnsupportedEncodingException e) {
-            response.append("Failure to retrieve information from Urban Dictionary: " + e.getMessage());
             e.printStackTrace();
+            return CompletableFuture.completedFuture(
+                    format(new ArrayList<>(),
+                           new StringBuilder("Failure to retrieve information from Urban Dictionary: " + e.getMessage())));
         }
+    }
 
+    private String format(List<CustomTermResponse> ubResponse, StringBuilder response) {
         if (ubResponse.isEmpty()) {
             response.append("Term not found");
         } else {
@@ -126,9 +139,9 @@ public class Helper {
      * @param term
      * @param numberOfResults
      * @param showExample
-     * @return {@link List<CustomTermResponse>}
+     * @return completes with the {@link List<CustomTermResponse>}
      */
-    private List<CustomTermResponse> processRequest(String term, int numberOfResults, boolean showExample) throws UnsupportedEncodingException {
+    private CompletionStage<List<CustomTermResponse>> processRequest(String term, int numberOfResults, boolean showExample) throws UnsupportedEncodingException {
 
         UrbanDictionaryClientBuilder builder = new UrbanDictionaryClientBuilder();
         if (cache.asMap().containsKey(term.trim())) {
@@ -140,23 +153,25 @@ public class Helper {
                     if (showExample) {
                         builder.showExample();
                     }
-                    client = builder.term(term).numberOfResults(numberOfResults).build();
-                    List<CustomTermResponse> ubResult = client.execute();
-                    cache.asMap().replace(term.trim(), ubResult);
-                    return ubResult;
+                    UrbanDictionaryClient client = builder.term(term).numberOfResults(numberOfResults).build();
+                    return client.executeAsync().thenApply(ubResult -> {
+                        cache.asMap().replace(term.trim(), ubResult);
+                        return ubResult;
+                    });
                 }
             } else {
                 log.debugv("{0} is available on cache, returning it from cache.", term);
-                return cacheItems;
+                return CompletableFuture.completedFuture(cacheItems);
             }
         }
         log.debugv("{0} is not available on cache, making a new request.", term);
         if (showExample) {
             builder.showExample();
         }
-        client = builder.term(term).numberOfResults(numberOfResults).build();
-        List<CustomTermResponse> ubResult = client.execute();
-        cache.asMap().putIfAbsent(term.trim(), ubResult);
-        return ubResult;
+        UrbanDictionaryClient client = builder.term(term).numberOfResults(numberOfResults).build();
+        return client.executeAsync().thenApply(ubResult -> {
+            cache.asMap().putIfAbsent(term.trim(), ubResult);
+            return ubResult;
+        });
     }
 }
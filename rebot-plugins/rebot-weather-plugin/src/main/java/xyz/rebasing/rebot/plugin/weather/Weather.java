@@ -25,6 +25,9 @@ package xyz.rebasing.rebot.plugin.weather;
 
 import java.lang.invoke.MethodHandles;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
@@ -74,6 +77,22 @@ public class Weather implements CommandProvider {
         return response;
     }
 
+    @Override
+    public CompletionStage<Object> executeAsync(Optional<String> key, MessageUpdate messageUpdate, String locale,
+                                                Executor executor) {
+        if (key.get().length() < 1) {
+            return CompletableFuture.completedFuture(execute(key, messageUpdate, locale));
+        }
+        try {
+            return openWeather.executeAsync(key.get(), locale).thenApply(forecast -> forecast);
+        } catch (final Exception e) {
+            return CompletableFuture.completedFuture(String.format(
+                    I18nHelper.resource("Weather", locale, "error.state"),
+                    this.name(),
+                    e.getMessage()));
+        }
+    }
+
     @Override
     public String name() {
         return "/weather";
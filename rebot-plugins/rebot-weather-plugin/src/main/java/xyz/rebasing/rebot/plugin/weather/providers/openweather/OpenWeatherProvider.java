@@ -23,15 +23,19 @@
 
 package xyz.rebasing.rebot.plugin.weather.providers.openweather;
 
+import java.io.IOException;
 import java.lang.invoke.MethodHandles;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import okhttp3.Call;
+import okhttp3.Callback;
 import okhttp3.ConnectionSpec;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
@@ -39,6 +43,8 @@ import okhttp3.Response;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.logging.Logger;
 import xyz.rebasing.rebot.api.i18n.I18nHelper;
+import xyz.rebasing.rebot.api.spi.options.CommandOptions;
+import xyz.rebasing.rebot.api.spi.options.ParsedOptions;
 import xyz.rebasing.rebot.plugin.weather.providers.openweather.builder.OpenWeatherRequestBuilder;
 import xyz.rebasing.rebot.plugin.weather.providers.openweather.domain.OpenWeather;
 import xyz.rebasing.rebot.plugin.weather.providers.openweather.request.OpenWeatherRequest;
@@ -48,6 +54,20 @@ public class OpenWeatherProvider {
 
     private final Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
 
+    // shared by all calls, so the connections and the threads of the client are reused
+    private static final OkHttpClient CLIENT = new OkHttpClient.Builder()
+            .connectionSpecs(Arrays.asList(ConnectionSpec.MODERN_TLS, ConnectionSpec.COMPATIBLE_TLS))
+            .callTimeout(10, TimeUnit.SECONDS)
+            .build();
+
+    // -l language, -c country code
+    private static final CommandOptions OPTIONS = CommandOptions.builder()
+            .value("l")
+            .value("c", "")
+            .build();
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
     @Inject
     @ConfigProperty(name = "xyz.rebasing.rebot.plugin.openweather.appid")
     private String appId;
@@ -60,29 +80,60 @@ public class OpenWeatherProvider {
      * @return the forecast for the given city
      */
     public String execute(String parameters, String locale) {
-        String args[] = parameters.split(" ");
-        String countryCode = "";
-        String lang = locale;
-        List<String> argsList = new ArrayList<>();
-        List<String> optsList = new ArrayList<>();
-        for (int i = 0; i < args.length; i++) {
-            switch (args[i].charAt(0)) {
-                case '-':
-                    i = i + 1;
-                    if (args[i - 1].charAt(1) == 'l') {
-                        lang = args[i];
-                    } else if (args[i - 1].charAt(1) == 'c') {
-                        countryCode = args[i];
-                    }
-                    optsList.add(args[i]);
-                    break;
-
-                default:
-                    argsList.add(args[i]);
-                    break;
+        ParsedOptions options = OPTIONS.parse(parameters);
+        if (options.hasError()) {
+            return options.error(locale);
+        }
+        Search search = search(options, locale);
+        try (Response response = CLIENT.newCall(search.request).execute()) {
+            return forecast(response, search, locale);
+        } catch (final Exception e) {
+            e.printStackTrace();
+            return e.getMessage();
+        }
+    }
+
+    /**
+     * Same as {@link #execute(String, String)} without blocking the caller while OpenWeather replies.
+     *
+     * @param parameters Ex: Uberlandia  -cc BR -
+     * @param locale     locale configured by user
+     * @return completes with the forecast for the given city
+     */
+    public CompletionStage<String> executeAsync(String parameters, String locale) {
+        ParsedOptions options = OPTIONS.parse(parameters);
+        if (options.hasError()) {
+            return CompletableFuture.completedFuture(options.error(locale));
+        }
+        Search search = search(options, locale);
+        CompletableFuture<String> forecast = new CompletableFuture<>();
+        CLIENT.newCall(search.request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                log.debugv("OpenWeather API call failed: {0}", e.getMessage());
+                forecast.complete(e.getMessage());
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (response) {
+                    forecast.complete(forecast(response, search, locale));
+                } catch (final Exception e) {
+                    log.debugv("OpenWeather API reply not parsed: {0}", e.getMessage());
+                    forecast.complete(e.getMessage());
+                }
             }
+        });
+        return forecast;
+    }
+
+    private Search search(ParsedOptions options, String locale) {
+        String countryCode = options.value("c");
+        String lang = options.value("l");
+        if (null == lang) {
+            lang = locale;
         }
-        String query = String.join(" ", argsList);
+        String query = options.text();
         log.debugv("Parameters received [Query: {0}], [Country Code: {1}], [lang: {2}]", query, countryCode, lang);
 
         OpenWeatherRequest openWeatherRequest = new OpenWeatherRequestBuilder()
@@ -94,47 +145,40 @@ public class OpenWeatherProvider {
 
         log.debugv("Performing OpenWeather API call with the following url {0}", openWeatherRequest.toString());
 
-        OkHttpClient client = new OkHttpClient.Builder()
-                .connectionSpecs(Arrays.asList(ConnectionSpec.MODERN_TLS, ConnectionSpec.COMPATIBLE_TLS))
-                .build();
         Request request = new Request.Builder()
                 .url(openWeatherRequest.toString())
                 .get()
                 .build();
+        return new Search(query, countryCode, request);
+    }
 
-        try (Response response = client.newCall(request).execute()) {
-
-            if (response.code() == 404) {
-                return String.format(
-                        I18nHelper.resource("Weather", locale, "forecast.not.found"),
-                        query, query, countryCode, locale);
-            }
-
-            ObjectMapper objectMapper = new ObjectMapper();
-            OpenWeather openWeather = objectMapper.readValue(response.body().string(), OpenWeather.class);
-            String city = openWeather.getName();
-            String country = openWeather.getSys().getCountry();
-            String condition = openWeather.getWeather().get(0).getDescription();
-            float temperature = openWeather.getMain().getTemp();
-            float tempMin = openWeather.getMain().getTempMin();
-            float tempMax = openWeather.getMain().getTempMax();
-            float tempFeelsLike = openWeather.getMain().getFeelsLike();
-            float humidity = openWeather.getMain().getHumidity();
-
+    private String forecast(Response response, Search search, String locale) throws IOException {
+        if (response.code() == 404) {
             return String.format(
-                    I18nHelper.resource("Weather", locale, "forecast"),
-                    city,
-                    country,
-                    condition,
-                    toCelsius(temperature), temperature,
-                    toCelsius(tempMin), tempMin,
-                    toCelsius(tempMax), tempMax,
-                    toCelsius(tempFeelsLike), tempFeelsLike,
-                    humidity);
-        } catch (final Exception e) {
-            e.printStackTrace();
-            return e.getMessage();
+                    I18nHelper.resource("Weather", locale, "forecast.not.found"),
+                    search.query, search.query, search.countryCode, locale);
         }
+
+        OpenWeather openWeather = objectMapper.readValue(response.body().string(), OpenWeather.class);
+        String city = openWeather.getName();
+        String country = openWeather.getSys().getCountry();
+        String condition = openWeather.getWeather().get(0).getDescription();
+        float temperature = openWeather.getMain().getTemp();
+        float tempMin = openWeather.getMain().getTempMin();
+        float tempMax = openWeather.getMain().getTempMax();
+        float tempFeelsLike = openWeather.getMain().getFeelsLike();
+        float humidity = openWeather.getMain().getHumidity();
+
+        return String.format(
+                I18nHelper.resource("Weather", locale, "forecast"),
+                city,
+                country,
+                condition,
+                toCelsius(temperature), temperature,
+                toCelsius(tempMin), tempMin,
+                toCelsius(tempMax), tempMax,
+                toCelsius(tempFeelsLike), tempFeelsLike,
+                humidity);
     }
 
     /**
@@ -146,5 +190,17 @@ public class OpenWeatherProvider {
     private String toCelsius(float value) {
         return String.format("%.1f", (value - 32) / 1.8000);
     }
-}
 
+    private static class Search {
+
+        private final String query;
+        private final String countryCode;
+        private final Request request;
+
+        private Search(String query, String countryCode, Request request) {
+            this.query = query;
+            this.countryCode = countryCode;
+            this.request = request;
+        }
+    }
+}
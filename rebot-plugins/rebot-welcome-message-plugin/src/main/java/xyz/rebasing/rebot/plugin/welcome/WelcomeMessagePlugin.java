@@ -59,6 +59,7 @@ import xyz.rebasing.rebot.api.shared.components.management.message.MessageManage
 import xyz.rebasing.rebot.api.shared.components.management.user.UserManagement;
 import xyz.rebasing.rebot.api.shared.components.message.sender.OutcomeMessageProcessor;
 import xyz.rebasing.rebot.api.spi.PluginProvider;
+import xyz.rebasing.rebot.api.spi.PluginTrigger;
 import xyz.rebasing.rebot.plugin.welcome.kogito.WelcomeChallenge;
 
 import static xyz.rebasing.rebot.plugin.welcome.filter.WelcomePluginPredicate.hasMemberLeft;
@@ -194,6 +195,11 @@ public class WelcomeMessagePlugin implements PluginProvider {
         return "welcome";
     }
 
+    @Override
+    public PluginTrigger trigger() {
+        return PluginTrigger.builder().fields("new_chat_member", "left_chat_participant").edits(false).build();
+    }
+
     @Override
     public boolean deleteMessage() {
         return config.deleteMessages();
@@ -1,43 +1,33 @@
 package xyz.rebasing.rebot.service.persistence.domain;
 
-import javax.persistence.Cacheable;
-import javax.persistence.Column;
-import javax.persistence.Entity;
-import javax.persistence.Id;
-import javax.persistence.NamedQuery;
-import javax.persistence.QueryHint;
-import javax.persistence.Table;
-
-@Entity
-@Cacheable
-@Table(name = "CHAT_LOCALE")
-@NamedQuery(name = "ChatLocale.Get",
-        query = "SELECT c FROM ChatLocale c where c.chatId = :chatId",
-        hints = @QueryHint(name = "org.hibernate.cacheable", value = "true") )
+/**
+ * Locale defined for a chat, stored along with the other settings of the chat in {@link ChatState}.
+ */
 public class ChatLocale {
 
-    @Id
-    @Column(name = "ID", updatable = false, nullable = false)
+    private String botId;
     private long chatId;
-
-    @Column(name = "CHAT_TITLE", nullable = false)
     private String chatTitle;
-
-    @Column(name = "CHAT_LOCALE_DEFINITION", nullable = false)
     private String chatLocale;
 
-    public ChatLocale(long chatId, String chatTitle, String chatLocale) {
+    public ChatLocale(String botId, long chatId, String chatTitle, String chatLocale) {
+        this.botId = botId;
         this.chatId = chatId;
         this.chatTitle = chatTitle;
         this.chatLocale = chatLocale;
     }
 
-    /**
-     * Default constructor is needed to satisfy hibernate enhanced proxy generation
-     */
     public ChatLocale() {
     }
 
+    public String getBotId() {
+        return botId;
+    }
+
+    public void setBotId(String botId) {
+        this.botId = botId;
+    }
+
     public long getChatId() {
         return chatId;
     }
@@ -65,7 +55,8 @@ public class ChatLocale {
     @Override
     public String toString() {
         return "ChatLocale{" +
-                "chatId=" + chatId +
+                "botId='" + botId + '\'' +
+                ", chatId=" + chatId +
                 ", chatTitle='" + chatTitle + '\'' +
                 ", chatLocale='" + chatLocale + '\'' +
                 '}';
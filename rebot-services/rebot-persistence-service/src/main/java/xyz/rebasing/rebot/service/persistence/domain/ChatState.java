@@ -0,0 +1,136 @@
+/*
+ *   The MIT License (MIT)
+ *
+ *   Copyright (c) 2017 Rebasing.xyz ReBot
+ *
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy of
+ *   this software and associated documentation files (the "Software"), to deal in
+ *   the Software without restriction, including without limitation the rights to
+ *   use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ *   the Software, and to permit persons to whom the Software is furnished to do so,
+ *   subject to the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ *   FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ *   COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ *   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package xyz.rebasing.rebot.service.persistence.domain;
+
+import java.util.BitSet;
+
+import javax.persistence.Cacheable;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.NamedQuery;
+import javax.persistence.QueryHint;
+import javax.persistence.Table;
+
+/**
+ * Settings of a chat for a bot in a single row: its locale, whether the bot is enabled and the commands and plugins disabled in
+ * it, as a bitmask indexed by the {@link CommandOrdinal} of each command and plugin.
+ */
+@Entity
+@Cacheable
+@Table(name = "CHAT_SETTINGS")
+@IdClass(ChatStateId.class)
+@NamedQuery(name = "ChatState.WithLocale",
+        query = "SELECT c FROM ChatState c WHERE c.locale IS NOT NULL",
+        hints = @QueryHint(name = "org.hibernate.readOnly", value = "true"))
+public class ChatState {
+
+    @Id
+    @Column(name = "BOT_ID", updatable = false, nullable = false)
+    private String botId;
+
+    @Id
+    @Column(name = "ID", updatable = false, nullable = false)
+    private long chatId;
+
+    @Column(name = "CHAT_TITLE")
+    private String chatTitle;
+
+    // null until a locale is defined for the chat
+    @Column(name = "LOCALE")
+    private String locale;
+
+    @Column(name = "BOT_ENABLED", nullable = false)
+    private boolean botEnabled = true;
+
+    @Column(name = "DISABLED_COMMANDS", nullable = false)
+    private byte[] disabledCommands = new byte[0];
+
+    public ChatState(String botId, long chatId) {
+        this.botId = botId;
+        this.chatId = chatId;
+    }
+
+    /**
+     * Default constructor is needed to satisfy hibernate enhanced proxy generation
+     */
+    public ChatState() {
+    }
+
+    public String getBotId() {
+        return botId;
+    }
+
+    public long getChatId() {
+        return chatId;
+    }
+
+    public String getChatTitle() {
+        return chatTitle;
+    }
+
+    public void setChatTitle(String chatTitle) {
+        this.chatTitle = chatTitle;
+    }
+
+    public String getLocale() {
+        return locale;
+    }
+
+    public void setLocale(String locale) {
+        this.locale = locale;
+    }
+
+    public boolean isBotEnabled() {
+        return botEnabled;
+    }
+
+    public void setBotEnabled(boolean botEnabled) {
+        this.botEnabled = botEnabled;
+    }
+
+    /**
+     * @return a copy of the disabled commands bitmask, the bit of each disabled command ordinal is set
+     */
+    public BitSet getDisabledCommands() {
+        return BitSet.valueOf(disabledCommands);
+    }
+
+    public void setDisabledCommands(BitSet disabledCommands) {
+        this.disabledCommands = disabledCommands.toByteArray();
+    }
+
+    @Override
+    public String toString() {
+        return "ChatState{" +
+                "botId='" + botId + '\'' +
+                ", chatId=" + chatId +
+                ", chatTitle='" + chatTitle + '\'' +
+                ", locale='" + locale + '\'' +
+                ", botEnabled=" + botEnabled +
+                ", disabledCommands=" + getDisabledCommands() +
+                '}';
+    }
+}
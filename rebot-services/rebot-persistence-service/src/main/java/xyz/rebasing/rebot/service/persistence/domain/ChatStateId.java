@@ -0,0 +1,82 @@
+/*
+ *   The MIT License (MIT)
+ *
+ *   Copyright (c) 2017 Rebasing.xyz ReBot
+ *
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy of
+ *   this software and associated documentation files (the "Software"), to deal in
+ *   the Software without restriction, including without limitation the rights to
+ *   use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ *   the Software, and to permit persons to whom the Software is furnished to do so,
+ *   subject to the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ *   FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ *   COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ *   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package xyz.rebasing.rebot.service.persistence.domain;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Primary key of {@link ChatState}, a group may have several bots, each with its own settings in it.
+ */
+public class ChatStateId implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private String botId;
+    private long chatId;
+
+    public ChatStateId(String botId, long chatId) {
+        this.botId = botId;
+        this.chatId = chatId;
+    }
+
+    /**
+     * Default constructor is needed to satisfy hibernate enhanced proxy generation
+     */
+    public ChatStateId() {
+    }
+
+    public String getBotId() {
+        return botId;
+    }
+
+    public long getChatId() {
+        return chatId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ChatStateId)) {
+            return false;
+        }
+        ChatStateId that = (ChatStateId) o;
+        return chatId == that.chatId && Objects.equals(botId, that.botId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(botId, chatId);
+    }
+
+    @Override
+    public String toString() {
+        return "ChatStateId{" +
+                "botId='" + botId + '\'' +
+                ", chatId=" + chatId +
+                '}';
+    }
+}
@@ -26,78 +26,56 @@ package xyz.rebasing.rebot.service.persistence.domain;
 import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
-import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.NamedQuery;
+import javax.persistence.QueryHint;
 import javax.persistence.Table;
 
-@Entity(name = "COMMAND_STATUS")
-@Table(name = "COMMAND_STATUS")
+/**
+ * Position of a command or plugin in the disabled commands bitmask of {@link ChatState}, once assigned it never
+ * changes nor is reused, so the bitmasks stay valid across restarts and when commands are removed.
+ */
+@Entity
 @Cacheable
-public class CommandStatus {
+@Table(name = "COMMAND_ORDINAL")
+@NamedQuery(name = "CommandOrdinal.All",
+        query = "SELECT o FROM CommandOrdinal o",
+        hints = @QueryHint(name = "org.hibernate.readOnly", value = "true"))
+@NamedQuery(name = "CommandOrdinal.Next",
+        query = "SELECT COALESCE(MAX(o.ordinal) + 1, 0) FROM CommandOrdinal o")
+public class CommandOrdinal {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
-    private Long id;
-
-    @Column(name = "groupID", nullable = false)
-    private Long groupID;
-
-    @Column(name = "commandName", nullable = false)
-    private String commandName;
-
-    @Column(name = "isEnabled", nullable = false)
-    private boolean isEnabled;
-
-    public CommandStatus(Long groupID, String commandName, boolean isEnabled) {
-        this.groupID = groupID;
-        this.commandName = commandName;
-        this.isEnabled = isEnabled;
-    }
-
-    public CommandStatus() {
-        // Default Constructor
-    }
+    @Column(name = "NAME", updatable = false, nullable = false)
+    private String name;
 
-    public Long getId() {
-        return id;
-    }
-
-    public void setId(Long id) {
-        this.id = id;
-    }
-
-    public Long getGroupID() {
-        return groupID;
-    }
-
-    public void setGroupID(Long groupID) {
-        this.groupID = groupID;
-    }
+    @Column(name = "ORDINAL", updatable = false, nullable = false, unique = true)
+    private int ordinal;
 
-    public String getCommandName() {
-        return commandName;
+    public CommandOrdinal(String name, int ordinal) {
+        this.name = name;
+        this.ordinal = ordinal;
     }
 
-    public void setCommandName(String commandName) {
-        this.commandName = commandName;
+    /**
+     * Default constructor is needed to satisfy hibernate enhanced proxy generation
+     */
+    public CommandOrdinal() {
     }
 
-    public boolean isEnabled() {
-        return isEnabled;
+    public String getName() {
+        return name;
     }
 
-    public void setEnabled(boolean enabled) {
-        isEnabled = enabled;
+    public int getOrdinal() {
+        return ordinal;
     }
 
     @Override
     public String toString() {
-        return "CommandStatus{" +
-                "id=" + id +
-                ", groupID=" + groupID +
-                ", commandName='" + commandName + '\'' +
-                ", isEnabled=" + isEnabled +
+        return "CommandOrdinal{" +
+                "name='" + name + '\'' +
+                ", ordinal=" + ordinal +
                 '}';
     }
 }
@@ -36,10 +36,10 @@ public class Karma {
     @Column(name = "USERNAME", nullable = false, length = 50)
     private String username;
 
-    @Column(name = "POINTS", nullable = false, length = 10)
-    private String points;
+    @Column(name = "POINTS", nullable = false)
+    private int points;
 
-    public Karma(String username, String points) {
+    public Karma(String username, int points) {
         this.username = username;
         this.points = points;
     }
@@ -58,11 +58,11 @@ public class Karma {
         this.username = username;
     }
 
-    public String getPoints() {
+    public int getPoints() {
         return points;
     }
 
-    public void setPoints(String points) {
+    public void setPoints(int points) {
         this.points = points;
     }
 
@@ -0,0 +1,89 @@
+/*
+ *   The MIT License (MIT)
+ *
+ *   Copyright (c) 2017 Rebasing.xyz ReBot
+ *
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy of
+ *   this software and associated documentation files (the "Software"), to deal in
+ *   the Software without restriction, including without limitation the rights to
+ *   use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ *   the Software, and to permit persons to whom the Software is furnished to do so,
+ *   subject to the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ *   FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ *   COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ *   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package xyz.rebasing.rebot.service.persistence.domain;
+
+import java.sql.Timestamp;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.NamedNativeQuery;
+import javax.persistence.NamedQuery;
+import javax.persistence.Table;
+
+/**
+ * Lease that elects the only node allowed to poll Telegram for a given bot, the owner renews it
+ * periodically and a standby node takes it over once it expires.
+ * The expiration is computed and compared by the database, with its own clock, so the clock of the nodes competing
+ * for the lease doesn't need to agree.
+ */
+@Entity
+@Table(name = "POLLER_LEASE")
+@NamedNativeQuery(name = "PollerLease.Acquire",
+        query = "UPDATE POLLER_LEASE SET OWNER = :owner, VALID_UNTIL = DATEADD('MILLISECOND', :ttl, CURRENT_TIMESTAMP) " +
+                "WHERE BOT_ID = :botId AND (OWNER = :owner OR VALID_UNTIL <= CURRENT_TIMESTAMP)")
+@NamedNativeQuery(name = "PollerLease.Create",
+        query = "INSERT INTO POLLER_LEASE (BOT_ID, OWNER, VALID_UNTIL) " +
+                "VALUES (:botId, :owner, DATEADD('MILLISECOND', :ttl, CURRENT_TIMESTAMP))")
+@NamedQuery(name = "PollerLease.Release",
+        query = "UPDATE PollerLease l SET l.validUntil = CURRENT_TIMESTAMP WHERE l.botId = :botId AND l.owner = :owner")
+public class PollerLease {
+
+    @Id
+    @Column(name = "BOT_ID", updatable = false, nullable = false)
+    private String botId;
+
+    @Column(name = "OWNER", nullable = false)
+    private String owner;
+
+    @Column(name = "VALID_UNTIL")
+    private Timestamp validUntil;
+
+    /**
+     * Default constructor is needed to satisfy hibernate enhanced proxy generation
+     */
+    public PollerLease() {
+    }
+
+    public String getBotId() {
+        return botId;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public Timestamp getValidUntil() {
+        return validUntil;
+    }
+
+    @Override
+    public String toString() {
+        return "PollerLease{" +
+                "botId='" + botId + '\'' +
+                ", owner='" + owner + '\'' +
+                ", validUntil=" + validUntil +
+                '}';
+    }
+}
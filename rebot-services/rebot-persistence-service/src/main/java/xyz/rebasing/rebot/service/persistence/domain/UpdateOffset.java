@@ -1,7 +1,7 @@
 /*
  *   The MIT License (MIT)
  *
- *   Copyright (c) 2017 Rebasing.xyz ReBot 
+ *   Copyright (c) 2017 Rebasing.xyz ReBot
  *
  *   Permission is hereby granted, free of charge, to any person obtaining a copy of
  *   this software and associated documentation files (the "Software"), to deal in
@@ -25,60 +25,51 @@ package xyz.rebasing.rebot.service.persistence.domain;
 
 import java.time.Instant;
 
-import javax.persistence.Cacheable;
 import javax.persistence.Column;
-import javax.persistence.Embedded;
 import javax.persistence.Entity;
 import javax.persistence.Id;
 import javax.persistence.Table;
 
-import xyz.rebasing.rebot.api.domain.From;
-
+/**
+ * Last Telegram update id fully processed by the bot, used as the getUpdates offset after restarts.
+ */
 @Entity
-@Table(name = "BOT_STATUS")
-@Cacheable
-public class BotStatus {
+@Table(name = "UPDATE_OFFSET")
+public class UpdateOffset {
 
     @Id
-    @Column(name = "ID", updatable = false, nullable = false)
-    private Long id;
-
-    @Column(name = "isEnabled", nullable = false)
-    private boolean isEnabled;
+    @Column(name = "BOT_ID", updatable = false, nullable = false)
+    private String botId;
 
-    @Embedded
-    private From from;
+    @Column(name = "UPDATE_ID", nullable = false)
+    private long updateId;
 
     @Column(name = "timestamp", nullable = false)
     private String timestamp;
 
-    public BotStatus(boolean isEnabled, From from, long chatId) {
-        this.id = chatId;
-        this.isEnabled = isEnabled;
-        this.from = from;
+    public UpdateOffset(String botId, long updateId) {
+        this.botId = botId;
+        this.updateId = updateId;
         this.timestamp = Instant.now().toString();
     }
 
     /**
      * Default constructor is needed to satisfy hibernate enhanced proxy generation
      */
-    public BotStatus() {
+    public UpdateOffset() {
     }
 
-    public Long getId() {
-        return id;
+    public String getBotId() {
+        return botId;
     }
 
-    public void setId(Long id) {
-        this.id = id;
+    public long getUpdateId() {
+        return updateId;
     }
 
-    public boolean isEnabled() {
-        return isEnabled;
-    }
-
-    public From getRequester() {
-        return from;
+    public void setUpdateId(long updateId) {
+        this.updateId = updateId;
+        this.timestamp = Instant.now().toString();
     }
 
     public String getTimestamp() {
@@ -87,11 +78,10 @@ public class BotStatus {
 
     @Override
     public String toString() {
-        return "BotStatus{" +
-                "id=" + id +
-                ", isEnabled=" + isEnabled +
-                ", requester=" + from.toString() +
+        return "UpdateOffset{" +
+                "botId='" + botId + '\'' +
+                ", updateId=" + updateId +
                 ", timestamp='" + timestamp + '\'' +
                 '}';
     }
-}
\ No newline at end of file
+}
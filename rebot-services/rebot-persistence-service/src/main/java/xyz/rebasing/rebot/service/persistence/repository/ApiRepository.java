@@ -24,101 +24,268 @@
 package xyz.rebasing.rebot.service.persistence.repository;
 
 import java.lang.invoke.MethodHandles;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.context.control.ActivateRequestContext;
 import javax.inject.Inject;
 import javax.persistence.EntityManager;
-import javax.persistence.Query;
 import javax.transaction.Transactional;
 
+import org.hibernate.jpa.QueryHints;
 import org.jboss.logging.Logger;
-import xyz.rebasing.rebot.service.persistence.domain.BotStatus;
-import xyz.rebasing.rebot.service.persistence.domain.CommandStatus;
+import xyz.rebasing.rebot.service.persistence.domain.ChatState;
+import xyz.rebasing.rebot.service.persistence.domain.ChatStateId;
+import xyz.rebasing.rebot.service.persistence.domain.CommandOrdinal;
+import xyz.rebasing.rebot.service.persistence.domain.PollerLease;
+import xyz.rebasing.rebot.service.persistence.domain.UpdateOffset;
 
+/**
+ * Chat settings, update offsets and polling leases. The chat settings are kept per bot, as a group may have several
+ * bots served by this process. The chat settings and command ordinals are read through named,
+ * parameterized queries or by primary key and loaded read-only, so they are neither snapshotted nor dirty checked.
+ * <p>
+ * Only the writes start a transaction, the reads join the caller's one if any, otherwise they run on the session of
+ * the request context, activated for the call when the caller has none.
+ */
 @Transactional
 @ApplicationScoped
 public class ApiRepository {
 
     private final Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
 
+    private static final Map<String, Object> READ_ONLY = Map.of(QueryHints.HINT_READONLY, true);
+
     @Inject
     EntityManager em;
 
     /**
-     * Persist the bot state in the database
+     * Enables or disables the bot in the given chat
      *
-     * @param botStatus {@link BotStatus}
+     * @param botId   bot user id
+     * @param chatId  chat id
+     * @param enabled the new state
      */
-    public void persist(BotStatus botStatus) {
-        log.debugv("Persisting {0}", botStatus.toString());
-        em.persist(botStatus);
-        em.flush();
+    public void setBotEnabled(String botId, long chatId, boolean enabled) {
+        log.debugv("Setting bot {0} enabled to {1} for chat {2}", botId, enabled, chatId);
+        ChatStates.lock(em, botId, chatId).setBotEnabled(enabled);
     }
 
     /**
-     * Delete the bot state in the database for the given chatId
-     *
-     * @param chatId {@link long}
+     * @param botId  bot user id
+     * @param chatId chat id
+     * @return the settings stored for the given chat and bot, empty if nothing was stored for them yet
      */
-    public void remove(long chatId) {
-        log.debugv("Enabling bot for chat {0}", chatId);
-        Query q = em.createNativeQuery("DELETE FROM BOT_STATUS where ID=" + chatId + ";");
-        q.executeUpdate();
-        em.flush();
+    @ActivateRequestContext
+    @Transactional(Transactional.TxType.SUPPORTS)
+    public Optional<ChatState> findChat(String botId, long chatId) {
+        return read(() -> Optional.ofNullable(em.find(ChatState.class, new ChatStateId(botId, chatId), READ_ONLY)));
     }
 
     /**
      * @return if the bot is enabled or not
      * In case there is no state saved return true.
      *
+     * @param botId  bot user id
      * @param chatId chat id to verify if the bos enabled
      */
-    public boolean isBotEnabled(long chatId) {
-        try {
-            Query q = em.createNativeQuery("SELECT isEnabled from BOT_STATUS where ID=" + chatId + ";");
-            return (boolean) q.getSingleResult();
-        } catch (final Exception e) {
-            return true;
-        }
+    @ActivateRequestContext
+    @Transactional(Transactional.TxType.SUPPORTS)
+    public boolean isBotEnabled(String botId, long chatId) {
+        return findChat(botId, chatId).map(ChatState::isBotEnabled).orElse(true);
     }
 
     /**
      * Check if the given command is active in the provided chat group
      *
+     * @param botId bot user id
      * @param groupId chat group to be verified
      * @param commandName command to verify
      * @return if the given command is enabled is enabled or not
      */
-    public boolean isCommandEnabled(long groupId, String commandName) {
-        try {
-            Query q = em.createNativeQuery("SELECT isEnabled from COMMAND_STATUS where groupID=" + groupId + " and commandName='" + commandName + "';");
-            return (boolean) q.getSingleResult();
-        } catch (final Exception e) {
-            return true;
-        }
+    @ActivateRequestContext
+    @Transactional(Transactional.TxType.SUPPORTS)
+    public boolean isCommandEnabled(String botId, long groupId, String commandName) {
+        return findCommandOrdinal(commandName)
+                .map(ordinal -> !disabledCommands(botId, groupId).get(ordinal))
+                .orElse(true);
+    }
+
+    /**
+     * @param botId  bot user id
+     * @param chatId chat id or group
+     * @return the bitmask of the commands and plugins disabled in the given chat, by {@link CommandOrdinal}
+     */
+    @ActivateRequestContext
+    @Transactional(Transactional.TxType.SUPPORTS)
+    public BitSet disabledCommands(String botId, long chatId) {
+        return findChat(botId, chatId).map(ChatState::getDisabledCommands).orElseGet(BitSet::new);
     }
 
     /**
      * Enable the given command in the provided chatId
      *
+     * @param botId bot user id
      * @param chatId chat id or group to be verified
      * @param commandName command to be enabled
      */
-    public void enableCommand(long chatId, String commandName) {
+    public void enableCommand(String botId, long chatId, String commandName) {
         log.debugv("Enabling bot command {0} for chat {1}", commandName, chatId);
-        Query q = em.createNativeQuery("DELETE FROM COMMAND_STATUS where groupID=" + chatId + " and commandName='" + commandName + "';");
-        q.executeUpdate();
-        em.flush();
+        findCommandOrdinal(commandName).ifPresent(ordinal -> setCommandEnabled(botId, chatId, ordinal, true));
+    }
+
+    /**
+     * Disable the given command in the provided chatId
+     *
+     * @param botId bot user id
+     * @param chatId chat id or group
+     * @param commandName command to be disabled
+     */
+    public void disableCommand(String botId, long chatId, String commandName) {
+        log.debugv("Disabling bot command {0} for chat {1}", commandName, chatId);
+        setCommandEnabled(botId, chatId, commandOrdinal(commandName), false);
+    }
+
+    /**
+     * @param botId   bot user id
+     * @param chatId  chat id or group
+     * @param ordinal {@link CommandOrdinal} of the command
+     * @param enabled the new state
+     */
+    public void setCommandEnabled(String botId, long chatId, int ordinal, boolean enabled) {
+        ChatState chat = ChatStates.lock(em, botId, chatId);
+        BitSet disabled = chat.getDisabledCommands();
+        disabled.set(ordinal, !enabled);
+        chat.setDisabledCommands(disabled);
+    }
+
+    /**
+     * @return the ordinal of every command and plugin, by name
+     */
+    @ActivateRequestContext
+    @Transactional(Transactional.TxType.SUPPORTS)
+    public Map<String, Integer> commandOrdinals() {
+        return read(() -> em.createNamedQuery("CommandOrdinal.All", CommandOrdinal.class)
+                .setHint(QueryHints.HINT_READONLY, true)
+                .getResultStream()
+                .collect(Collectors.toMap(CommandOrdinal::getName, CommandOrdinal::getOrdinal)));
+    }
+
+    /**
+     * @param commandName command name without the leading slash or plugin name
+     * @return the ordinal of the given command or plugin, empty if none was assigned yet
+     */
+    @ActivateRequestContext
+    @Transactional(Transactional.TxType.SUPPORTS)
+    public Optional<Integer> findCommandOrdinal(String commandName) {
+        return read(() -> Optional.ofNullable(em.find(CommandOrdinal.class, commandName, READ_ONLY))
+                .map(CommandOrdinal::getOrdinal));
+    }
+
+    /**
+     * @param commandName command name without the leading slash or plugin name
+     * @return the ordinal of the given command or plugin, the next free one is assigned on the first call
+     */
+    public int commandOrdinal(String commandName) {
+        CommandOrdinal ordinal = em.find(CommandOrdinal.class, commandName);
+        if (null == ordinal) {
+            int next = em.createNamedQuery("CommandOrdinal.Next", Integer.class)
+                    .getSingleResult();
+            log.debugv("Assigning ordinal {0} to {1}", next, commandName);
+            // a concurrent assignment fails on the unique ordinal and rolls this transaction back
+            ordinal = new CommandOrdinal(commandName, next);
+            em.persist(ordinal);
+            em.flush();
+        }
+        return ordinal.getOrdinal();
+    }
+
+    /**
+     * Runs a read, outside of a transaction the session lives as long as the request context, so what it loaded is
+     * dropped once read, otherwise later reads in the same request would not see the writes committed meanwhile.
+     */
+    private <T> T read(Supplier<T> query) {
+        try {
+            return query.get();
+        } finally {
+            if (!em.isJoinedToTransaction()) {
+                em.clear();
+            }
+        }
+    }
+
+    /**
+     * @param botId bot that owns the offset
+     * @return the last update id fully processed by the given bot, 0 if none was committed yet
+     */
+    @ActivateRequestContext
+    @Transactional(Transactional.TxType.SUPPORTS)
+    public long getUpdateOffset(String botId) {
+        return read(() -> {
+            UpdateOffset offset = em.find(UpdateOffset.class, botId);
+            return null == offset ? 0L : offset.getUpdateId();
+        });
+    }
+
+    /**
+     * Commits the given update id as processed, the offset never moves backwards.
+     *
+     * @param botId    bot that owns the offset
+     * @param updateId the update id fully processed
+     */
+    public void commitUpdateOffset(String botId, long updateId) {
+        UpdateOffset offset = em.find(UpdateOffset.class, botId);
+        if (null == offset) {
+            em.persist(new UpdateOffset(botId, updateId));
+        } else if (updateId > offset.getUpdateId()) {
+            offset.setUpdateId(updateId);
+        }
+    }
+
+    /**
+     * Acquires or renews the polling lease of the given bot. The lease is granted when nobody holds it,
+     * when the given owner already holds it or when the current holder let it expire, according to the database clock.
+     *
+     * @param botId     bot that owns the lease
+     * @param owner     node trying to hold the lease
+     * @param ttlMillis how long the lease is valid after this call
+     * @return true if the given owner holds the lease after this call
+     */
+    public boolean acquireLease(String botId, String owner, long ttlMillis) {
+        int updated = em.createNamedQuery("PollerLease.Acquire")
+                .setParameter("owner", owner)
+                .setParameter("ttl", ttlMillis)
+                .setParameter("botId", botId)
+                .executeUpdate();
+        if (updated > 0) {
+            return true;
+        }
+        if (null != em.find(PollerLease.class, botId)) {
+            return false;
+        }
+        // a concurrent insert from another node fails on the primary key and rolls this transaction back
+        em.createNamedQuery("PollerLease.Create")
+                .setParameter("botId", botId)
+                .setParameter("owner", owner)
+                .setParameter("ttl", ttlMillis)
+                .executeUpdate();
+        return true;
     }
 
     /**
-     * Disable the given command
+     * Releases the polling lease if it is held by the given owner, so a standby node can take over right away.
      *
-     * @param commandStatus {@link CommandStatus} command to be deleted
+     * @param botId bot that owns the lease
+     * @param owner node holding the lease
      */
-    public void disableCommand(CommandStatus commandStatus) {
-        log.debugv("Disabling command {0}", commandStatus.toString());
-        em.persist(commandStatus);
-        em.flush();
+    public void releaseLease(String botId, String owner) {
+        em.createNamedQuery("PollerLease.Release")
+                .setParameter("botId", botId)
+                .setParameter("owner", owner)
+                .executeUpdate();
     }
-}
\ No newline at end of file
+}
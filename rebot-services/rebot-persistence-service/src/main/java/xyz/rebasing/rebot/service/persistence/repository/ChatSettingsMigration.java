@@ -0,0 +1,165 @@
+/*
+ *   The MIT License (MIT)
+ *
+ *   Copyright (c) 2017 Rebasing.xyz ReBot
+ *
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy of
+ *   this software and associated documentation files (the "Software"), to deal in
+ *   the Software without restriction, including without limitation the rights to
+ *   use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ *   the Software, and to permit persons to whom the Software is furnished to do so,
+ *   subject to the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ *   FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ *   COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ *   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package xyz.rebasing.rebot.service.persistence.repository;
+
+import java.lang.invoke.MethodHandles;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Priority;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import javax.interceptor.Interceptor;
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+
+import io.quarkus.runtime.StartupEvent;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+import xyz.rebasing.rebot.service.persistence.domain.ChatState;
+import xyz.rebasing.rebot.service.persistence.domain.ChatStateId;
+
+/**
+ * Moves the chat settings kept by older versions in the CHAT_LOCALE, BOT_STATUS and COMMAND_STATUS tables to
+ * CHAT_SETTINGS on startup. The migrated rows are deleted, so it only does something the first time, the empty tables
+ * can be dropped afterwards.
+ * <p>
+ * Older versions also kept a single row per chat in CHAT_SETTINGS, shared by every bot in it. The schema update adds
+ * BOT_ID but not to the primary key, so the existing rows are given to the default bot and the key is rebuilt before
+ * anything is migrated.
+ */
+@Transactional
+@ApplicationScoped
+public class ChatSettingsMigration {
+
+    private final Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
+
+    @Inject
+    EntityManager em;
+
+    @Inject
+    ApiRepository apiRepository;
+
+    // the legacy settings belonged to the only bot older versions could serve
+    @ConfigProperty(name = "xyz.rebasing.rebot.telegram.userId")
+    String defaultBotId;
+
+    void onStart(@Observes @Priority(Interceptor.Priority.PLATFORM_BEFORE) StartupEvent ev) {
+        keyByBot();
+        migrate();
+    }
+
+    /**
+     * @return true if the CHAT_SETTINGS primary key was rebuilt with BOT_ID
+     */
+    public boolean keyByBot() {
+        if (!exists("CHAT_SETTINGS")) {
+            return false;
+        }
+        if (primaryKeyColumns("BOT_ID") > 0) {
+            return false;
+        }
+        em.createNativeQuery("ALTER TABLE CHAT_SETTINGS ADD COLUMN IF NOT EXISTS BOT_ID VARCHAR(255)").executeUpdate();
+        int rows = em.createNativeQuery("UPDATE CHAT_SETTINGS SET BOT_ID = ?1 WHERE BOT_ID IS NULL OR BOT_ID = ''")
+                .setParameter(1, defaultBotId)
+                .executeUpdate();
+        em.createNativeQuery("ALTER TABLE CHAT_SETTINGS ALTER COLUMN BOT_ID SET NOT NULL").executeUpdate();
+        if (primaryKeyColumns("ID") > 0) {
+            em.createNativeQuery("ALTER TABLE CHAT_SETTINGS DROP PRIMARY KEY").executeUpdate();
+        }
+        em.createNativeQuery("ALTER TABLE CHAT_SETTINGS ADD PRIMARY KEY (BOT_ID, ID)").executeUpdate();
+        log.infov("Keyed CHAT_SETTINGS by bot, the settings of {0} chats now belong to bot {1}", rows, defaultBotId);
+        return true;
+    }
+
+    /**
+     * @return the number of chats migrated
+     */
+    public int migrate() {
+        Map<Long, ChatState> chats = new HashMap<>();
+        if (exists("CHAT_LOCALE")) {
+            for (Object[] row : rows("SELECT ID, CHAT_TITLE, CHAT_LOCALE_DEFINITION FROM CHAT_LOCALE")) {
+                ChatState chat = chat(chats, row[0]);
+                chat.setChatTitle((String) row[1]);
+                chat.setLocale((String) row[2]);
+            }
+        }
+        if (exists("BOT_STATUS")) {
+            for (Object[] row : rows("SELECT ID, ISENABLED FROM BOT_STATUS")) {
+                chat(chats, row[0]).setBotEnabled((Boolean) row[1]);
+            }
+        }
+        if (exists("COMMAND_STATUS")) {
+            for (Object[] row : rows("SELECT GROUPID, COMMANDNAME FROM COMMAND_STATUS WHERE ISENABLED = FALSE")) {
+                ChatState chat = chat(chats, row[0]);
+                BitSet disabled = chat.getDisabledCommands();
+                disabled.set(apiRepository.commandOrdinal((String) row[1]));
+                chat.setDisabledCommands(disabled);
+            }
+        }
+        if (!chats.isEmpty()) {
+            em.flush();
+            for (String table : new String[]{"CHAT_LOCALE", "BOT_STATUS", "COMMAND_STATUS"}) {
+                if (exists(table)) {
+                    em.createNativeQuery("DELETE FROM " + table).executeUpdate();
+                }
+            }
+            log.infov("Migrated the settings of {0} chats to CHAT_SETTINGS", chats.size());
+        }
+        return chats.size();
+    }
+
+    private int primaryKeyColumns(String column) {
+        return ((Number) em.createNativeQuery("SELECT COUNT(*) FROM INFORMATION_SCHEMA.INDEXES " +
+                                                      "WHERE TABLE_NAME = 'CHAT_SETTINGS' AND PRIMARY_KEY = TRUE " +
+                                                      "AND COLUMN_NAME = ?1")
+                .setParameter(1, column)
+                .getSingleResult()).intValue();
+    }
+
+    private boolean exists(String table) {
+        return ((Number) em.createNativeQuery("SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_NAME = ?1")
+                .setParameter(1, table)
+                .getSingleResult()).intValue() > 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Object[]> rows(String sql) {
+        return em.createNativeQuery(sql).getResultList();
+    }
+
+    private ChatState chat(Map<Long, ChatState> chats, Object id) {
+        return chats.computeIfAbsent(((Number) id).longValue(), chatId -> {
+            ChatState chat = em.find(ChatState.class, new ChatStateId(defaultBotId, chatId));
+            if (null == chat) {
+                chat = new ChatState(defaultBotId, chatId);
+                em.persist(chat);
+            }
+            return chat;
+        });
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ *   The MIT License (MIT)
+ *
+ *   Copyright (c) 2017 Rebasing.xyz ReBot
+ *
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy of
+ *   this software and associated documentation files (the "Software"), to deal in
+ *   the Software without restriction, including without limitation the rights to
+ *   use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ *   the Software, and to permit persons to whom the Software is furnished to do so,
+ *   subject to the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ *   FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ *   COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ *   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package xyz.rebasing.rebot.service.persistence.repository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+
+import org.hibernate.Session;
+import xyz.rebasing.rebot.service.persistence.domain.ChatState;
+import xyz.rebasing.rebot.service.persistence.domain.ChatStateId;
+
+/**
+ * Row lock shared by the repositories writing the settings of a chat.
+ */
+final class ChatStates {
+
+    private ChatStates() {
+    }
+
+    /**
+     * @param em     entity manager joined to the current transaction
+     * @param botId  bot user id
+     * @param chatId chat id
+     * @return the settings of the given chat for the given bot, locked until the end of the transaction, created if
+     * missing
+     */
+    static ChatState lock(EntityManager em, String botId, long chatId) {
+        ChatState chat = em.find(ChatState.class, new ChatStateId(botId, chatId), LockModeType.PESSIMISTIC_WRITE);
+        if (null == chat) {
+            chat = new ChatState(botId, chatId);
+            em.persist(chat);
+        } else {
+            // it may have been loaded read-only earlier in the same transaction
+            em.unwrap(Session.class).setReadOnly(chat, false);
+        }
+        return chat;
+    }
+}
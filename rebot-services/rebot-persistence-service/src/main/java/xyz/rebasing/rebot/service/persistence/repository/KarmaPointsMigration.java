@@ -0,0 +1,70 @@
+/*
+ *   The MIT License (MIT)
+ *
+ *   Copyright (c) 2017 Rebasing.xyz ReBot
+ *
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy of
+ *   this software and associated documentation files (the "Software"), to deal in
+ *   the Software without restriction, including without limitation the rights to
+ *   use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ *   the Software, and to permit persons to whom the Software is furnished to do so,
+ *   subject to the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ *   FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ *   COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ *   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package xyz.rebasing.rebot.service.persistence.repository;
+
+import java.lang.invoke.MethodHandles;
+
+import javax.annotation.Priority;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import javax.interceptor.Interceptor;
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+
+import io.quarkus.runtime.StartupEvent;
+import org.jboss.logging.Logger;
+
+/**
+ * Older versions stored the karma points as text, the schema update doesn't change the type of an existing column so
+ * it is converted to a number on startup, allowing the points to be added by the database.
+ */
+@Transactional
+@ApplicationScoped
+public class KarmaPointsMigration {
+
+    private final Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
+
+    @Inject
+    EntityManager em;
+
+    void onStart(@Observes @Priority(Interceptor.Priority.PLATFORM_BEFORE) StartupEvent ev) {
+        migrate();
+    }
+
+    /**
+     * @return true if the POINTS column was converted
+     */
+    public boolean migrate() {
+        Number textColumns = (Number) em.createNativeQuery(
+                "SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_NAME = 'KARMA' AND COLUMN_NAME = 'POINTS' " +
+                        "AND TYPE_NAME LIKE '%CHAR%'").getSingleResult();
+        if (textColumns.intValue() == 0) {
+            return false;
+        }
+        em.createNativeQuery("ALTER TABLE KARMA ALTER COLUMN POINTS INTEGER NOT NULL").executeUpdate();
+        log.info("Converted KARMA.POINTS to a numeric column");
+        return true;
+    }
+}
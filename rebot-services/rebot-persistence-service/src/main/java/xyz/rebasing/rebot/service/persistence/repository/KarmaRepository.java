@@ -24,10 +24,26 @@
 package xyz.rebasing.rebot.service.persistence.repository;
 
 import java.lang.invoke.MethodHandles;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
+import javax.annotation.PostConstruct;
 import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
 import javax.inject.Inject;
 import javax.persistence.EntityManager;
 import javax.persistence.criteria.CriteriaBuilder;
@@ -35,53 +51,225 @@ import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Root;
 import javax.transaction.Transactional;
 
+import io.quarkus.runtime.ShutdownEvent;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hibernate.Session;
 import org.jboss.logging.Logger;
 import xyz.rebasing.rebot.service.persistence.domain.Karma;
 
+/**
+ * Karma points are counted in memory and written behind: votes only add to a striped counter, so concurrent votes
+ * don't lock nor lose each other, and the points accumulated since the last write are applied with one batched
+ * <b>UPDATE KARMA SET POINTS = POINTS + ?</b> per key before the offset of the updates is committed, periodically and
+ * when the application stops. Reads return the points stored, as read from the database, plus the ones still in memory,
+ * the stored points are never cached so a node taking over the polling after a failover starts from what was written.
+ */
 @Transactional
 @ApplicationScoped
-public class KarmaRepository {
+public class KarmaRepository implements WriteBehind {
 
     private final Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
+    private static final String ADD_POINTS = "UPDATE KARMA SET POINTS = POINTS + ? WHERE USERNAME = ?";
+    private static final int MAX_KEY_LENGTH = 50;
+
+    @ConfigProperty(name = "xyz.rebasing.rebot.plugin.karma.flush.interval", defaultValue = "5000")
+    long flushInterval;
 
     @Inject
     EntityManager em;
 
-    public int get(String key) {
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    // readers combine the stored and the pending points under the read lock, a flush moves them under the write lock
+    private final ReadWriteLock flushLock = new ReentrantReadWriteLock();
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "rebot-karma-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    @SuppressWarnings("FutureReturnValueIgnored")
+    void start() {
+        writer.scheduleWithFixedDelay(this::flush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    void onStop(@Observes ShutdownEvent ev) {
+        writer.shutdown();
         try {
-            CriteriaBuilder criteriaBuilder = em.getCriteriaBuilder();
-            CriteriaQuery<String> karmaPoints = criteriaBuilder.createQuery(String.class);
-            Root<Karma> karma = karmaPoints.from(Karma.class);
-            karmaPoints.select(karma.get("points")).where(criteriaBuilder.equal(karma.get("username"), key));
-            return Integer.parseInt(em.createQuery(karmaPoints).getSingleResult());
-        } catch (final Exception e) {
-            log.debugv("get() - There is no karma for [{0}]", key);
+            writer.awaitTermination(flushInterval, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    /**
+     * @param key user or thing
+     * @return the current karma points of the given key
+     */
+    @Transactional(Transactional.TxType.SUPPORTS)
+    public int get(String key) {
+        return points(key, counters.get(key));
+    }
+
+    /**
+     * Adds a vote, it is written to the database in background.
+     *
+     * @param key   user or thing
+     * @param delta points to add, negative to remove
+     * @return the karma points of the given key including this vote
+     */
+    @Transactional(Transactional.TxType.SUPPORTS)
+    public int add(String key, int delta) {
+        if (key.length() > MAX_KEY_LENGTH) {
+            log.warnv("Ignoring the karma of [{0}], it is longer than {1} characters", key, MAX_KEY_LENGTH);
             return 0;
         }
+        Counter counter = counters.computeIfAbsent(key, k -> new Counter());
+        counter.added.add(delta);
+        return points(key, counter);
+    }
+
+    /**
+     * @param key user or thing
+     * @return the karma points of the given key already written to the database, 0 if none
+     */
+    public int storedPoints(String key) {
+        Karma karma = em.find(Karma.class, key);
+        return null == karma ? 0 : karma.getPoints();
     }
 
+    /**
+     * @param key like expression, e.g. %user%
+     * @return the karma points of the keys matching the expression, including the keys only voted in memory so far
+     */
     public List<Karma> list(String key) {
+        flushLock.readLock().lock();
         try {
             CriteriaBuilder criteriaBuilder = em.getCriteriaBuilder();
             CriteriaQuery<Karma> karmaQuery = criteriaBuilder.createQuery(Karma.class);
             Root<Karma> karma = karmaQuery.from(Karma.class);
             karmaQuery.select(karma)
-                    .where(criteriaBuilder.like(karma.get("username"), key))
-                    .orderBy(criteriaBuilder.asc(karma.get("username")));
-            return em.createQuery(karmaQuery).getResultList();
+                    .where(criteriaBuilder.like(karma.get("username"), key));
+            Map<String, Integer> points = new TreeMap<>();
+            em.createQuery(karmaQuery).getResultStream().forEach(k -> points.put(k.getUsername(), k.getPoints()));
+            Pattern like = like(key);
+            counters.forEach((username, counter) -> {
+                if (like.matcher(username).matches()) {
+                    points.merge(username, (int) counter.pending(), Integer::sum);
+                }
+            });
+            return points.entrySet().stream()
+                    .map(entry -> new Karma(entry.getKey(), entry.getValue()))
+                    .collect(Collectors.toList());
         } catch (final Exception e) {
             log.debugv("list() - There is no karma for [{0}]", key);
-            return Arrays.asList(new Karma(key, "0"));
+            return Arrays.asList(new Karma(key, 0));
+        } finally {
+            flushLock.readLock().unlock();
         }
     }
 
-    public void updateOrCreateKarma(Karma karma) {
-        log.debugv("Updating the karma for [{0}]", karma.toString());
+    /**
+     * Writes the points accumulated in memory since the last write, in a transaction of its own.
+     */
+    @Override
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    public boolean flush() {
+        flushLock.writeLock().lock();
         try {
-            em.merge(karma);
-            em.flush();
-        } catch (final Exception e) {
-            log.warnv("Failed to persist object [{0}]: {1}", karma.toString(), e.getMessage());
+            Map<String, Long> deltas = new HashMap<>();
+            counters.forEach((key, counter) -> {
+                long delta = counter.pending();
+                if (delta != 0) {
+                    deltas.put(key, delta);
+                }
+            });
+            if (deltas.isEmpty()) {
+                return true;
+            }
+            try {
+                addPoints(deltas);
+                deltas.forEach((key, delta) -> counters.get(key).flushed += delta);
+                log.debugv("Karma of {0} keys written", deltas.size());
+                return true;
+            } catch (final Exception e) {
+                // kept in memory, retried on the next write
+                log.warnv("Failed to write the karma of {0} keys: {1}", deltas.size(), e.getMessage());
+                return false;
+            }
+        } finally {
+            flushLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds the given points to the stored ones, with a single batch, keys not stored yet are inserted.
+     *
+     * @param deltas points to add by key
+     */
+    public void addPoints(Map<String, Long> deltas) {
+        List<String> keys = new ArrayList<>(deltas.keySet());
+        List<String> missing = new ArrayList<>();
+        em.unwrap(Session.class).doWork(connection -> {
+            try (PreparedStatement update = connection.prepareStatement(ADD_POINTS)) {
+                for (String key : keys) {
+                    update.setLong(1, deltas.get(key));
+                    update.setString(2, key);
+                    update.addBatch();
+                }
+                int[] updated = update.executeBatch();
+                for (int i = 0; i < updated.length; i++) {
+                    if (updated[i] == 0) {
+                        missing.add(keys.get(i));
+                    }
+                }
+            }
+        });
+        missing.forEach(key -> em.persist(new Karma(key, deltas.get(key).intValue())));
+        em.flush();
+    }
+
+    /**
+     * @return the stored points of the key plus the ones not written yet
+     */
+    private int points(String key, Counter counter) {
+        flushLock.readLock().lock();
+        try {
+            return storedPoints(key) + (null == counter ? 0 : (int) counter.pending());
+        } finally {
+            flushLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the given like expression, with the default backslash escape, as a regular expression
+     */
+    private static Pattern like(String expression) {
+        StringBuilder regex = new StringBuilder();
+        for (int i = 0; i < expression.length(); i++) {
+            char c = expression.charAt(i);
+            if (c == '\\' && i + 1 < expression.length()) {
+                regex.append(Pattern.quote(String.valueOf(expression.charAt(++i))));
+            } else if (c == '%') {
+                regex.append(".*");
+            } else if (c == '_') {
+                regex.append('.');
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+
+    private static final class Counter {
+
+        private final LongAdder added = new LongAdder();
+        // part of added already written, guarded by flushLock
+        private long flushed;
+
+        private long pending() {
+            return added.sum() - flushed;
         }
     }
 }
@@ -24,16 +24,22 @@
 package xyz.rebasing.rebot.service.persistence.repository;
 
 import java.lang.invoke.MethodHandles;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 import javax.persistence.EntityManager;
-import javax.persistence.criteria.CriteriaQuery;
 import javax.transaction.Transactional;
 
+import org.hibernate.jpa.QueryHints;
 import org.jboss.logging.Logger;
 import xyz.rebasing.rebot.service.persistence.domain.ChatLocale;
+import xyz.rebasing.rebot.service.persistence.domain.ChatState;
+import xyz.rebasing.rebot.service.persistence.domain.ChatStateId;
 
 @Transactional
 @ApplicationScoped
@@ -45,33 +51,60 @@ public class LocaleRepository {
     @Inject
     EntityManager em;
 
-    public String get(long chatId, String chatTitle) {
-        try {
-            return em.createNamedQuery("ChatLocale.Get", ChatLocale.class)
-                    .setParameter("chatId", chatId)
-                    .getSingleResult().getChatLocale();
-        } catch (final Exception e) {
-            e.printStackTrace();
+    public String get(String botId, long chatId, String chatTitle) {
+        return find(botId, chatId).orElseGet(() -> {
             log.debugv("get() - There is no locale for  chat [{0}], defaulting to {1}", chatId, DEFAULT_LOCALE);
-            this.persistChatLocale(new ChatLocale(chatId, chatTitle, DEFAULT_LOCALE));
+            this.persistChatLocale(new ChatLocale(botId, chatId, chatTitle, DEFAULT_LOCALE));
             return DEFAULT_LOCALE;
+        });
+    }
+
+    /**
+     * @param botId  bot user id
+     * @param chatId chat id
+     * @return the locale defined for the given chat and bot, empty if none was defined yet
+     */
+    public Optional<String> find(String botId, long chatId) {
+        return Optional.ofNullable(em.find(ChatState.class, new ChatStateId(botId, chatId),
+                                           Map.of(QueryHints.HINT_READONLY, true)))
+                .map(ChatState::getLocale);
+    }
+
+    /**
+     * Stores the locale of chats seen for the first time, in a single transaction. Chats that got a locale defined
+     * in the meantime keep it.
+     *
+     * @param chatLocales the locale resolved for each chat
+     */
+    public void persistDefaultLocales(Collection<ChatLocale> chatLocales) {
+        log.debugv("Persisting the default locale of {0} chats", chatLocales.size());
+        for (ChatLocale chatLocale : chatLocales) {
+            ChatState chat = ChatStates.lock(em, chatLocale.getBotId(), chatLocale.getChatId());
+            if (null == chat.getLocale()) {
+                chat.setChatTitle(chatLocale.getChatTitle());
+                chat.setLocale(chatLocale.getChatLocale());
+            }
         }
+        em.flush();
     }
 
     public List<ChatLocale> getRegisteredChatLocale() {
-        CriteriaQuery<ChatLocale> criteria = em.getCriteriaBuilder().createQuery(ChatLocale.class);
-        criteria.select(criteria.from(ChatLocale.class));
-        return em.createQuery(criteria).getResultList();
+        return em.createNamedQuery("ChatState.WithLocale", ChatState.class)
+                .getResultStream()
+                .map(c -> new ChatLocale(c.getBotId(), c.getChatId(), c.getChatTitle(), c.getLocale()))
+                .collect(Collectors.toList());
     }
 
     public String persistChatLocale(ChatLocale chatLocale) {
         try {
             log.debugv("Persisting {0}", chatLocale.toString());
-            em.merge(chatLocale);
+            ChatState chat = ChatStates.lock(em, chatLocale.getBotId(), chatLocale.getChatId());
+            chat.setChatTitle(chatLocale.getChatTitle());
+            chat.setLocale(chatLocale.getChatLocale());
             em.flush();
         } catch (final Exception e) {
             return "failed to persist locale " + chatLocale.toString();
         }
         return "persisted";
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,72 @@
+/*
+ *   The MIT License (MIT)
+ *
+ *   Copyright (c) 2017 Rebasing.xyz ReBot
+ *
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy of
+ *   this software and associated documentation files (the "Software"), to deal in
+ *   the Software without restriction, including without limitation the rights to
+ *   use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ *   the Software, and to permit persons to whom the Software is furnished to do so,
+ *   subject to the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ *   FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ *   COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ *   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package xyz.rebasing.rebot.service.persistence.repository;
+
+import java.lang.invoke.MethodHandles;
+
+import javax.annotation.Priority;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import javax.interceptor.Interceptor;
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+
+import io.quarkus.runtime.StartupEvent;
+import org.jboss.logging.Logger;
+
+/**
+ * Older versions stored the lease expiration in EXPIRES_AT, as milliseconds of the clock of the node holding it.
+ * The schema update adds VALID_UNTIL, computed by the database, but keeps the former not null column which would
+ * refuse new leases, so it is dropped on startup. Leases are short lived, nothing needs to be carried over.
+ */
+@Transactional
+@ApplicationScoped
+public class PollerLeaseMigration {
+
+    private final Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
+
+    @Inject
+    EntityManager em;
+
+    void onStart(@Observes @Priority(Interceptor.Priority.PLATFORM_BEFORE) StartupEvent ev) {
+        migrate();
+    }
+
+    /**
+     * @return true if the EXPIRES_AT column was dropped
+     */
+    public boolean migrate() {
+        Number legacyColumns = (Number) em.createNativeQuery(
+                "SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_NAME = 'POLLER_LEASE' " +
+                        "AND COLUMN_NAME = 'EXPIRES_AT'").getSingleResult();
+        if (legacyColumns.intValue() == 0) {
+            return false;
+        }
+        em.createNativeQuery("DELETE FROM POLLER_LEASE").executeUpdate();
+        em.createNativeQuery("ALTER TABLE POLLER_LEASE DROP COLUMN EXPIRES_AT").executeUpdate();
+        log.info("Dropped POLLER_LEASE.EXPIRES_AT, leases are now timed by the database clock");
+        return true;
+    }
+}
@@ -0,0 +1,39 @@
+/*
+  The MIT License (MIT)
+
+  Copyright (c) 2017 Rebasing.xyz ReBot 
+
+  Permission is hereby granted, free of charge, to any person obtaining a copy of
+  this software and associated documentation files (the "Software"), to deal in
+  the Software without restriction, including without limitation the rights to
+  use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+  the Software, and to permit persons to whom the Software is furnished to do so,
+  subject to the following conditions:
+
+  The above copyright notice and this permission notice shall be included in all
+  copies or substantial portions of the Software.
+
+  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+  FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+  COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+  IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+  CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package xyz.rebasing.rebot.service.persistence.repository;
+
+/**
+ * Repository keeping writes in memory to store them later in batches. Pending writes are flushed before the update
+ * offset is committed, so the changes made while processing an update are stored before Telegram is told it doesn't
+ * need to deliver the update again.
+ */
+public interface WriteBehind {
+
+    /**
+     * Stores the writes kept in memory.
+     *
+     * @return false if they could not be stored, they are kept and retried on the next flush
+     */
+    boolean flush();
+}
@@ -0,0 +1,93 @@
+package xyz.rebasing.rebot.service.persistence.api;
+
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+
+import io.quarkus.test.junit.QuarkusTest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import xyz.rebasing.rebot.service.persistence.repository.ApiRepository;
+import xyz.rebasing.rebot.service.persistence.repository.ChatSettingsMigration;
+import xyz.rebasing.rebot.service.persistence.repository.LocaleRepository;
+
+@QuarkusTest
+public class ChatSettingsMigrationTest {
+
+    // xyz.rebasing.rebot.telegram.userId of the test profile, the legacy settings belong to it
+    private static final String DEFAULT_BOT = "userid";
+
+    @Inject
+    EntityManager em;
+
+    @Inject
+    ChatSettingsMigration migration;
+
+    @Inject
+    ApiRepository apiRepository;
+
+    @Inject
+    LocaleRepository localeRepository;
+
+    @BeforeEach
+    @Transactional
+    public void createLegacyTables() {
+        em.createNativeQuery("CREATE TABLE CHAT_LOCALE (ID BIGINT NOT NULL PRIMARY KEY, CHAT_TITLE VARCHAR(255), " +
+                                     "CHAT_LOCALE_DEFINITION VARCHAR(255))").executeUpdate();
+        em.createNativeQuery("CREATE TABLE BOT_STATUS (ID BIGINT NOT NULL PRIMARY KEY, ISENABLED BOOLEAN)").executeUpdate();
+        em.createNativeQuery("CREATE TABLE COMMAND_STATUS (ID BIGINT NOT NULL PRIMARY KEY, GROUPID BIGINT, " +
+                                     "COMMANDNAME VARCHAR(255), ISENABLED BOOLEAN)").executeUpdate();
+        em.createNativeQuery("INSERT INTO CHAT_LOCALE VALUES (-2001, 'legacy', 'pt_BR')").executeUpdate();
+        em.createNativeQuery("INSERT INTO BOT_STATUS VALUES (-2002, FALSE)").executeUpdate();
+        em.createNativeQuery("INSERT INTO COMMAND_STATUS VALUES (1, -2001, 'legacy1', FALSE)").executeUpdate();
+        em.createNativeQuery("INSERT INTO COMMAND_STATUS VALUES (2, -2002, 'legacy2', FALSE)").executeUpdate();
+    }
+
+    @AfterEach
+    @Transactional
+    public void dropLegacyTables() {
+        em.createNativeQuery("DELETE FROM CHAT_SETTINGS WHERE ID IN (-2001, -2002, -2003)").executeUpdate();
+        em.createNativeQuery("DROP TABLE CHAT_LOCALE").executeUpdate();
+        em.createNativeQuery("DROP TABLE BOT_STATUS").executeUpdate();
+        em.createNativeQuery("DROP TABLE COMMAND_STATUS").executeUpdate();
+    }
+
+    @Test
+    public void testMigrate() {
+        Assertions.assertEquals(2, migration.migrate());
+
+        Assertions.assertEquals("pt_BR", localeRepository.get(DEFAULT_BOT, -2001, "legacy"));
+        Assertions.assertTrue(apiRepository.isBotEnabled(DEFAULT_BOT, -2001));
+        Assertions.assertFalse(apiRepository.isCommandEnabled(DEFAULT_BOT, -2001, "legacy1"));
+        Assertions.assertTrue(apiRepository.isCommandEnabled(DEFAULT_BOT, -2001, "legacy2"));
+
+        Assertions.assertFalse(apiRepository.isBotEnabled(DEFAULT_BOT, -2002));
+        Assertions.assertFalse(apiRepository.isCommandEnabled(DEFAULT_BOT, -2002, "legacy2"));
+
+        // the legacy rows are gone, nothing is migrated twice
+        Assertions.assertEquals(0, migration.migrate());
+    }
+
+    @Test
+    public void testKeyByBot() {
+        // already keyed by the schema generation
+        Assertions.assertFalse(migration.keyByBot());
+
+        unkeyChatSettings();
+        Assertions.assertTrue(migration.keyByBot());
+        Assertions.assertFalse(apiRepository.isBotEnabled(DEFAULT_BOT, -2003));
+        Assertions.assertTrue(apiRepository.isBotEnabled("other", -2003));
+        Assertions.assertFalse(migration.keyByBot());
+    }
+
+    // the shape left by older versions once the schema update added BOT_ID
+    @Transactional
+    void unkeyChatSettings() {
+        em.createNativeQuery("ALTER TABLE CHAT_SETTINGS DROP PRIMARY KEY").executeUpdate();
+        em.createNativeQuery("ALTER TABLE CHAT_SETTINGS ALTER COLUMN BOT_ID SET NULL").executeUpdate();
+        em.createNativeQuery("INSERT INTO CHAT_SETTINGS (ID, BOT_ENABLED, DISABLED_COMMANDS) VALUES (-2003, FALSE, X'')")
+                .executeUpdate();
+    }
+}
@@ -1,5 +1,8 @@
 package xyz.rebasing.rebot.service.persistence.api;
 
+import java.util.BitSet;
+import java.util.concurrent.CompletableFuture;
+
 import javax.inject.Inject;
 import javax.transaction.Transactional;
 
@@ -9,13 +12,15 @@ import org.junit.jupiter.api.MethodOrderer;
 import org.junit.jupiter.api.Order;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestMethodOrder;
-import xyz.rebasing.rebot.service.persistence.domain.CommandStatus;
 import xyz.rebasing.rebot.service.persistence.repository.ApiRepository;
 
 @QuarkusTest
 @TestMethodOrder(MethodOrderer.OrderAnnotation.class)
 public class CommandTest {
 
+    private static final String BOT = "bot1";
+    private static final String OTHER_BOT = "bot2";
+
     @Inject
     ApiRepository repository;
 
@@ -24,16 +29,16 @@ public class CommandTest {
     @Transactional
     public void testDisableCommand() {
         // first the command should be enabled as there is nothing in the table
-        Assertions.assertTrue(repository.isCommandEnabled(-1, "command1"));
-        Assertions.assertTrue(repository.isCommandEnabled(-1, "command2"));
+        Assertions.assertTrue(repository.isCommandEnabled(BOT, -1, "command1"));
+        Assertions.assertTrue(repository.isCommandEnabled(BOT, -1, "command2"));
 
         // disable both commands
-        repository.disableCommand(new CommandStatus(-1L, "command1", false));
-        repository.disableCommand(new CommandStatus(-1L, "command2", false));
+        repository.disableCommand(BOT, -1L, "command1");
+        repository.disableCommand(BOT, -1L, "command2");
 
         // expected to be disable
-        Assertions.assertFalse(repository.isCommandEnabled(-1, "command1"));
-        Assertions.assertFalse(repository.isCommandEnabled(-1, "command2"));
+        Assertions.assertFalse(repository.isCommandEnabled(BOT, -1, "command1"));
+        Assertions.assertFalse(repository.isCommandEnabled(BOT, -1, "command2"));
     }
 
     @Test
@@ -41,11 +46,73 @@ public class CommandTest {
     public void testEnableCommand() {
 
         // enable boot commands
-        repository.enableCommand(-1L, "command1");
-        repository.enableCommand(-1L, "command2");
+        repository.enableCommand(BOT, -1L, "command1");
+        repository.enableCommand(BOT, -1L, "command2");
 
         // commands expected not to be enabled
-        Assertions.assertTrue(repository.isCommandEnabled(-1, "command1"));
-        Assertions.assertTrue(repository.isCommandEnabled(-1, "command2"));
+        Assertions.assertTrue(repository.isCommandEnabled(BOT, -1, "command1"));
+        Assertions.assertTrue(repository.isCommandEnabled(BOT, -1, "command2"));
+    }
+
+    @Test
+    @Order(3)
+    public void testDisabledCommands() {
+        Assertions.assertTrue(repository.disabledCommands(BOT, -2L).isEmpty());
+
+        repository.disableCommand(BOT, -2L, "command1");
+        repository.disableCommand(BOT, -2L, "plugin1");
+        BitSet expected = new BitSet();
+        expected.set(repository.commandOrdinal("command1"));
+        expected.set(repository.commandOrdinal("plugin1"));
+        Assertions.assertEquals(expected, repository.disabledCommands(BOT, -2L));
+
+        repository.enableCommand(BOT, -2L, "command1");
+        expected.clear(repository.commandOrdinal("command1"));
+        Assertions.assertEquals(expected, repository.disabledCommands(BOT, -2L));
+        repository.enableCommand(BOT, -2L, "plugin1");
+    }
+
+    @Test
+    @Order(4)
+    public void testCommandOrdinal() {
+        int ordinal = repository.commandOrdinal("command3");
+        Assertions.assertEquals(ordinal, repository.commandOrdinal("command3"));
+        Assertions.assertNotEquals(ordinal, repository.commandOrdinal("command4"));
+        Assertions.assertEquals(ordinal, repository.commandOrdinals().get("command3"));
+    }
+
+    @Test
+    @Order(5)
+    public void testBotEnabled() {
+        Assertions.assertTrue(repository.isBotEnabled(BOT, -3L));
+        repository.setBotEnabled(BOT, -3L, false);
+        Assertions.assertFalse(repository.isBotEnabled(BOT, -3L));
+        repository.setBotEnabled(BOT, -3L, true);
+        Assertions.assertTrue(repository.isBotEnabled(BOT, -3L));
+    }
+
+    @Test
+    @Order(6)
+    public void testSettingsPerBot() {
+        // several bots in the same group keep their own settings
+        repository.setBotEnabled(BOT, -5L, false);
+        repository.disableCommand(BOT, -5L, "command1");
+        Assertions.assertFalse(repository.isBotEnabled(BOT, -5L));
+        Assertions.assertFalse(repository.isCommandEnabled(BOT, -5L, "command1"));
+        Assertions.assertTrue(repository.isBotEnabled(OTHER_BOT, -5L));
+        Assertions.assertTrue(repository.isCommandEnabled(OTHER_BOT, -5L, "command1"));
+        Assertions.assertTrue(repository.findChat(OTHER_BOT, -5L).isEmpty());
+    }
+
+    @Test
+    @Order(7)
+    public void testReadFromProcessingThread() throws Exception {
+        // the threads processing the messages have neither a transaction nor a request context
+        Assertions.assertTrue(CompletableFuture.supplyAsync(() -> repository.isBotEnabled(BOT, -4L)).get());
+        Assertions.assertTrue(CompletableFuture.supplyAsync(() -> repository.findChat(BOT, -4L)).get().isEmpty());
+        Assertions.assertTrue(CompletableFuture.supplyAsync(() -> repository.findCommandOrdinal("command5")).get().isEmpty());
+        repository.setBotEnabled(BOT, -4L, false);
+        Assertions.assertFalse(CompletableFuture.supplyAsync(() -> repository.isBotEnabled(BOT, -4L)).get());
+        Assertions.assertFalse(repository.isBotEnabled(BOT, -4L));
     }
 }
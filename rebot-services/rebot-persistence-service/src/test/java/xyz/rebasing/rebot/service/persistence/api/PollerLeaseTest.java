@@ -0,0 +1,80 @@
+package xyz.rebasing.rebot.service.persistence.api;
+
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+
+import io.quarkus.test.junit.QuarkusTest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import xyz.rebasing.rebot.service.persistence.repository.ApiRepository;
+import xyz.rebasing.rebot.service.persistence.repository.PollerLeaseMigration;
+
+@QuarkusTest
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class PollerLeaseTest {
+
+    private static final long TTL = 15_000L;
+    // long enough for the database clock to move past the lease
+    private static final long SHORT_TTL = 50L;
+
+    @Inject
+    EntityManager em;
+
+    @Inject
+    ApiRepository repository;
+
+    @Inject
+    PollerLeaseMigration migration;
+
+    @Test
+    @Order(1)
+    public void testOnlyOneOwner() {
+        Assertions.assertTrue(repository.acquireLease("bot1", "node-a", TTL));
+        // renewal by the owner
+        Assertions.assertTrue(repository.acquireLease("bot1", "node-a", TTL));
+        // standby can't take it while it is valid
+        Assertions.assertFalse(repository.acquireLease("bot1", "node-b", TTL));
+        // other bots have their own lease
+        Assertions.assertTrue(repository.acquireLease("bot2", "node-b", TTL));
+    }
+
+    @Test
+    @Order(2)
+    public void testStandbyTakesOverExpiredLease() throws InterruptedException {
+        Assertions.assertTrue(repository.acquireLease("bot1", "node-a", SHORT_TTL));
+        Thread.sleep(SHORT_TTL * 2);
+        Assertions.assertTrue(repository.acquireLease("bot1", "node-b", TTL));
+        // the former owner lost it
+        Assertions.assertFalse(repository.acquireLease("bot1", "node-a", TTL));
+    }
+
+    @Test
+    @Order(3)
+    public void testRelease() throws InterruptedException {
+        // releasing a lease held by someone else is a no-op
+        repository.releaseLease("bot1", "node-a");
+        Assertions.assertFalse(repository.acquireLease("bot1", "node-a", TTL));
+
+        repository.releaseLease("bot1", "node-b");
+        Thread.sleep(5L);
+        Assertions.assertTrue(repository.acquireLease("bot1", "node-a", TTL));
+    }
+
+    @Test
+    @Order(4)
+    public void testMigrateLegacyLeases() {
+        addLegacyColumn();
+        Assertions.assertTrue(migration.migrate());
+        Assertions.assertFalse(migration.migrate());
+        Assertions.assertTrue(repository.acquireLease("bot1", "node-b", TTL));
+    }
+
+    @Transactional
+    void addLegacyColumn() {
+        em.createNativeQuery("ALTER TABLE POLLER_LEASE ADD COLUMN EXPIRES_AT BIGINT DEFAULT 0 NOT NULL").executeUpdate();
+    }
+}
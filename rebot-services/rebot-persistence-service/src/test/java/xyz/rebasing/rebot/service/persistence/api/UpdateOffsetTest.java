@@ -0,0 +1,42 @@
+package xyz.rebasing.rebot.service.persistence.api;
+
+import javax.inject.Inject;
+
+import io.quarkus.test.junit.QuarkusTest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import xyz.rebasing.rebot.service.persistence.repository.ApiRepository;
+
+@QuarkusTest
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class UpdateOffsetTest {
+
+    @Inject
+    ApiRepository repository;
+
+    @Test
+    @Order(1)
+    public void testCommitOffset() {
+        // nothing committed yet
+        Assertions.assertEquals(0L, repository.getUpdateOffset("bot1"));
+
+        repository.commitUpdateOffset("bot1", 10L);
+        Assertions.assertEquals(10L, repository.getUpdateOffset("bot1"));
+
+        repository.commitUpdateOffset("bot1", 11L);
+        Assertions.assertEquals(11L, repository.getUpdateOffset("bot1"));
+    }
+
+    @Test
+    @Order(2)
+    public void testOffsetNeverMovesBackwards() {
+        repository.commitUpdateOffset("bot1", 5L);
+        Assertions.assertEquals(11L, repository.getUpdateOffset("bot1"));
+
+        // other bots keep their own offset
+        Assertions.assertEquals(0L, repository.getUpdateOffset("bot2"));
+    }
+}
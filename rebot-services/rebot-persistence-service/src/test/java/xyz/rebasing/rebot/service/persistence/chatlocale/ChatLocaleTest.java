@@ -1,5 +1,8 @@
 package xyz.rebasing.rebot.service.persistence.chatlocale;
 
+import java.util.List;
+import java.util.Optional;
+
 import javax.inject.Inject;
 
 import io.quarkus.test.junit.QuarkusTest;
@@ -15,33 +18,56 @@ import xyz.rebasing.rebot.service.persistence.repository.LocaleRepository;
 @TestMethodOrder(MethodOrderer.OrderAnnotation.class)
 public class ChatLocaleTest {
 
+    private static final String BOT = "bot1";
+    private static final String OTHER_BOT = "bot2";
+
     @Inject
     LocaleRepository localeRepository;
 
     @Test
     @Order(1)
     public void persistChatLocale() {
-        Assertions.assertEquals("persisted", localeRepository.persistChatLocale(new ChatLocale(-1010, "test", "en_us")));
-        Assertions.assertEquals("persisted", localeRepository.persistChatLocale(new ChatLocale(-1010, "test", "pt_br")));
+        Assertions.assertEquals("persisted", localeRepository.persistChatLocale(new ChatLocale(BOT, -1010, "test", "en_us")));
+        Assertions.assertEquals("persisted", localeRepository.persistChatLocale(new ChatLocale(BOT, -1010, "test", "pt_br")));
     }
 
     @Test
     @Order(2)
     public void getChatLocale() {
-        Assertions.assertEquals("persisted", localeRepository.persistChatLocale(new ChatLocale(-1012, "test", "en_us")));
-        Assertions.assertEquals("persisted", localeRepository.persistChatLocale(new ChatLocale(-1011, "test", "pt_br")));
+        Assertions.assertEquals("persisted", localeRepository.persistChatLocale(new ChatLocale(BOT, -1012, "test", "en_us")));
+        Assertions.assertEquals("persisted", localeRepository.persistChatLocale(new ChatLocale(BOT, -1011, "test", "pt_br")));
         Assertions.assertEquals(3, localeRepository.getRegisteredChatLocale().size());
     }
 
     @Order(3)
     @Test
     public void getChatLocaleDefinition() {
-        Assertions.assertEquals("pt_br", localeRepository.get(-1011, "chatName"));
+        Assertions.assertEquals("pt_br", localeRepository.get(BOT, -1011, "chatName"));
     }
 
     @Order(4)
     @Test
     public void getChatLocaleDefinitionException() {
-        Assertions.assertEquals("en_US", localeRepository.get(-1011111, "chatName"));
+        Assertions.assertEquals("en_US", localeRepository.get(BOT, -1011111, "chatName"));
+    }
+
+    @Order(5)
+    @Test
+    public void persistDefaultLocales() {
+        Assertions.assertTrue(localeRepository.find(BOT, -1013).isEmpty());
+        localeRepository.persistDefaultLocales(List.of(new ChatLocale(BOT, -1013, null, "pt_BR"),
+                                                       new ChatLocale(BOT, -1011, "test", "en_US")));
+        Assertions.assertEquals(Optional.of("pt_BR"), localeRepository.find(BOT, -1013));
+        // chats with a locale already defined keep it
+        Assertions.assertEquals(Optional.of("pt_br"), localeRepository.find(BOT, -1011));
+    }
+
+    @Order(6)
+    @Test
+    public void localePerBot() {
+        Assertions.assertTrue(localeRepository.find(OTHER_BOT, -1011).isEmpty());
+        Assertions.assertEquals("persisted", localeRepository.persistChatLocale(new ChatLocale(OTHER_BOT, -1011, "test", "es_ES")));
+        Assertions.assertEquals(Optional.of("es_ES"), localeRepository.find(OTHER_BOT, -1011));
+        Assertions.assertEquals(Optional.of("pt_br"), localeRepository.find(BOT, -1011));
     }
 }
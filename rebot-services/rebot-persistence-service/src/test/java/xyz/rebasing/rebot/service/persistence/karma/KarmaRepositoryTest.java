@@ -0,0 +1,117 @@
+package xyz.rebasing.rebot.service.persistence.karma;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+
+import io.quarkus.test.junit.QuarkusTest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import xyz.rebasing.rebot.service.persistence.domain.Karma;
+import xyz.rebasing.rebot.service.persistence.repository.KarmaPointsMigration;
+import xyz.rebasing.rebot.service.persistence.repository.KarmaRepository;
+
+@QuarkusTest
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class KarmaRepositoryTest {
+
+    @Inject
+    EntityManager em;
+
+    @Inject
+    KarmaRepository repository;
+
+    @Inject
+    KarmaPointsMigration migration;
+
+    @Test
+    @Order(1)
+    public void testMigratePoints() {
+        createLegacyTable();
+        Assertions.assertTrue(migration.migrate());
+        Assertions.assertFalse(migration.migrate());
+        Assertions.assertEquals(7, repository.storedPoints("legacy"));
+    }
+
+    @Test
+    @Order(2)
+    public void testConcurrentVotes() throws Exception {
+        // the votes come from the threads processing the messages, which have no transaction
+        List<CompletableFuture<Integer>> votes = IntStream.range(0, 200)
+                .mapToObj(i -> CompletableFuture.supplyAsync(() -> repository.add("storm", i % 4 == 0 ? -1 : 1)))
+                .collect(Collectors.toList());
+        for (CompletableFuture<Integer> vote : votes) {
+            vote.get();
+        }
+        Assertions.assertEquals(100, repository.get("storm"));
+        Assertions.assertEquals(0, repository.storedPoints("storm"));
+
+        repository.flush();
+        Assertions.assertEquals(100, repository.storedPoints("storm"));
+        Assertions.assertEquals(100, repository.get("storm"));
+    }
+
+    @Test
+    @Order(3)
+    public void testFlushAddsToStoredPoints() {
+        repository.add("storm", 5);
+        repository.add("legacy", -2);
+        repository.flush();
+        Assertions.assertEquals(105, repository.storedPoints("storm"));
+        Assertions.assertEquals(5, repository.storedPoints("legacy"));
+
+        // nothing left to write
+        repository.flush();
+        Assertions.assertEquals(105, repository.storedPoints("storm"));
+        Assertions.assertEquals(105, repository.list("sto%").get(0).getPoints());
+    }
+
+    @Test
+    @Order(4)
+    public void testListIncludesPendingVotes() {
+        repository.add("stone", 3);
+        repository.add("storm", 1);
+        List<Karma> karmas = repository.list("sto%");
+        Assertions.assertEquals(2, karmas.size());
+        Assertions.assertEquals("stone", karmas.get(0).getUsername());
+        Assertions.assertEquals(3, karmas.get(0).getPoints());
+        Assertions.assertEquals(106, karmas.get(1).getPoints());
+        Assertions.assertEquals(3, repository.list("sto_e").get(0).getPoints());
+        repository.flush();
+    }
+
+    @Test
+    @Order(5)
+    public void testStoredPointsAreNotCached() {
+        // another node took over the polling and voted meanwhile
+        addStoredPoints("storm", 10);
+        Assertions.assertEquals(116, repository.get("storm"));
+        Assertions.assertEquals(117, repository.add("storm", 1));
+        repository.flush();
+        Assertions.assertEquals(117, repository.storedPoints("storm"));
+    }
+
+    @Transactional
+    void addStoredPoints(String key, int points) {
+        em.createNativeQuery("UPDATE KARMA SET POINTS = POINTS + ?1 WHERE USERNAME = ?2")
+                .setParameter(1, points)
+                .setParameter(2, key)
+                .executeUpdate();
+    }
+
+    @Transactional
+    void createLegacyTable() {
+        em.createNativeQuery("DROP TABLE KARMA").executeUpdate();
+        em.createNativeQuery("CREATE TABLE KARMA (USERNAME VARCHAR(50) NOT NULL PRIMARY KEY, " +
+                                     "POINTS VARCHAR(10) NOT NULL)").executeUpdate();
+        em.createNativeQuery("INSERT INTO KARMA VALUES ('legacy', '7')").executeUpdate();
+    }
+}
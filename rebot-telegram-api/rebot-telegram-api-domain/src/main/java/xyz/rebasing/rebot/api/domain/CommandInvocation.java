@@ -0,0 +1,150 @@
+/*
+ *   The MIT License (MIT)
+ *
+ *   Copyright (c) 2017 Rebasing.xyz ReBot
+ *
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy of
+ *   this software and associated documentation files (the "Software"), to deal in
+ *   the Software without restriction, including without limitation the rights to
+ *   use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ *   the Software, and to permit persons to whom the Software is furnished to do so,
+ *   subject to the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ *   FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ *   COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ *   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package xyz.rebasing.rebot.api.domain;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * A command sent to the bot, e.g. <b>/weather@botUserId Uberlandia -c BR</b>, parsed once per update and kept by
+ * its {@link Message}, so routing and the command itself don't need to tokenize the text again.
+ * <p>
+ * The command token is taken from the <b>bot_command</b> entity sent by Telegram when present, otherwise it goes up
+ * to the first whitespace. A single token ending with a karma suffix, e.g. <b>/ping++</b>, is not a command.
+ */
+public final class CommandInvocation {
+
+    private static final String BOT_COMMAND = "bot_command";
+    private static final String[] KARMA_SUFFIXES = {"++", "--", "\u2014", "\u2013"};
+
+    private final String name;
+    private final String mention;
+    private final String args;
+    private volatile String lowerCaseArgs;
+
+    private CommandInvocation(String name, String mention, String args) {
+        this.name = name;
+        this.mention = mention;
+        this.args = args;
+    }
+
+    /**
+     * @param text     message text
+     * @param entities message entities, may be null
+     * @return the command or empty if the text is not a command
+     */
+    public static Optional<CommandInvocation> parse(String text, List<Entity> entities) {
+        if (null == text || !text.startsWith("/") || isKarma(text)) {
+            return Optional.empty();
+        }
+        int end = commandEnd(text, entities);
+        String token = text.substring(0, end);
+        int at = token.indexOf('@');
+        return Optional.of(new CommandInvocation(at < 0 ? token : token.substring(0, at),
+                                                 at < 0 ? null : token.substring(at + 1),
+                                                 text.substring(end).strip()));
+    }
+
+    /**
+     * @return the command name without the bot mention, e.g. <b>/weather</b>
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * @return the bot mentioned by the command, e.g. <b>botUserId</b> on <b>/weather@botUserId</b>
+     */
+    public Optional<String> mention() {
+        return Optional.ofNullable(mention);
+    }
+
+    /**
+     * @param botUserId user id of the bot that received the command
+     * @return true if the command mentions no bot or the given one
+     */
+    public boolean isAddressedTo(String botUserId) {
+        return null == mention || mention.equals(botUserId);
+    }
+
+    /**
+     * @return the arguments as typed, without the command and the surrounding whitespace
+     */
+    public String args() {
+        return args;
+    }
+
+    /**
+     * @return the arguments in lower case, computed on first use
+     */
+    public String lowerCaseArgs() {
+        String lower = lowerCaseArgs;
+        if (null == lower) {
+            lower = args.toLowerCase(Locale.US);
+            lowerCaseArgs = lower;
+        }
+        return lower;
+    }
+
+    private static int commandEnd(String text, List<Entity> entities) {
+        if (null != entities) {
+            for (Entity entity : entities) {
+                if (BOT_COMMAND.equals(entity.getType()) && entity.getOffset() == 0
+                        && entity.getLength() > 0 && entity.getLength() <= text.length()) {
+                    return (int) entity.getLength();
+                }
+            }
+        }
+        for (int i = 1; i < text.length(); i++) {
+            if (Character.isWhitespace(text.charAt(i))) {
+                return i;
+            }
+        }
+        return text.length();
+    }
+
+    private static boolean isKarma(String text) {
+        for (String suffix : KARMA_SUFFIXES) {
+            if (text.length() > suffix.length() && text.endsWith(suffix)) {
+                for (int i = 0; i < text.length(); i++) {
+                    if (Character.isWhitespace(text.charAt(i))) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "CommandInvocation{" +
+                "name='" + name + '\'' +
+                ", mention='" + mention + '\'' +
+                ", args='" + args + '\'' +
+                '}';
+    }
+}
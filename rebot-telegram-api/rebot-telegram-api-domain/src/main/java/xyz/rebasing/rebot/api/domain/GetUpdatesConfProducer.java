@@ -41,7 +41,7 @@ public class GetUpdatesConfProducer implements Serializable {
     @JsonProperty("timeout")
     private Integer timeout;
 
-    @JsonProperty("allowedUpdates")
+    @JsonProperty("allowed_updates")
     private List<String> allowedUpdates;
 
     public Long getOffset() {
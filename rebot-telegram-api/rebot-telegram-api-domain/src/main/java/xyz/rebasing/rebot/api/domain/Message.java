@@ -27,6 +27,7 @@ import java.io.Serializable;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 import com.fasterxml.jackson.annotation.JsonAnyGetter;
 import com.fasterxml.jackson.annotation.JsonAnySetter;
@@ -68,6 +69,8 @@ public class Message implements Serializable {
     private ReplyToMessage replyToMessage;
     @JsonIgnore
     private Map<String, Object> additionalProperties = new HashMap<String, Object>();
+    @JsonIgnore
+    private transient volatile Optional<CommandInvocation> invocation;
 
     public Message(long messageId, Chat chat, String text) {
         this.messageId = messageId;
@@ -134,6 +137,7 @@ public class Message implements Serializable {
     @JsonProperty("text")
     public void setText(String text) {
         this.text = text;
+        this.invocation = null;
     }
 
     @JsonProperty("entities")
@@ -144,6 +148,7 @@ public class Message implements Serializable {
     @JsonProperty("entities")
     public void setEntities(List<Entity> entities) {
         this.entities = entities;
+        this.invocation = null;
     }
 
     @JsonProperty("photo")
@@ -166,6 +171,18 @@ public class Message implements Serializable {
         this.replyToMessage = replyToMessage;
     }
 
+    /**
+     * @return the command carried by this message, parsed on first use, or empty if it is not a command
+     */
+    public Optional<CommandInvocation> invocation() {
+        Optional<CommandInvocation> parsed = invocation;
+        if (null == parsed) {
+            parsed = CommandInvocation.parse(text, entities);
+            invocation = parsed;
+        }
+        return parsed;
+    }
+
     @JsonAnyGetter
     public Map<String, Object> getAdditionalProperties() {
         return this.additionalProperties;
@@ -108,7 +108,7 @@ public class MessageUpdate implements Serializable {
     public String toString() {
         return "MessageUpdate{" +
                 "updateId=" + updateId +
-                ", message=" + message.toString() +
+                ", message=" + message +
                 ", additionalProperties=" + additionalProperties +
                 '}';
     }
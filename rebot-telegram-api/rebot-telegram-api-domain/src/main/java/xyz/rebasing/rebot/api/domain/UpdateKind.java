@@ -0,0 +1,80 @@
+/*
+ *   The MIT License (MIT)
+ *
+ *   Copyright (c) 2017 Rebasing.xyz ReBot
+ *
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy of
+ *   this software and associated documentation files (the "Software"), to deal in
+ *   the Software without restriction, including without limitation the rights to
+ *   use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ *   the Software, and to permit persons to whom the Software is furnished to do so,
+ *   subject to the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ *   FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ *   COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ *   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package xyz.rebasing.rebot.api.domain;
+
+import java.util.Optional;
+
+/**
+ * Kinds of update delivered by Telegram, the name is the field carrying the update content and the value used on
+ * the allowed_updates parameter.
+ */
+public enum UpdateKind {
+
+    MESSAGE("message"),
+    EDITED_MESSAGE("edited_message"),
+    CHANNEL_POST("channel_post"),
+    EDITED_CHANNEL_POST("edited_channel_post"),
+    INLINE_QUERY("inline_query"),
+    CHOSEN_INLINE_RESULT("chosen_inline_result"),
+    CALLBACK_QUERY("callback_query"),
+    SHIPPING_QUERY("shipping_query"),
+    PRE_CHECKOUT_QUERY("pre_checkout_query"),
+    POLL("poll"),
+    POLL_ANSWER("poll_answer"),
+    MY_CHAT_MEMBER("my_chat_member"),
+    CHAT_MEMBER("chat_member"),
+    CHAT_JOIN_REQUEST("chat_join_request");
+
+    private final String field;
+
+    UpdateKind(String field) {
+        this.field = field;
+    }
+
+    /**
+     * @return the update field name, as expected by allowed_updates
+     */
+    public String field() {
+        return field;
+    }
+
+    /**
+     * @param update {@link MessageUpdate}
+     * @return the kind of the given update, empty if Telegram sent a kind not known yet
+     */
+    public static Optional<UpdateKind> of(MessageUpdate update) {
+        if (null != update.getEditedMessage() || update.isEdited()) {
+            return Optional.of(EDITED_MESSAGE);
+        }
+        if (null != update.getMessage()) {
+            return Optional.of(MESSAGE);
+        }
+        for (UpdateKind kind : values()) {
+            if (update.getAdditionalProperties().containsKey(kind.field)) {
+                return Optional.of(kind);
+            }
+        }
+        return Optional.empty();
+    }
+}
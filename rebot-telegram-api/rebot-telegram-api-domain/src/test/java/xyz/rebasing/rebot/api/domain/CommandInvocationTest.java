@@ -0,0 +1,88 @@
+/*
+ *   The MIT License (MIT)
+ *
+ *   Copyright (c) 2017 Rebasing.xyz ReBot
+ *
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy of
+ *   this software and associated documentation files (the "Software"), to deal in
+ *   the Software without restriction, including without limitation the rights to
+ *   use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ *   the Software, and to permit persons to whom the Software is furnished to do so,
+ *   subject to the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ *   FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ *   COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ *   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package xyz.rebasing.rebot.api.domain;
+
+import java.util.Collections;
+import java.util.Optional;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CommandInvocationTest {
+
+    @Test
+    public void testCommandWithArguments() {
+        CommandInvocation invocation = CommandInvocation.parse("/weather  Uberlandia -c BR ", null).get();
+        Assert.assertEquals("/weather", invocation.name());
+        Assert.assertEquals(Optional.empty(), invocation.mention());
+        Assert.assertEquals("Uberlandia -c BR", invocation.args());
+        Assert.assertEquals("uberlandia -c br", invocation.lowerCaseArgs());
+    }
+
+    @Test
+    public void testCommandWithoutArguments() {
+        CommandInvocation invocation = CommandInvocation.parse("/ping", null).get();
+        Assert.assertEquals("/ping", invocation.name());
+        Assert.assertEquals("", invocation.args());
+    }
+
+    @Test
+    public void testMention() {
+        CommandInvocation invocation = CommandInvocation.parse("/ping@rebot now", null).get();
+        Assert.assertEquals("/ping", invocation.name());
+        Assert.assertEquals(Optional.of("rebot"), invocation.mention());
+        Assert.assertTrue(invocation.isAddressedTo("rebot"));
+        Assert.assertFalse(invocation.isAddressedTo("otherBot"));
+        Assert.assertTrue(CommandInvocation.parse("/ping now", null).get().isAddressedTo("otherBot"));
+    }
+
+    @Test
+    public void testBotCommandEntity() {
+        Entity command = new Entity();
+        command.setType("bot_command");
+        command.setOffset(0);
+        command.setLength(5);
+        // the entity sent by Telegram delimits the command even without a whitespace after it
+        CommandInvocation invocation = CommandInvocation.parse("/ddd11", Collections.singletonList(command)).get();
+        Assert.assertEquals("/ddd1", invocation.name());
+        Assert.assertEquals("1", invocation.args());
+    }
+
+    @Test
+    public void testNotCommands() {
+        Assert.assertFalse(CommandInvocation.parse(null, null).isPresent());
+        Assert.assertFalse(CommandInvocation.parse("ping", null).isPresent());
+        Assert.assertFalse(CommandInvocation.parse("hi /ping", null).isPresent());
+    }
+
+    @Test
+    public void testKarma() {
+        Assert.assertFalse(CommandInvocation.parse("/ping++", null).isPresent());
+        Assert.assertFalse(CommandInvocation.parse("/ping--", null).isPresent());
+        Assert.assertFalse(CommandInvocation.parse("/ping—", null).isPresent());
+        Assert.assertFalse(CommandInvocation.parse("/ping–", null).isPresent());
+        // only a single token is a karma vote
+        Assert.assertEquals("/sed", CommandInvocation.parse("/sed c++", null).get().name());
+    }
+}
@@ -23,11 +23,13 @@
 
 package xyz.rebasing.rebot.api.shared.components.httpclient;
 
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
+import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
 
 import org.apache.http.NameValuePair;
@@ -40,13 +42,22 @@ import org.apache.http.impl.client.HttpClientBuilder;
 @ApplicationScoped
 public class BotCloseableHttpClient implements IBotCloseableHttpClient {
 
+    // shared by every bot and caller, all the calls go to the same host so the per route limit follows the total.
+    private final CloseableHttpClient client = HttpClientBuilder.create()
+            .setSSLHostnameVerifier(new NoopHostnameVerifier())
+            .setConnectionTimeToLive(70, TimeUnit.SECONDS)
+            .setMaxConnTotal(100)
+            .setMaxConnPerRoute(100)
+            .build();
+
     @Override
     public CloseableHttpClient get() {
-        return HttpClientBuilder.create()
-                .setSSLHostnameVerifier(new NoopHostnameVerifier())
-                .setConnectionTimeToLive(70, TimeUnit.SECONDS)
-                .setMaxConnTotal(100)
-                .build();
+        return client;
+    }
+
+    @PreDestroy
+    void close() throws IOException {
+        client.close();
     }
 
     @Override
@@ -38,12 +38,15 @@ import okhttp3.OkHttpClient;
 @DefaultBean
 public class RebotOkHttpClient implements IRebotOkHttpClient {
 
+    // shared by every bot and caller, OkHttp keeps one connection pool and dispatcher per client.
+    private final OkHttpClient client = new OkHttpClient.Builder()
+            .connectTimeout(15, TimeUnit.SECONDS)
+            .writeTimeout(15, TimeUnit.SECONDS)
+            .readTimeout(60, TimeUnit.SECONDS)
+            .build();
+
     @Override
     public OkHttpClient get() {
-        return new OkHttpClient.Builder()
-                .connectTimeout(15, TimeUnit.SECONDS)
-                .writeTimeout(15, TimeUnit.SECONDS)
-                .readTimeout(60, TimeUnit.SECONDS)
-                .build();
+        return client;
     }
 }
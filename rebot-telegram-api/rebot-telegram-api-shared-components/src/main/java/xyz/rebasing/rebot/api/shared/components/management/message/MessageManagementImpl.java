@@ -28,9 +28,6 @@ import java.lang.invoke.MethodHandles;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
@@ -44,6 +41,7 @@ import org.apache.http.util.EntityUtils;
 import org.jboss.logging.Logger;
 import xyz.rebasing.rebot.api.conf.BotConfig;
 import xyz.rebasing.rebot.api.shared.components.httpclient.BotCloseableHttpClient;
+import xyz.rebasing.rebot.api.shared.components.scheduler.BotScheduler;
 
 @ApplicationScoped
 public class MessageManagementImpl implements MessageManagement {
@@ -57,9 +55,15 @@ public class MessageManagementImpl implements MessageManagement {
     @Inject
     BotCloseableHttpClient httpClient;
 
+    @Inject
+    BotScheduler scheduler;
+
     @Override
+    @SuppressWarnings("FutureReturnValueIgnored")
     public void deleteMessage(long chatId, long messageId, long timeout) {
-        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        if (config.isWarmingUp()) {
+            return;
+        }
         Runnable task = () -> {
             try {
                 String url = String.format(TELEGRAM_DELETE_MESSAGE_ENDPOINT, config.botTokenId());
@@ -87,7 +91,6 @@ public class MessageManagementImpl implements MessageManagement {
                 log.warnv("Error {0}", e.getMessage());
             }
         };
-        scheduler.schedule(task, timeout, TimeUnit.SECONDS);
-        scheduler.shutdown();
+        scheduler.schedule(task, timeout);
     }
 }
@@ -29,9 +29,6 @@ import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
 
 import javax.enterprise.context.ApplicationScoped;
@@ -55,6 +52,7 @@ import xyz.rebasing.rebot.api.domain.MessageUpdate;
 import xyz.rebasing.rebot.api.domain.TelegramResponse;
 import xyz.rebasing.rebot.api.domain.User;
 import xyz.rebasing.rebot.api.shared.components.httpclient.BotCloseableHttpClient;
+import xyz.rebasing.rebot.api.shared.components.scheduler.BotScheduler;
 
 import static xyz.rebasing.rebot.api.shared.components.filter.RebotSharedFilter.isPrivateChat;
 import static xyz.rebasing.rebot.api.shared.components.filter.RebotSharedFilter.isUserAdmin;
@@ -75,6 +73,9 @@ public class UserManagementImpl implements UserManagement {
     @Inject
     private BotCloseableHttpClient httpClient;
 
+    @Inject
+    BotScheduler scheduler;
+
     @Override
     public void kickUser(long userId, long chatId) {
         doKickUser(userId, chatId, 0L);
@@ -133,8 +134,11 @@ public class UserManagementImpl implements UserManagement {
      * @param chatId
      * @param waitBeforeStart
      */
+    @SuppressWarnings("FutureReturnValueIgnored")
     private void doKickUser(long userId, long chatId, long waitBeforeStart) {
-        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        if (config.isWarmingUp()) {
+            return;
+        }
         Runnable task = () -> {
             try {
                 String url = String.format(TELEGRAM_KICKMEMBER_ENDPOINT, config.botTokenId());
@@ -159,12 +163,14 @@ public class UserManagementImpl implements UserManagement {
                 log.warnv("Error {0}", e.getMessage());
             }
         };
-        scheduler.schedule(task, waitBeforeStart, TimeUnit.SECONDS);
-        scheduler.shutdown();
+        scheduler.schedule(task, waitBeforeStart);
     }
 
+    @SuppressWarnings("FutureReturnValueIgnored")
     private void doUnbanUser(long userId, long chatId, long waitBeforeBan) {
-        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        if (config.isWarmingUp()) {
+            return;
+        }
         Runnable task = () -> {
             try {
                 String url = String.format(TELEGRAM_UNBANMEMBER_ENDPOINT, config.botTokenId());
@@ -190,8 +196,7 @@ public class UserManagementImpl implements UserManagement {
                 log.warnv("Error {0}", e.getMessage());
             }
         };
-        scheduler.schedule(task, waitBeforeBan, TimeUnit.SECONDS);
-        scheduler.shutdown();
+        scheduler.schedule(task, waitBeforeBan);
     }
 
     @Override
@@ -237,6 +242,9 @@ public class UserManagementImpl implements UserManagement {
      * @return List {@Link ChatAdministrator}
      */
     private List<ChatAdministrator> getChatAdministrators(long chatId) {
+        if (config.isWarmingUp()) {
+            return new ArrayList<>();
+        }
         try {
             ObjectMapper objectMapper = new ObjectMapper();
             String url = String.format(TELEGRAM_CHAT_ADMINISTRATORS_ENDPOINT, config.botTokenId());
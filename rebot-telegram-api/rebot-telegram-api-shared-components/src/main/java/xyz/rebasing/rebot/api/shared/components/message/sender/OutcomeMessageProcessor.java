@@ -144,6 +144,11 @@ public class OutcomeMessageProcessor implements Sender {
             log.errorv("failed to write json as string: {0}", e);
         }
 
+        if (config.isWarmingUp()) {
+            // the request was built, only the call is skipped
+            return OptionalLong.of(0);
+        }
+
         try (Response response = okclient.get().newCall(request).execute()) {
 
             TelegramResponse<Message> telegramResponse = objectMapper.
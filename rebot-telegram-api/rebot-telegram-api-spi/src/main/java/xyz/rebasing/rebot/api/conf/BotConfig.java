@@ -1,7 +1,20 @@
 package xyz.rebasing.rebot.api.conf;
 
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import javax.annotation.PostConstruct;
 import javax.enterprise.context.ApplicationScoped;
 
+import org.eclipse.microprofile.config.Config;
+import org.eclipse.microprofile.config.ConfigProvider;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 
 @ApplicationScoped
@@ -13,18 +26,234 @@ public class BotConfig {
     @ConfigProperty(name = "xyz.rebasing.rebot.telegram.userId")
     String botUserId;
 
+    @ConfigProperty(name = "xyz.rebasing.rebot.telegram.bots")
+    Optional<List<String>> botNames;
+
     @ConfigProperty(name = "xyz.rebasing.rebot.delete.messages", defaultValue = "false")
     boolean deleteMessages;
 
     @ConfigProperty(name = "xyz.rebasing.rebot.delete.messages.after", defaultValue = "120")
     int deleteMessagesAfter;
 
+    @ConfigProperty(name = "xyz.rebasing.rebot.telegram.polling.timeout", defaultValue = "30")
+    int pollingTimeout;
+
+    @ConfigProperty(name = "xyz.rebasing.rebot.telegram.polling.limit", defaultValue = "100")
+    int pollingLimit;
+
+    @ConfigProperty(name = "xyz.rebasing.rebot.telegram.polling.backoff.initial", defaultValue = "500")
+    long pollingBackoffInitial;
+
+    @ConfigProperty(name = "xyz.rebasing.rebot.telegram.polling.backoff.max", defaultValue = "30000")
+    long pollingBackoffMax;
+
+    @ConfigProperty(name = "xyz.rebasing.rebot.telegram.ingress", defaultValue = "polling")
+    String ingress;
+
+    @ConfigProperty(name = "xyz.rebasing.rebot.telegram.webhook.url")
+    Optional<String> webhookUrl;
+
+    @ConfigProperty(name = "xyz.rebasing.rebot.telegram.webhook.secret")
+    Optional<String> webhookSecret;
+
+    @ConfigProperty(name = "xyz.rebasing.rebot.telegram.updates.dedup.size", defaultValue = "1024")
+    int updatesDedupSize;
+
+    @ConfigProperty(name = "xyz.rebasing.rebot.telegram.updates.queue.size", defaultValue = "200")
+    int updatesQueueSize;
+
+    @ConfigProperty(name = "xyz.rebasing.rebot.telegram.updates.lanes", defaultValue = "4")
+    int updatesLanes;
+
+    @ConfigProperty(name = "xyz.rebasing.rebot.telegram.updates.shed.threshold", defaultValue = "0.8")
+    double updatesShedThreshold;
+
+    @ConfigProperty(name = "xyz.rebasing.rebot.telegram.updates.inflight", defaultValue = "100")
+    int updatesInFlight;
+
+    @ConfigProperty(name = "xyz.rebasing.rebot.telegram.updates.commit.interval", defaultValue = "1000")
+    long updatesCommitInterval;
+
+    @ConfigProperty(name = "xyz.rebasing.rebot.telegram.plugins.threads", defaultValue = "8")
+    int pluginsThreads;
+
+    @ConfigProperty(name = "xyz.rebasing.rebot.telegram.plugins.deadline", defaultValue = "10000")
+    long pluginsDeadline;
+
+    @ConfigProperty(name = "xyz.rebasing.rebot.telegram.resilience.concurrency", defaultValue = "4")
+    int resilienceConcurrency;
+
+    @ConfigProperty(name = "xyz.rebasing.rebot.telegram.resilience.timeout", defaultValue = "10000")
+    long resilienceTimeout;
+
+    @ConfigProperty(name = "xyz.rebasing.rebot.telegram.resilience.failures", defaultValue = "5")
+    int resilienceFailures;
+
+    @ConfigProperty(name = "xyz.rebasing.rebot.telegram.resilience.open", defaultValue = "30")
+    int resilienceOpen;
+
+    @ConfigProperty(name = "xyz.rebasing.rebot.telegram.throttle.user.rate", defaultValue = "20")
+    int throttleUserRate;
+
+    @ConfigProperty(name = "xyz.rebasing.rebot.telegram.throttle.user.burst", defaultValue = "5")
+    int throttleUserBurst;
+
+    @ConfigProperty(name = "xyz.rebasing.rebot.telegram.throttle.command.rate", defaultValue = "30")
+    int throttleCommandRate;
+
+    @ConfigProperty(name = "xyz.rebasing.rebot.telegram.throttle.command.burst", defaultValue = "10")
+    int throttleCommandBurst;
+
+    @ConfigProperty(name = "xyz.rebasing.rebot.telegram.responses.size", defaultValue = "1024")
+    int responsesSize;
+
+    @ConfigProperty(name = "xyz.rebasing.rebot.telegram.responses.ttl", defaultValue = "3600")
+    long responsesTtl;
+
+    @ConfigProperty(name = "xyz.rebasing.rebot.telegram.locale.flush.interval", defaultValue = "2000")
+    long localeFlushInterval;
+
+    @ConfigProperty(name = "xyz.rebasing.rebot.telegram.locale.flush.batch", defaultValue = "100")
+    int localeFlushBatch;
+
+    @ConfigProperty(name = "xyz.rebasing.rebot.telegram.warmup.enabled", defaultValue = "false")
+    boolean warmUpEnabled;
+
+    @ConfigProperty(name = "xyz.rebasing.rebot.telegram.warmup.iterations", defaultValue = "3")
+    int warmUpIterations;
+
+    @ConfigProperty(name = "xyz.rebasing.rebot.telegram.warmup.timeout", defaultValue = "10000")
+    long warmUpTimeout;
+
+    @ConfigProperty(name = "xyz.rebasing.rebot.telegram.warmup.messages")
+    Optional<List<String>> warmUpMessages;
+
+    @ConfigProperty(name = "xyz.rebasing.rebot.telegram.failover.enabled", defaultValue = "false")
+    boolean failoverEnabled;
+
+    @ConfigProperty(name = "xyz.rebasing.rebot.telegram.failover.node")
+    Optional<String> failoverNode;
+
+    @ConfigProperty(name = "xyz.rebasing.rebot.telegram.failover.lease", defaultValue = "15")
+    int failoverLease;
+
+    private List<BotIdentity> bots;
+    private final ThreadLocal<BotIdentity> currentBot = new ThreadLocal<>();
+
+    @PostConstruct
+    void init() {
+        List<BotIdentity> identities = new ArrayList<>();
+        identities.add(new BotIdentity(BotIdentity.DEFAULT, botTokenId, botUserId));
+        Config mpConfig = ConfigProvider.getConfig();
+        botNames.ifPresent(names -> names.stream()
+                .filter(name -> !BotIdentity.DEFAULT.equals(name) && !BotIdentity.WARMUP.equals(name))
+                .forEach(name -> identities.add(new BotIdentity(
+                        name,
+                        mpConfig.getValue("xyz.rebasing.rebot.telegram.bots." + name + ".token", String.class),
+                        mpConfig.getValue("xyz.rebasing.rebot.telegram.bots." + name + ".userId", String.class)))));
+        bots = Collections.unmodifiableList(identities);
+        // the webhook registered by the bot itself always gets a secret, otherwise anyone could post updates to it
+        if (isWebhookIngress() && webhookSecret.isEmpty() && webhookUrl.isPresent()) {
+            byte[] secret = new byte[32];
+            new SecureRandom().nextBytes(secret);
+            webhookSecret = Optional.of(Base64.getUrlEncoder().withoutPadding().encodeToString(secret));
+        }
+    }
+
+    /**
+     * @return the token of the bot handling the current update, or the default bot's token
+     */
     public String botTokenId() {
-        return botTokenId;
+        return currentBot().token();
     }
 
+    /**
+     * @return the user id of the bot handling the current update, or the default bot's user id
+     */
     public String botUserId() {
-        return botUserId;
+        return currentBot().userId();
+    }
+
+    /**
+     * @return every bot served by this process, the default bot comes first.
+     */
+    public List<BotIdentity> bots() {
+        return bots;
+    }
+
+    /**
+     * @param name bot name
+     * @return the bot configured with the given name
+     */
+    public Optional<BotIdentity> bot(String name) {
+        return bots.stream().filter(b -> b.name().equals(name)).findFirst();
+    }
+
+    /**
+     * @return the bot handling the update processed by the current thread, the default bot outside of updates.
+     */
+    public BotIdentity currentBot() {
+        BotIdentity bot = currentBot.get();
+        return null == bot ? bots.get(0) : bot;
+    }
+
+    /**
+     * @return the bot processing the warm-up updates, it shares the user id of the default bot so the commands
+     * addressed to it are recognized.
+     */
+    public BotIdentity warmUpBot() {
+        BotIdentity bot = bots.get(0);
+        return new BotIdentity(BotIdentity.WARMUP, bot.token(), bot.userId());
+    }
+
+    /**
+     * @return true if the current thread processes a warm-up update, calls to Telegram must be skipped.
+     */
+    public boolean isWarmingUp() {
+        return currentBot().isWarmUp();
+    }
+
+    /**
+     * Runs the task on behalf of the given bot, every Telegram call made by it uses the bot's token.
+     *
+     * @param bot  {@link BotIdentity}
+     * @param task task to run
+     */
+    public void runAs(BotIdentity bot, Runnable task) {
+        callAs(bot, () -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /**
+     * Calls the task on behalf of the given bot, every Telegram call made by it uses the bot's token.
+     *
+     * @param bot  {@link BotIdentity}
+     * @param task task to call
+     * @return the task result
+     */
+    public <T> T callAs(BotIdentity bot, Supplier<T> task) {
+        BotIdentity previous = currentBot.get();
+        currentBot.set(bot);
+        try {
+            return task.get();
+        } finally {
+            if (null == previous) {
+                currentBot.remove();
+            } else {
+                currentBot.set(previous);
+            }
+        }
+    }
+
+    /**
+     * @param task task to be run later, possibly by another thread
+     * @return the task bound to the bot handling the current update
+     */
+    public Runnable bound(Runnable task) {
+        BotIdentity bot = currentBot();
+        return () -> runAs(bot, task);
     }
 
     public boolean deleteMessages() {
@@ -34,4 +263,281 @@ public class BotConfig {
     public int deleteMessagesAfter() {
         return deleteMessagesAfter;
     }
+
+    /**
+     * @return how long, in seconds, Telegram holds a getUpdates call open while there are no updates.
+     */
+    public int pollingTimeout() {
+        return pollingTimeout;
+    }
+
+    /**
+     * @return the upper bound for the number of updates requested per getUpdates call, Telegram accepts 1-100.
+     */
+    public int pollingLimit() {
+        return Math.max(1, Math.min(pollingLimit, 100));
+    }
+
+    /**
+     * @return the first delay, in milliseconds, applied after a failed getUpdates call.
+     */
+    public long pollingBackoffInitial() {
+        return pollingBackoffInitial;
+    }
+
+    /**
+     * @return the maximum delay, in milliseconds, between two failed getUpdates calls.
+     */
+    public long pollingBackoffMax() {
+        return pollingBackoffMax;
+    }
+
+    /**
+     * @return true when updates are pushed by Telegram to the webhook endpoint instead of being polled.
+     */
+    public boolean isWebhookIngress() {
+        return "webhook".equalsIgnoreCase(ingress);
+    }
+
+    /**
+     * @return the public https address registered on Telegram through setWebhook, if not set the webhook
+     * is expected to be registered manually.
+     */
+    public Optional<String> webhookUrl() {
+        return webhookUrl;
+    }
+
+    /**
+     * @return the secret sent back by Telegram on the X-Telegram-Bot-Api-Secret-Token header of every webhook call,
+     * a random one is generated on startup when the webhook is registered through {@link #webhookUrl()} without one.
+     */
+    public Optional<String> webhookSecret() {
+        return webhookSecret;
+    }
+
+    /**
+     * @return how many recently received update ids are remembered to drop duplicated deliveries.
+     */
+    public int updatesDedupSize() {
+        return updatesDedupSize;
+    }
+
+    /**
+     * @return max number of polled updates waiting to be processed before polling is paused.
+     */
+    public int updatesQueueSize() {
+        return Math.max(1, updatesQueueSize);
+    }
+
+    /**
+     * @return number of lanes processing updates in parallel, updates from the same chat always use the same lane.
+     */
+    public int updatesLanes() {
+        return Math.max(1, updatesLanes);
+    }
+
+    /**
+     * @return fraction of a passive lane capacity above which passive updates are dropped instead of queued.
+     */
+    public double updatesShedThreshold() {
+        return Math.min(1d, Math.max(0d, updatesShedThreshold));
+    }
+
+    /**
+     * @return max number of messages being processed or waiting for the previous message of their chat, the lanes
+     * wait while it is reached.
+     */
+    public int updatesInFlight() {
+        return Math.max(1, updatesInFlight);
+    }
+
+    /**
+     * @return milliseconds between two writes of the offset of the processed updates.
+     */
+    public long updatesCommitInterval() {
+        return Math.max(100L, updatesCommitInterval);
+    }
+
+    /**
+     * @return number of threads running the plugins triggered by the messages, shared by all lanes.
+     */
+    public int pluginsThreads() {
+        return Math.max(1, pluginsThreads);
+    }
+
+    /**
+     * @return how long, in milliseconds, the plugins triggered by a message have to reply before being cancelled.
+     */
+    public long pluginsDeadline() {
+        return Math.max(1L, pluginsDeadline);
+    }
+
+    /**
+     * @param name command or plugin name, without the leading slash
+     * @return how many calls to the given command or plugin may run at the same time, further calls are rejected.
+     * Overridden per command or plugin by <b>xyz.rebasing.rebot.telegram.resilience.&lt;name&gt;.concurrency</b>.
+     */
+    public int resilienceConcurrency(String name) {
+        return Math.max(1, ConfigProvider.getConfig()
+                .getOptionalValue("xyz.rebasing.rebot.telegram.resilience." + name + ".concurrency", Integer.class)
+                .orElse(resilienceConcurrency));
+    }
+
+    /**
+     * @param name command or plugin name, without the leading slash
+     * @return how long, in milliseconds, a call to the given command or plugin may take before it is abandoned.
+     * Overridden per command or plugin by <b>xyz.rebasing.rebot.telegram.resilience.&lt;name&gt;.timeout</b>.
+     */
+    public long resilienceTimeout(String name) {
+        return Math.max(1L, ConfigProvider.getConfig()
+                .getOptionalValue("xyz.rebasing.rebot.telegram.resilience." + name + ".timeout", Long.class)
+                .orElse(resilienceTimeout));
+    }
+
+    /**
+     * @return consecutive failures, timeouts included, that open the circuit breaker of a command or plugin.
+     */
+    public int resilienceFailures() {
+        return Math.max(1, resilienceFailures);
+    }
+
+    /**
+     * @return seconds an open circuit breaker rejects calls before letting a trial call through.
+     */
+    public int resilienceOpen() {
+        return Math.max(1, resilienceOpen);
+    }
+
+    /**
+     * @return commands per minute a user may send in a chat, 0 disables the limit.
+     */
+    public int throttleUserRate() {
+        return Math.max(0, throttleUserRate);
+    }
+
+    /**
+     * @return commands a user may send in a row in a chat before being limited by the rate.
+     */
+    public int throttleUserBurst() {
+        return Math.max(1, throttleUserBurst);
+    }
+
+    /**
+     * @param name command name, without the leading slash
+     * @return calls per minute of the given command in a chat, 0 disables the limit.
+     * Overridden per command by <b>xyz.rebasing.rebot.telegram.throttle.&lt;name&gt;.rate</b>.
+     */
+    public int throttleCommandRate(String name) {
+        return Math.max(0, ConfigProvider.getConfig()
+                .getOptionalValue("xyz.rebasing.rebot.telegram.throttle." + name + ".rate", Integer.class)
+                .orElse(throttleCommandRate));
+    }
+
+    /**
+     * @param name command name, without the leading slash
+     * @return calls of the given command in a row in a chat before being limited by the rate.
+     * Overridden per command by <b>xyz.rebasing.rebot.telegram.throttle.&lt;name&gt;.burst</b>.
+     */
+    public int throttleCommandBurst(String name) {
+        return Math.max(1, ConfigProvider.getConfig()
+                .getOptionalValue("xyz.rebasing.rebot.telegram.throttle." + name + ".burst", Integer.class)
+                .orElse(throttleCommandBurst));
+    }
+
+    /**
+     * @return max number of command responses kept for reuse, 0 disables the response cache.
+     */
+    public int responsesSize() {
+        return Math.max(0, responsesSize);
+    }
+
+    /**
+     * @param name       command name, without the leading slash
+     * @param defaultTtl seconds requested by the command itself
+     * @return how long, in seconds, a response of the given command is reused, 0 means never.
+     * Overridden per command by <b>xyz.rebasing.rebot.telegram.responses.&lt;name&gt;.ttl</b>.
+     */
+    public long responsesTtl(String name, long defaultTtl) {
+        return Math.max(0L, ConfigProvider.getConfig()
+                .getOptionalValue("xyz.rebasing.rebot.telegram.responses." + name + ".ttl", Long.class)
+                .orElse(defaultTtl));
+    }
+
+    /**
+     * @return seconds the responses of the built-in /help and /dump commands are reused.
+     */
+    public long responsesTtl() {
+        return Math.max(0L, responsesTtl);
+    }
+
+    /**
+     * @return milliseconds between two writes of the default locale of the chats seen for the first time.
+     */
+    public long localeFlushInterval() {
+        return Math.max(100L, localeFlushInterval);
+    }
+
+    /**
+     * @return max number of chats whose default locale is written in the same transaction.
+     */
+    public int localeFlushBatch() {
+        return Math.max(1, localeFlushBatch);
+    }
+
+    /**
+     * @return true if synthetic updates are processed before the updates start being received.
+     */
+    public boolean isWarmUpEnabled() {
+        return warmUpEnabled;
+    }
+
+    /**
+     * @return how many times the warm-up corpus is processed.
+     */
+    public int warmUpIterations() {
+        return Math.max(1, warmUpIterations);
+    }
+
+    /**
+     * @return how long, in milliseconds, the warm-up waits for each synthetic update to be processed.
+     */
+    public long warmUpTimeout() {
+        return Math.max(1L, warmUpTimeout);
+    }
+
+    /**
+     * @return texts added to the warm-up corpus, e.g. commands that are cheap to run without side effects.
+     */
+    public List<String> warmUpMessages() {
+        return warmUpMessages.orElse(Collections.emptyList());
+    }
+
+    /**
+     * @return true if the poller only runs while this node holds the database lease, leaving other nodes on standby.
+     */
+    public boolean isFailoverEnabled() {
+        return failoverEnabled;
+    }
+
+    /**
+     * @return the name identifying this node as lease owner, defaults to the host name and process id.
+     */
+    public String failoverNode() {
+        return failoverNode.orElseGet(() -> {
+            String host;
+            try {
+                host = InetAddress.getLocalHost().getHostName();
+            } catch (final UnknownHostException e) {
+                host = "unknown";
+            }
+            return host + "-" + ProcessHandle.current().pid();
+        });
+    }
+
+    /**
+     * @return seconds the lease is valid without renewal, a standby node takes over after it expires.
+     */
+    public int failoverLease() {
+        return Math.max(3, failoverLease);
+    }
 }
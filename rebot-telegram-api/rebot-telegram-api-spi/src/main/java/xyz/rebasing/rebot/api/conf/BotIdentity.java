@@ -0,0 +1,97 @@
+/*
+ *   The MIT License (MIT)
+ *
+ *   Copyright (c) 2017 Rebasing.xyz ReBot
+ *
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy of
+ *   this software and associated documentation files (the "Software"), to deal in
+ *   the Software without restriction, including without limitation the rights to
+ *   use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ *   the Software, and to permit persons to whom the Software is furnished to do so,
+ *   subject to the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ *   FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ *   COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ *   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package xyz.rebasing.rebot.api.conf;
+
+import java.util.Objects;
+
+/**
+ * A bot served by this process, identified by its name on the configuration.
+ */
+public final class BotIdentity {
+
+    /**
+     * Name of the bot configured through xyz.rebasing.rebot.telegram.token and xyz.rebasing.rebot.telegram.userId.
+     */
+    public static final String DEFAULT = "default";
+
+    /**
+     * Name of the bot processing the synthetic updates of the warm-up, nothing is sent to Telegram on its behalf.
+     */
+    public static final String WARMUP = "warmup";
+
+    private final String name;
+    private final String token;
+    private final String userId;
+
+    public BotIdentity(String name, String token, String userId) {
+        this.name = name;
+        this.token = token;
+        this.userId = userId;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public String token() {
+        return token;
+    }
+
+    public String userId() {
+        return userId;
+    }
+
+    public boolean isDefault() {
+        return DEFAULT.equals(name);
+    }
+
+    public boolean isWarmUp() {
+        return WARMUP.equals(name);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof BotIdentity)) {
+            return false;
+        }
+        return name.equals(((BotIdentity) o).name);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name);
+    }
+
+    @Override
+    public String toString() {
+        // never expose the token
+        return "BotIdentity{" +
+                "name='" + name + '\'' +
+                ", userId='" + userId + '\'' +
+                '}';
+    }
+}
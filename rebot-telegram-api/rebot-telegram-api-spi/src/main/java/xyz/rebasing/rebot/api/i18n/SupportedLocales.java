@@ -1,5 +1,8 @@
 package xyz.rebasing.rebot.api.i18n;
 
+import java.util.Arrays;
+import java.util.Optional;
+
 public enum SupportedLocales {
 
     pt_br("pt_BR"),
@@ -15,4 +18,20 @@ public enum SupportedLocales {
         return localeName;
     }
 
+    /**
+     * @param languageCode IETF language tag sent by Telegram as the user language_code, e.g. pt-br or en
+     * @return the supported locale matching the tag, or its language when the region is missing or not supported
+     */
+    public static Optional<SupportedLocales> fromLanguageCode(String languageCode) {
+        if (null == languageCode || languageCode.isEmpty()) {
+            return Optional.empty();
+        }
+        String tag = languageCode.replace('-', '_').toLowerCase();
+        String language = tag.split("_")[0] + "_";
+        return Arrays.stream(values())
+                .filter(locale -> locale.name().equals(tag))
+                .findFirst()
+                .or(() -> Arrays.stream(values()).filter(locale -> locale.name().startsWith(language)).findFirst());
+    }
+
 }
@@ -23,9 +23,15 @@
 
 package xyz.rebasing.rebot.api.spi;
 
+import java.util.EnumSet;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
 
 import xyz.rebasing.rebot.api.domain.MessageUpdate;
+import xyz.rebasing.rebot.api.domain.UpdateKind;
 
 public interface CommandProvider {
 
@@ -35,15 +41,32 @@ public interface CommandProvider {
     void load();
 
     /**
-     * Executes the command and returns its result
+     * Executes the command and returns its result, the parsed command, with the arguments as typed, is available
+     * from {@link xyz.rebasing.rebot.api.domain.Message#invocation()}
      *
-     * @param key           command parameters
+     * @param key           command parameters, in lower case
      * @param messageUpdate message update
      * @param locale        locale
      * @return the query result based on the key
      */
     Object execute(Optional<String> key, MessageUpdate messageUpdate, String locale);
 
+    /**
+     * Asynchronous variant of {@link #execute(Optional, MessageUpdate, String)}, commands waiting on external
+     * services should override it so no thread is held while they wait. By default {@link #execute} runs on the
+     * given executor.
+     *
+     * @param key           command parameters, in lower case
+     * @param messageUpdate message update
+     * @param locale        locale
+     * @param executor      where blocking work can run, on behalf of the bot that received the update
+     * @return the query result based on the key, once available
+     */
+    default CompletionStage<Object> executeAsync(Optional<String> key, MessageUpdate messageUpdate, String locale,
+                                                 Executor executor) {
+        return CompletableFuture.supplyAsync(() -> execute(key, messageUpdate, locale), executor);
+    }
+
     /**
      * @return the command name
      */
@@ -78,6 +101,26 @@ public interface CommandProvider {
      */
     long deleteMessageTimeout();
 
+    /**
+     * How long, in seconds, the response to the given arguments can be reused for the same arguments and locale
+     * instead of executing the command again, meant for commands replying with the same text until their data
+     * changes, e.g. after a scheduled refresh firing {@link InvalidateResponses}. Failures are never cached.
+     *
+     * @param key command parameters, in lower case
+     * @return by default 0, responses are not cached
+     */
+    default long cacheTtl(String key) {
+        return 0;
+    }
+
+    /**
+     * @return true if the cached responses depend on the chat settings and can't be shared between chats,
+     * by default false
+     */
+    default boolean cachePerChat() {
+        return false;
+    }
+
     /**
      * Acceptable commands are, i.e: /ping or /ping@botUserId
      * If the botuserId is incorrect, the command will not be recognized.
@@ -88,7 +131,8 @@ public interface CommandProvider {
      */
     default String extractCommand(String fullCommand, String botUserId) {
         // command may have parameters.
-        return fullCommand.split(" ")[0].replace("@" + botUserId, "");
+        int end = fullCommand.indexOf(' ');
+        return (end < 0 ? fullCommand : fullCommand.substring(0, end)).replace("@" + botUserId, "");
     }
 
     /**
@@ -101,8 +145,18 @@ public interface CommandProvider {
      * false - non processable command
      */
     default boolean canProcessCommand(MessageUpdate messageUpdate, String botUserId) {
-        return true ? messageUpdate.getMessage().getText().startsWith("/") &&
-                (messageUpdate.getMessage().getText().contains("@" + botUserId) || !messageUpdate.getMessage().getText().contains("@")) &&
-                extractCommand(messageUpdate.getMessage().getText(), botUserId).equals(name()) : false;
+        return messageUpdate.getMessage().invocation()
+                .filter(invocation -> invocation.isAddressedTo(botUserId) && invocation.name().equals(name()))
+                .isPresent();
+    }
+
+    /**
+     * Kinds of update consumed by this command, the bot only asks Telegram for the kinds consumed by at least one
+     * command or plugin and drops the others before they are dispatched.
+     *
+     * @return by default messages and edited messages
+     */
+    default Set<UpdateKind> updateKinds() {
+        return EnumSet.of(UpdateKind.MESSAGE, UpdateKind.EDITED_MESSAGE);
     }
-}
\ No newline at end of file
+}
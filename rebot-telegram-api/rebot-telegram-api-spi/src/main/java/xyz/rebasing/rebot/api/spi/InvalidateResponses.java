@@ -0,0 +1,116 @@
+/*
+ *   The MIT License (MIT)
+ *
+ *   Copyright (c) 2017 Rebasing.xyz ReBot
+ *
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy of
+ *   this software and associated documentation files (the "Software"), to deal in
+ *   the Software without restriction, including without limitation the rights to
+ *   use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ *   the Software, and to permit persons to whom the Software is furnished to do so,
+ *   subject to the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ *   FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ *   COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ *   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package xyz.rebasing.rebot.api.spi;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+
+/**
+ * CDI event telling the bot that some cached command responses are no longer valid, fired by whoever changed the
+ * data behind them, e.g. a scheduled refresh of the data a command replies with:
+ * <pre>
+ *     &#64;Inject
+ *     Event&lt;InvalidateResponses&gt; invalidate;
+ *
+ *     invalidate.fire(InvalidateResponses.commands("/currency"));
+ * </pre>
+ * Only the responses of commands returning a positive {@link CommandProvider#cacheTtl(String)} are cached.
+ */
+public final class InvalidateResponses {
+
+    private static final InvalidateResponses ALL = new InvalidateResponses(Collections.emptySet(), Optional.empty(),
+                                                                           OptionalLong.empty());
+
+    private final Set<String> commands;
+    private final Optional<String> botId;
+    private final OptionalLong chatId;
+
+    private InvalidateResponses(Set<String> commands, Optional<String> botId, OptionalLong chatId) {
+        this.commands = commands;
+        this.botId = botId;
+        this.chatId = chatId;
+    }
+
+    /**
+     * @return drops every cached response
+     */
+    public static InvalidateResponses all() {
+        return ALL;
+    }
+
+    /**
+     * @param names command names, with the leading slash
+     * @return drops the cached responses of the given commands, in every chat and locale
+     */
+    public static InvalidateResponses commands(String... names) {
+        return new InvalidateResponses(Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(names))),
+                                       Optional.empty(), OptionalLong.empty());
+    }
+
+    /**
+     * @param botId  user id of the bot whose settings changed, each bot in a group has its own settings
+     * @param chatId chat whose settings changed, e.g. its locale or its enabled commands
+     * @return drops the cached responses of the given bot that depend on the settings of the given chat
+     */
+    public static InvalidateResponses chat(String botId, long chatId) {
+        return new InvalidateResponses(Collections.emptySet(), Optional.of(botId), OptionalLong.of(chatId));
+    }
+
+    /**
+     * @return true if every cached response must be dropped
+     */
+    public boolean isAll() {
+        return commands.isEmpty() && !chatId.isPresent();
+    }
+
+    /**
+     * @return the commands whose responses must be dropped, empty if not restricted to some commands
+     */
+    public Set<String> commands() {
+        return commands;
+    }
+
+    /**
+     * @return the bot whose settings changed in {@link #chatId()}, if any
+     */
+    public Optional<String> botId() {
+        return botId;
+    }
+
+    /**
+     * @return the chat whose settings changed, if any
+     */
+    public OptionalLong chatId() {
+        return chatId;
+    }
+
+    @Override
+    public String toString() {
+        return "InvalidateResponses{commands=" + commands + ", botId=" + botId + ", chatId=" + chatId + '}';
+    }
+}
@@ -23,7 +23,14 @@
 
 package xyz.rebasing.rebot.api.spi;
 
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+
 import xyz.rebasing.rebot.api.domain.MessageUpdate;
+import xyz.rebasing.rebot.api.domain.UpdateKind;
 
 public interface PluginProvider {
 
@@ -35,6 +42,19 @@ public interface PluginProvider {
      */
     String process(MessageUpdate update, String locale);
 
+    /**
+     * Asynchronous variant of {@link #process(MessageUpdate, String)}, plugins waiting on external services should
+     * override it so no thread is held while they wait. By default {@link #process} runs on the given executor.
+     *
+     * @param update   message to be processed
+     * @param locale   locale provided by user
+     * @param executor where blocking work can run, on behalf of the bot that received the update
+     * @return the result, once available, null when there is nothing to reply
+     */
+    default CompletionStage<String> processAsync(MessageUpdate update, String locale, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> process(update, locale), executor);
+    }
+
     /**
      * Loads the plugin.
      * It is intended to be used by execute any task needed to start the plugin.
@@ -58,4 +78,25 @@ public interface PluginProvider {
      * @return the configured timeout, this value will be used to delete messages
      */
     long deleteMessageTimeout();
+
+    /**
+     * Kinds of update consumed by this plugin, the bot only asks Telegram for the kinds consumed by at least one
+     * command or plugin and drops the others before they are dispatched.
+     *
+     * @return by default messages and edited messages
+     */
+    default Set<UpdateKind> updateKinds() {
+        return EnumSet.of(UpdateKind.MESSAGE, UpdateKind.EDITED_MESSAGE);
+    }
+
+    /**
+     * Conditions a message must meet for this plugin to be invoked, evaluated for all plugins in a single pass over
+     * the message text. Plugins that only act on a few messages should declare them to not be invoked for every
+     * message received.
+     *
+     * @return by default every message triggers the plugin
+     */
+    default PluginTrigger trigger() {
+        return PluginTrigger.always();
+    }
 }
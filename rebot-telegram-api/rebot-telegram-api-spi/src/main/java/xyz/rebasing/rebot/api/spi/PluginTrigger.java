@@ -0,0 +1,160 @@
+/*
+ *   The MIT License (MIT)
+ *
+ *   Copyright (c) 2017 Rebasing.xyz ReBot
+ *
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy of
+ *   this software and associated documentation files (the "Software"), to deal in
+ *   the Software without restriction, including without limitation the rights to
+ *   use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ *   the Software, and to permit persons to whom the Software is furnished to do so,
+ *   subject to the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ *   FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ *   COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ *   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package xyz.rebasing.rebot.api.spi;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Cheap conditions a message must meet before a plugin is invoked, all the plugin triggers are compiled together so
+ * each message is scanned once to find which plugins may be interested in it. A plugin is invoked if any of its
+ * literals is found in the text, the text starts with any of its prefixes or the message carries any of its fields.
+ * <p>
+ * Triggers are a pre-filter only, the plugin still decides what to do with the message. Literals and prefixes are
+ * matched ignoring case.
+ */
+public final class PluginTrigger {
+
+    private static final PluginTrigger ALWAYS = new PluginTrigger(true, Collections.emptySet(), Collections.emptySet(),
+                                                                  Collections.emptySet(), true);
+
+    private final boolean always;
+    private final Set<String> literals;
+    private final Set<String> prefixes;
+    private final Set<String> fields;
+    private final boolean edits;
+
+    private PluginTrigger(boolean always, Set<String> literals, Set<String> prefixes, Set<String> fields, boolean edits) {
+        this.always = always;
+        this.literals = literals;
+        this.prefixes = prefixes;
+        this.fields = fields;
+        this.edits = edits;
+    }
+
+    /**
+     * @return a trigger that invokes the plugin for every message, including edits
+     */
+    public static PluginTrigger always() {
+        return ALWAYS;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public boolean isAlways() {
+        return always;
+    }
+
+    /**
+     * @return lower case substrings that trigger the plugin wherever they are found in the text
+     */
+    public Set<String> literals() {
+        return literals;
+    }
+
+    /**
+     * @return lower case strings that trigger the plugin when the text starts with them
+     */
+    public Set<String> prefixes() {
+        return prefixes;
+    }
+
+    /**
+     * @return message fields, e.g. <b>new_chat_member</b>, that trigger the plugin when present
+     */
+    public Set<String> fields() {
+        return fields;
+    }
+
+    /**
+     * @return true if the plugin also wants edited messages
+     */
+    public boolean edits() {
+        return edits;
+    }
+
+    @Override
+    public String toString() {
+        return "PluginTrigger{" +
+                "always=" + always +
+                ", literals=" + literals +
+                ", prefixes=" + prefixes +
+                ", fields=" + fields +
+                ", edits=" + edits +
+                '}';
+    }
+
+    public static final class Builder {
+
+        private final Set<String> literals = new LinkedHashSet<>();
+        private final Set<String> prefixes = new LinkedHashSet<>();
+        private final Set<String> fields = new LinkedHashSet<>();
+        private boolean edits = true;
+
+        private Builder() {
+        }
+
+        public Builder literals(String... literals) {
+            for (String literal : literals) {
+                this.literals.add(literal.toLowerCase(Locale.ROOT));
+            }
+            return this;
+        }
+
+        public Builder prefixes(String... prefixes) {
+            for (String prefix : prefixes) {
+                this.prefixes.add(prefix.toLowerCase(Locale.ROOT));
+            }
+            return this;
+        }
+
+        public Builder fields(String... fields) {
+            Collections.addAll(this.fields, fields);
+            return this;
+        }
+
+        /**
+         * @param edits false to not receive edited messages, edits are received by default
+         */
+        public Builder edits(boolean edits) {
+            this.edits = edits;
+            return this;
+        }
+
+        public PluginTrigger build() {
+            if (literals.contains("") || prefixes.contains("")) {
+                throw new IllegalArgumentException("Empty literals or prefixes would match every message, use PluginTrigger.always()");
+            }
+            return new PluginTrigger(false,
+                                     Collections.unmodifiableSet(literals),
+                                     Collections.unmodifiableSet(prefixes),
+                                     Collections.unmodifiableSet(fields),
+                                     edits);
+        }
+    }
+}
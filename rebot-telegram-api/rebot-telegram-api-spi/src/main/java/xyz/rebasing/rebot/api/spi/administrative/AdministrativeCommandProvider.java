@@ -23,9 +23,12 @@
 
 package xyz.rebasing.rebot.api.spi.administrative;
 
+import java.util.EnumSet;
 import java.util.Optional;
+import java.util.Set;
 
 import xyz.rebasing.rebot.api.domain.MessageUpdate;
+import xyz.rebasing.rebot.api.domain.UpdateKind;
 
 /**
  * That's an interface to be used for administrative commands.
@@ -40,9 +43,10 @@ public interface AdministrativeCommandProvider {
     void load();
 
     /**
-     * Executes the command and returns its result
+     * Executes the command and returns its result, the parsed command, with the arguments as typed, is available
+     * from {@link xyz.rebasing.rebot.api.domain.Message#invocation()}
      *
-     * @param key           command parameters
+     * @param key           command parameters, in lower case
      * @param messageUpdate message update
      * @param locale        locale
      * @return the query result based on the key
@@ -83,6 +87,26 @@ public interface AdministrativeCommandProvider {
      */
     long deleteMessageTimeout();
 
+    /**
+     * How long, in seconds, the response to the given arguments can be reused for the same arguments and locale
+     * instead of executing the command again, meant for commands replying with the same text until their data
+     * changes, e.g. after a scheduled refresh firing {@link xyz.rebasing.rebot.api.spi.InvalidateResponses}. Failures are never cached.
+     *
+     * @param key command parameters, in lower case
+     * @return by default 0, responses are not cached
+     */
+    default long cacheTtl(String key) {
+        return 0;
+    }
+
+    /**
+     * @return true if the cached responses depend on the chat settings and can't be shared between chats,
+     * by default false
+     */
+    default boolean cachePerChat() {
+        return false;
+    }
+
     /**
      * Acceptable commands are, i.e: /ping or /ping@botUserId
      * If the botuserId is incorrect, the command will not be recognized.
@@ -93,7 +117,8 @@ public interface AdministrativeCommandProvider {
      */
     default String extractCommand(String fullCommand, String botUserId) {
         // command may have parameters.
-        return fullCommand.split(" ")[0].replace("@" + botUserId, "");
+        int end = fullCommand.indexOf(' ');
+        return (end < 0 ? fullCommand : fullCommand.substring(0, end)).replace("@" + botUserId, "");
     }
 
     /**
@@ -106,12 +131,18 @@ public interface AdministrativeCommandProvider {
      * false - non processable command
      */
     default boolean canProcessCommand(MessageUpdate messageUpdate, String botUserId) {
-        if (null == messageUpdate.getMessage().getText()) {
-            return false;
-        } else {
-            return true ? messageUpdate.getMessage().getText().startsWith("/") &&
-                    (messageUpdate.getMessage().getText().contains("@" + botUserId) || !messageUpdate.getMessage().getText().contains("@")) &&
-                    extractCommand(messageUpdate.getMessage().getText(), botUserId).equals(name()) : false;
-        }
+        return messageUpdate.getMessage().invocation()
+                .filter(invocation -> invocation.isAddressedTo(botUserId) && invocation.name().equals(name()))
+                .isPresent();
+    }
+
+    /**
+     * Kinds of update consumed by this command, the bot only asks Telegram for the kinds consumed by at least one
+     * command or plugin and drops the others before they are dispatched.
+     *
+     * @return by default messages and edited messages
+     */
+    default Set<UpdateKind> updateKinds() {
+        return EnumSet.of(UpdateKind.MESSAGE, UpdateKind.EDITED_MESSAGE);
     }
 }
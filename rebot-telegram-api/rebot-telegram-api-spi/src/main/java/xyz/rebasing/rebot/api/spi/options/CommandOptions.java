@@ -0,0 +1,300 @@
+/*
+ *   The MIT License (MIT)
+ *
+ *   Copyright (c) 2017 Rebasing.xyz ReBot
+ *
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy of
+ *   this software and associated documentation files (the "Software"), to deal in
+ *   the Software without restriction, including without limitation the rights to
+ *   use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ *   the Software, and to permit persons to whom the Software is furnished to do so,
+ *   subject to the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ *   FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ *   COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ *   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package xyz.rebasing.rebot.api.spi.options;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.OptionalInt;
+
+/**
+ * Options accepted by a command, declared once and reused to parse every invocation, e.g.:
+ * <pre>
+ *     private static final CommandOptions OPTIONS = CommandOptions.builder()
+ *             .integer("c", 1, 0)    // -c 3 or -c=3
+ *             .flag("e")             // -e
+ *             .value("l")            // -l pt_BR or -l=pt_BR
+ *             .build();
+ *
+ *     ParsedOptions options = OPTIONS.parse(key.get());
+ *     if (options.hasError()) {
+ *         return options.error(locale);
+ *     }
+ * </pre>
+ * The arguments are parsed in a single pass, the tokens that are not options are kept in order as arguments. Tokens
+ * starting with a dash followed by a digit, e.g. <b>-5</b>, are arguments. Malformed input doesn't throw, it is
+ * reported through {@link ParsedOptions#error(String)} as a localized usage message.
+ */
+public final class CommandOptions {
+
+    private static final CommandOptions NONE = new Builder().unknownAsArguments().build();
+
+    enum Type {
+        FLAG,
+        VALUE,
+        INTEGER
+    }
+
+    private final Map<String, Option> options;
+    private final Option[] byIndex;
+    private final boolean unknownAsArguments;
+
+    private CommandOptions(Map<String, Option> options, boolean unknownAsArguments) {
+        this.options = options;
+        this.unknownAsArguments = unknownAsArguments;
+        this.byIndex = new Option[options.size()];
+        options.values().forEach(option -> byIndex[option.index] = option);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return options of commands that only take arguments, every token is kept as an argument
+     */
+    public static CommandOptions none() {
+        return NONE;
+    }
+
+    /**
+     * @param text the command arguments, without the command itself
+     * @return the parsed options and arguments
+     */
+    public ParsedOptions parse(String text) {
+        ParsedOptions parsed = new ParsedOptions(this);
+        if (null == text) {
+            return parsed;
+        }
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && Character.isWhitespace(text.charAt(i))) {
+                i++;
+            }
+            if (i >= length) {
+                break;
+            }
+            int start = i;
+            while (i < length && !Character.isWhitespace(text.charAt(i))) {
+                i++;
+            }
+            if (!isOption(text, start, i)) {
+                parsed.argument(text.substring(start, i));
+                continue;
+            }
+
+            int nameStart = text.charAt(start + 1) == '-' ? start + 2 : start + 1;
+            int assign = text.indexOf('=', nameStart);
+            int nameEnd = assign < 0 || assign > i ? i : assign;
+            Option option = options.get(text.substring(nameStart, nameEnd));
+            if (null == option) {
+                if (unknownAsArguments) {
+                    parsed.argument(text.substring(start, i));
+                    continue;
+                }
+                String token = text.substring(start, i);
+                return parsed.error(ParsedOptions.Error.UNKNOWN, token, token);
+            }
+            if (option.type == Type.FLAG) {
+                parsed.flag(option.index);
+                continue;
+            }
+
+            String value;
+            if (nameEnd < i) {
+                value = text.substring(nameEnd + 1, i);
+            } else {
+                while (i < length && Character.isWhitespace(text.charAt(i))) {
+                    i++;
+                }
+                int valueStart = i;
+                while (i < length && !Character.isWhitespace(text.charAt(i))) {
+                    i++;
+                }
+                value = text.substring(valueStart, i);
+            }
+            if (value.isEmpty()) {
+                return parsed.error(ParsedOptions.Error.MISSING_VALUE, option.display(), option.display());
+            }
+            if (option.type == Type.VALUE) {
+                parsed.value(option.index, value);
+                continue;
+            }
+            OptionalInt number = parseInt(value);
+            if (!number.isPresent()) {
+                return parsed.error(ParsedOptions.Error.NOT_INTEGER, value, option.display(), value);
+            }
+            if (number.getAsInt() < option.min) {
+                return parsed.error(ParsedOptions.Error.BELOW_MIN, value, option.display(), option.min, value);
+            }
+            parsed.integer(option.index, number.getAsInt());
+        }
+        return parsed;
+    }
+
+    /**
+     * Parses a decimal integer without using exceptions for the values that are not numbers.
+     *
+     * @param value text to parse, an optional sign followed by digits
+     * @return the number or empty if the value is not an integer or doesn't fit on an int
+     */
+    public static OptionalInt parseInt(CharSequence value) {
+        int length = null == value ? 0 : value.length();
+        if (length == 0) {
+            return OptionalInt.empty();
+        }
+        boolean negative = value.charAt(0) == '-';
+        int start = negative || value.charAt(0) == '+' ? 1 : 0;
+        if (start == length) {
+            return OptionalInt.empty();
+        }
+        long result = 0;
+        for (int i = start; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return OptionalInt.empty();
+            }
+            result = result * 10 + (c - '0');
+            if (result > (long) Integer.MAX_VALUE + 1) {
+                return OptionalInt.empty();
+            }
+        }
+        result = negative ? -result : result;
+        if (result > Integer.MAX_VALUE) {
+            return OptionalInt.empty();
+        }
+        return OptionalInt.of((int) result);
+    }
+
+    Option option(String name) {
+        Option option = options.get(name);
+        if (null == option) {
+            throw new IllegalArgumentException("Option " + name + " was not declared.");
+        }
+        return option;
+    }
+
+    Option option(int index) {
+        return byIndex[index];
+    }
+
+    int size() {
+        return byIndex.length;
+    }
+
+    private static boolean isOption(String text, int start, int end) {
+        if (end - start < 2 || text.charAt(start) != '-') {
+            return false;
+        }
+        // negative numbers are arguments
+        return !Character.isDigit(text.charAt(start + 1));
+    }
+
+    static final class Option {
+
+        final String name;
+        final Type type;
+        final int index;
+        final String defaultValue;
+        final int defaultInteger;
+        final int min;
+
+        private Option(String name, Type type, int index, String defaultValue, int defaultInteger, int min) {
+            this.name = name;
+            this.type = type;
+            this.index = index;
+            this.defaultValue = defaultValue;
+            this.defaultInteger = defaultInteger;
+            this.min = min;
+        }
+
+        String display() {
+            return "-" + name;
+        }
+    }
+
+    public static final class Builder {
+
+        private final Map<String, Option> options = new HashMap<>();
+        private boolean unknownAsArguments = false;
+
+        private Builder() {
+        }
+
+        /**
+         * Keeps the tokens that look like undeclared options as arguments instead of reporting them, for commands
+         * whose arguments may start with a dash.
+         */
+        public Builder unknownAsArguments() {
+            this.unknownAsArguments = true;
+            return this;
+        }
+
+        /**
+         * @param name option name without the dash, true when present
+         */
+        public Builder flag(String name) {
+            return add(name, Type.FLAG, null, 0, Integer.MIN_VALUE);
+        }
+
+        /**
+         * @param name option name without the dash, followed by a value, null when absent
+         */
+        public Builder value(String name) {
+            return value(name, null);
+        }
+
+        /**
+         * @param name         option name without the dash, followed by a value
+         * @param defaultValue value used when the option is absent
+         */
+        public Builder value(String name, String defaultValue) {
+            return add(name, Type.VALUE, defaultValue, 0, Integer.MIN_VALUE);
+        }
+
+        /**
+         * @param name         option name without the dash, followed by an integer
+         * @param defaultValue value used when the option is absent
+         * @param min          smallest value accepted
+         */
+        public Builder integer(String name, int defaultValue, int min) {
+            return add(name, Type.INTEGER, null, defaultValue, min);
+        }
+
+        public CommandOptions build() {
+            return new CommandOptions(new HashMap<>(options), unknownAsArguments);
+        }
+
+        private Builder add(String name, Type type, String defaultValue, int defaultInteger, int min) {
+            if (null == name || name.isEmpty() || name.startsWith("-") || name.contains("=")) {
+                throw new IllegalArgumentException("Invalid option name: " + name);
+            }
+            if (options.containsKey(name)) {
+                throw new IllegalArgumentException("Option " + name + " declared twice.");
+            }
+            options.put(name, new Option(name, type, options.size(), defaultValue, defaultInteger, min));
+            return this;
+        }
+    }
+}
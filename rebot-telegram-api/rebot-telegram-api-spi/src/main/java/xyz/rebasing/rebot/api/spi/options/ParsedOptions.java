@@ -0,0 +1,175 @@
+/*
+ *   The MIT License (MIT)
+ *
+ *   Copyright (c) 2017 Rebasing.xyz ReBot
+ *
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy of
+ *   this software and associated documentation files (the "Software"), to deal in
+ *   the Software without restriction, including without limitation the rights to
+ *   use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ *   the Software, and to permit persons to whom the Software is furnished to do so,
+ *   subject to the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ *   FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ *   COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ *   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package xyz.rebasing.rebot.api.spi.options;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import xyz.rebasing.rebot.api.i18n.I18nHelper;
+
+/**
+ * Result of {@link CommandOptions#parse(String)}, the options not given hold their declared default.
+ */
+public final class ParsedOptions {
+
+    /**
+     * Why the arguments could not be parsed.
+     */
+    public enum Error {
+        UNKNOWN("options.unknown"),
+        MISSING_VALUE("options.missing.value"),
+        NOT_INTEGER("options.not.integer"),
+        BELOW_MIN("options.below.min");
+
+        private final String key;
+
+        Error(String key) {
+            this.key = key;
+        }
+    }
+
+    private final CommandOptions spec;
+    private final boolean[] present;
+    private final String[] values;
+    private final int[] integers;
+    private List<String> arguments = Collections.emptyList();
+    private Error error;
+    private String errorToken;
+    private Object[] errorArgs;
+
+    ParsedOptions(CommandOptions spec) {
+        this.spec = spec;
+        this.present = new boolean[spec.size()];
+        this.values = new String[spec.size()];
+        this.integers = new int[spec.size()];
+        for (int i = 0; i < spec.size(); i++) {
+            values[i] = spec.option(i).defaultValue;
+            integers[i] = spec.option(i).defaultInteger;
+        }
+    }
+
+    /**
+     * @return true if the arguments could not be parsed, the options and arguments are then incomplete
+     */
+    public boolean hasError() {
+        return null != error;
+    }
+
+    /**
+     * @return why the arguments could not be parsed, or null if they were
+     */
+    public Error errorType() {
+        return error;
+    }
+
+    /**
+     * @return the token that could not be parsed, or null if the arguments were parsed
+     */
+    public String errorToken() {
+        return errorToken;
+    }
+
+    /**
+     * @param locale locale of the chat
+     * @return the usage error, or null if the arguments were parsed
+     */
+    public String error(String locale) {
+        return hasError() ? String.format(I18nHelper.resource("Options", locale, error.key), errorArgs) : null;
+    }
+
+    /**
+     * @param name declared option name
+     * @return true if the option was given
+     */
+    public boolean isPresent(String name) {
+        return present[spec.option(name).index];
+    }
+
+    /**
+     * @param name declared flag name
+     * @return true if the flag was given
+     */
+    public boolean flag(String name) {
+        return isPresent(name);
+    }
+
+    /**
+     * @param name declared value option name
+     * @return the given value or its default
+     */
+    public String value(String name) {
+        return values[spec.option(name).index];
+    }
+
+    /**
+     * @param name declared integer option name
+     * @return the given value or its default
+     */
+    public int integer(String name) {
+        return integers[spec.option(name).index];
+    }
+
+    /**
+     * @return the tokens that are not options, in the order they were given
+     */
+    public List<String> arguments() {
+        return Collections.unmodifiableList(arguments);
+    }
+
+    /**
+     * @return the arguments joined by a single space
+     */
+    public String text() {
+        return String.join(" ", arguments);
+    }
+
+    void argument(String argument) {
+        if (arguments.isEmpty()) {
+            arguments = new ArrayList<>(4);
+        }
+        arguments.add(argument);
+    }
+
+    void flag(int index) {
+        present[index] = true;
+    }
+
+    void value(int index, String value) {
+        present[index] = true;
+        values[index] = value;
+    }
+
+    void integer(int index, int value) {
+        present[index] = true;
+        integers[index] = value;
+    }
+
+    ParsedOptions error(Error error, String token, Object... args) {
+        this.error = error;
+        this.errorToken = token;
+        this.errorArgs = args;
+        return this;
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ *   The MIT License (MIT)
+ *
+ *   Copyright (c) 2017 Rebasing.xyz ReBot
+ *
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy of
+ *   this software and associated documentation files (the "Software"), to deal in
+ *   the Software without restriction, including without limitation the rights to
+ *   use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ *   the Software, and to permit persons to whom the Software is furnished to do so,
+ *   subject to the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ *   FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ *   COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ *   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package xyz.rebasing.rebot.api.spi.options;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.OptionalInt;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CommandOptionsTest {
+
+    private static final CommandOptions OPTIONS = CommandOptions.builder()
+            .integer("c", 1, 0)
+            .flag("e")
+            .value("l", "en_US")
+            .build();
+
+    @Test
+    public void testDefaults() {
+        ParsedOptions options = OPTIONS.parse("38400000");
+        Assert.assertFalse(options.hasError());
+        Assert.assertEquals(1, options.integer("c"));
+        Assert.assertFalse(options.flag("e"));
+        Assert.assertFalse(options.isPresent("l"));
+        Assert.assertEquals("en_US", options.value("l"));
+        Assert.assertEquals(Collections.singletonList("38400000"), options.arguments());
+    }
+
+    @Test
+    public void testOptionsAndArguments() {
+        ParsedOptions options = OPTIONS.parse(" rua  -c 3 -e sao -l=pt_BR paulo ");
+        Assert.assertFalse(options.hasError());
+        Assert.assertEquals(3, options.integer("c"));
+        Assert.assertTrue(options.flag("e"));
+        Assert.assertEquals("pt_BR", options.value("l"));
+        Assert.assertEquals(Arrays.asList("rua", "sao", "paulo"), options.arguments());
+        Assert.assertEquals("rua sao paulo", options.text());
+        Assert.assertEquals(5, OPTIONS.parse("--c=5").integer("c"));
+    }
+
+    @Test
+    public void testNegativeNumbersAreArguments() {
+        ParsedOptions options = OPTIONS.parse("-5 -e");
+        Assert.assertFalse(options.hasError());
+        Assert.assertTrue(options.flag("e"));
+        Assert.assertEquals(Collections.singletonList("-5"), options.arguments());
+    }
+
+    @Test
+    public void testErrors() {
+        ParsedOptions unknown = OPTIONS.parse("-x 1");
+        Assert.assertEquals(ParsedOptions.Error.UNKNOWN, unknown.errorType());
+        Assert.assertEquals("-x", unknown.errorToken());
+        Assert.assertEquals("Unknown option <b>-x</b>, see the command help.", unknown.error("en_US"));
+
+        Assert.assertEquals(ParsedOptions.Error.MISSING_VALUE, OPTIONS.parse("abc -l").errorType());
+        Assert.assertEquals(ParsedOptions.Error.NOT_INTEGER, OPTIONS.parse("-c three").errorType());
+        ParsedOptions belowMin = OPTIONS.parse("-c=-1");
+        Assert.assertEquals(ParsedOptions.Error.BELOW_MIN, belowMin.errorType());
+        Assert.assertEquals("Option <b>-c</b> only accepts values from 0, <b>-1</b> is not valid.", belowMin.error("en_US"));
+
+        Assert.assertNull(OPTIONS.parse("abc").error("en_US"));
+    }
+
+    @Test
+    public void testUnknownAsArguments() {
+        ParsedOptions options = CommandOptions.none().parse("usd -brl 10");
+        Assert.assertFalse(options.hasError());
+        Assert.assertEquals(Arrays.asList("usd", "-brl", "10"), options.arguments());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUndeclaredOption() {
+        OPTIONS.parse("").value("x");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDeclaredTwice() {
+        CommandOptions.builder().flag("e").value("e");
+    }
+
+    @Test
+    public void testParseInt() {
+        Assert.assertEquals(OptionalInt.of(42), CommandOptions.parseInt("42"));
+        Assert.assertEquals(OptionalInt.of(-42), CommandOptions.parseInt("-42"));
+        Assert.assertEquals(OptionalInt.of(42), CommandOptions.parseInt("+42"));
+        Assert.assertEquals(OptionalInt.of(Integer.MIN_VALUE), CommandOptions.parseInt("-2147483648"));
+        Assert.assertFalse(CommandOptions.parseInt("2147483648").isPresent());
+        Assert.assertFalse(CommandOptions.parseInt("-").isPresent());
+        Assert.assertFalse(CommandOptions.parseInt("4a").isPresent());
+        Assert.assertFalse(CommandOptions.parseInt("").isPresent());
+        Assert.assertFalse(CommandOptions.parseInt(null).isPresent());
+    }
+}
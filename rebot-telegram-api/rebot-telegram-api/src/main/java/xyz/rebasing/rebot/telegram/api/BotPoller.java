@@ -0,0 +1,364 @@
+/*
+ *   The MIT License (MIT)
+ *
+ *   Copyright (c) 2017 Rebasing.xyz ReBot
+ *
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy of
+ *   this software and associated documentation files (the "Software"), to deal in
+ *   the Software without restriction, including without limitation the rights to
+ *   use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ *   the Software, and to permit persons to whom the Software is furnished to do so,
+ *   subject to the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ *   FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ *   COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ *   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package xyz.rebasing.rebot.telegram.api;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import okhttp3.Call;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import org.jboss.logging.Logger;
+import xyz.rebasing.rebot.api.conf.BotConfig;
+import xyz.rebasing.rebot.api.conf.BotIdentity;
+import xyz.rebasing.rebot.api.domain.GetUpdatesConfProducer;
+import xyz.rebasing.rebot.api.domain.MessageUpdate;
+
+/**
+ * Long polling loop of a single bot, created by {@link UpdatesReceiver} for every configured bot.
+ * <p>
+ * A new getUpdates call is issued as soon as the previous one returns, Telegram holds the call open for
+ * <b>xyz.rebasing.rebot.telegram.polling.timeout</b> seconds when there is nothing to deliver.
+ * Failed calls are retried with an exponential backoff with jitter.
+ * Polled updates are handed off through a bounded queue to the processor thread, so the next getUpdates call
+ * is already in flight while the current batch is processed.
+ * <p>
+ * The offset sent to Telegram, which confirms every update before it, is the committed offset of the
+ * {@link UpdateDispatcher}, so an update is only forgotten by Telegram once it was processed and its offset stored.
+ * The updates polled again while they are still queued or being processed are skipped, when a call brings nothing new
+ * the next one waits a little, as Telegram returns the updates not confirmed yet right away.
+ * <p>
+ * With failover enabled no call is made once the polling lease of the bot ran out, and a call never waits on Telegram
+ * for longer than the lease is still valid.
+ */
+class BotPoller implements Runnable {
+
+    private final Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
+
+    private static final int MIN_POLLING_LIMIT = 10;
+    // extra time given to the http client on top of the long polling timeout before giving up on the call.
+    private static final int READ_TIMEOUT_MARGIN = 15;
+    // how long the poller waits before checking again for room in a full hand-off queue.
+    private static final long BACKPRESSURE_PAUSE = 100L;
+
+    private final BotIdentity bot;
+    private final BotConfig config;
+    private final ObjectMapper objectMapper;
+    private final UpdateDispatcher dispatcher;
+    private final OkHttpClient pollingClient;
+    private final MediaType mediaTypeJson;
+    private final LongSupplier remainingLease;
+
+    // highest update id handed off, the ones polled again up to it are skipped
+    private long lastUpdateId = 0L;
+    private int currentLimit;
+    private int consecutiveFailures = 0;
+    private volatile boolean running = false;
+    private volatile Call inFlight;
+    private final BlockingQueue<QueuedUpdate> handOff;
+    private final LongAdder handedOff = new LongAdder();
+    private final LongAdder handOffLatencyTotal = new LongAdder();
+    private final AtomicLong handOffLatencyMax = new AtomicLong();
+    private final LongAdder backpressurePauses = new LongAdder();
+    private final LongAdder leasePauses = new LongAdder();
+    private final LongAdder unconfirmedPauses = new LongAdder();
+    private final ExecutorService executorService;
+    private final ExecutorService processorService;
+
+    /**
+     * @param sharedClient the http client shared by every bot, the long polling client reuses its connection pool
+     *                     with a read timeout large enough to hold the getUpdates call open for the configured
+     *                     server side timeout.
+     * @param remainingLease milliseconds the bot may still be polled by this node
+     */
+    BotPoller(BotIdentity bot, BotConfig config, ObjectMapper objectMapper, UpdateDispatcher dispatcher,
+              OkHttpClient sharedClient, MediaType mediaTypeJson, LongSupplier remainingLease) {
+        this.bot = bot;
+        this.config = config;
+        this.objectMapper = objectMapper;
+        this.dispatcher = dispatcher;
+        this.mediaTypeJson = mediaTypeJson;
+        this.remainingLease = remainingLease;
+        this.pollingClient = sharedClient.newBuilder()
+                .readTimeout(config.pollingTimeout() + READ_TIMEOUT_MARGIN, TimeUnit.SECONDS)
+                .build();
+        this.currentLimit = config.pollingLimit();
+        this.handOff = new ArrayBlockingQueue<>(config.updatesQueueSize());
+        this.executorService = Executors.newSingleThreadExecutor(r -> new Thread(r, "rebot-updates-receiver-" + bot.name()));
+        this.processorService = Executors.newSingleThreadExecutor(r -> new Thread(r, "rebot-updates-processor-" + bot.name()));
+    }
+
+    @SuppressWarnings("FutureReturnValueIgnored")
+    void start() {
+        lastUpdateId = dispatcher.committedOffset(bot);
+        log.infov("Resuming updates of {0} after the committed offset {1}", bot.name(), lastUpdateId);
+        running = true;
+        processorService.submit(this::process);
+        executorService.submit(this);
+    }
+
+    /**
+     * Stops the long polling loop and cancels the getUpdates call in flight, if any.
+     * The updates already handed off are given the timeout to be processed, the ones not committed by then are polled
+     * again after a restart.
+     *
+     * @param timeout how long, in seconds, to wait for the hand-off queue to be drained
+     */
+    void stop(long timeout) {
+        running = false;
+        Call call = inFlight;
+        if (null != call) {
+            call.cancel();
+        }
+        executorService.shutdownNow();
+        processorService.shutdown();
+        try {
+            if (!processorService.awaitTermination(timeout, TimeUnit.SECONDS)) {
+                log.warnv("{0} updates of {1} were not processed before shutting down.", handOff.size(), bot.name());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        processorService.shutdownNow();
+    }
+
+    /**
+     * @return the hand-off queue statistics, the latency is the time an update waited in the queue, in milliseconds.
+     */
+    Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long count = handedOff.sum();
+        stats.put("queueDepth", handOff.size());
+        stats.put("queueCapacity", config.updatesQueueSize());
+        stats.put("handedOff", count);
+        stats.put("handOffLatencyAvgMs", count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(handOffLatencyTotal.sum() / count));
+        stats.put("handOffLatencyMaxMs", TimeUnit.NANOSECONDS.toMillis(handOffLatencyMax.get()));
+        stats.put("backpressurePauses", backpressurePauses.sum());
+        stats.put("leasePauses", leasePauses.sum());
+        stats.put("unconfirmedPauses", unconfirmedPauses.sum());
+        return stats;
+    }
+
+    @Override
+    public void run() {
+        while (running && !Thread.currentThread().isInterrupted()) {
+            try {
+                if (handOff.remainingCapacity() == 0) {
+                    // backpressure, the processor is behind, hold the next call until there is room for updates.
+                    backpressurePauses.increment();
+                    Thread.sleep(BACKPRESSURE_PAUSE);
+                    continue;
+                }
+                long lease = remainingLease.getAsLong();
+                if (lease <= 0) {
+                    // the lease may be taken over by another node, no call is made unless it gets renewed
+                    leasePauses.increment();
+                    Thread.sleep(BACKPRESSURE_PAUSE);
+                    continue;
+                }
+                long handedOffBefore = lastUpdateId;
+                int received = poll(lease);
+                consecutiveFailures = 0;
+                adjustLimit(received);
+                if (received > 0 && lastUpdateId == handedOffBefore) {
+                    // only updates still being processed came back, wait for their offset to be committed
+                    unconfirmedPauses.increment();
+                    Thread.sleep(BACKPRESSURE_PAUSE);
+                }
+            } catch (final Exception e) {
+                if (!running) {
+                    break;
+                }
+                if (log.isDebugEnabled()) {
+                    e.printStackTrace();
+                }
+                consecutiveFailures++;
+                long delay = backoffDelay();
+                log.warnv("Error {0}, retrying getUpdates of {1} in {2}ms", e.getMessage(), bot.name(), delay);
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        log.infov("Updates receiver of {0} stopped.", bot.name());
+    }
+
+    /**
+     * Processor stage, takes the updates handed off by the poller and dispatches them in order to the chat lanes
+     * until the receiver is stopped and the queue is drained.
+     */
+    private void process() {
+        while (running || !handOff.isEmpty()) {
+            try {
+                QueuedUpdate queued = handOff.poll(1, TimeUnit.SECONDS);
+                if (null == queued) {
+                    continue;
+                }
+                long latency = System.nanoTime() - queued.enqueuedAt;
+                handedOff.increment();
+                handOffLatencyTotal.add(latency);
+                handOffLatencyMax.accumulateAndGet(latency, Math::max);
+                dispatcher.dispatch(bot, queued.update);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        log.infov("Updates processor of {0} stopped.", bot.name());
+    }
+
+    /**
+     * Performs a single getUpdates call and hands the received updates off to the processor, never asking for
+     * more updates than the hand-off queue can hold.
+     *
+     * @param lease milliseconds the bot may still be polled, Telegram doesn't hold the call for longer
+     * @return the number of updates received
+     * @throws Exception if the call fails or Telegram replies with an error
+     */
+    private int poll(long lease) throws Exception {
+        GetUpdatesConfProducer getUpdates = new GetUpdatesConfProducer()
+                .setLimit(Math.max(1, Math.min(currentLimit, handOff.remainingCapacity())))
+                .setTimeout((int) Math.min(config.pollingTimeout(), TimeUnit.MILLISECONDS.toSeconds(lease)))
+                .setOffset(dispatcher.confirmedOffset(bot) + 1)
+                .setAllowedUpdates(dispatcher.allowedUpdates());
+        log.tracev("receiver config -> {0}", getUpdates.toString());
+
+        Request request = new Request.Builder()
+                .url(String.format("https://api.telegram.org/bot%s/getUpdates", bot.token()))
+                .addHeader("charset", StandardCharsets.UTF_8.name())
+                .post(RequestBody.create(objectMapper.writeValueAsString(getUpdates), mediaTypeJson))
+                .build();
+
+        Call call = pollingClient.newCall(request);
+        inFlight = call;
+        try (Response response = call.execute()) {
+            if (!response.isSuccessful()) {
+                throw new IllegalStateException("Error received from Telegram API, status code is " + response.code());
+            }
+            return readUpdates(response.body().byteStream());
+        } finally {
+            inFlight = null;
+        }
+    }
+
+    /**
+     * Reads the getUpdates response as a stream, every update of the <b>result</b> array is handed off as soon as
+     * it is bound instead of waiting for the whole batch to be read.
+     *
+     * @param body the response body
+     * @return the number of updates read
+     * @throws IOException if the body cannot be read or Telegram replied with an error
+     */
+    private int readUpdates(InputStream body) throws IOException, InterruptedException {
+        int received = 0;
+        String description = null;
+        boolean ok = true;
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Unexpected getUpdates response, expected a json object.");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if ("ok".equals(field)) {
+                    ok = token == JsonToken.VALUE_TRUE;
+                } else if ("description".equals(field)) {
+                    description = parser.getValueAsString();
+                } else if ("result".equals(field) && token == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        MessageUpdate update = objectMapper.readValue(parser, MessageUpdate.class);
+                        received++;
+                        if (update.getUpdateId() <= lastUpdateId) {
+                            continue;
+                        }
+                        handOff.put(new QueuedUpdate(update));
+                        lastUpdateId = update.getUpdateId();
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        if (!ok) {
+            throw new IOException("Error received from Telegram API: " + description);
+        }
+        return received;
+    }
+
+    /**
+     * A full batch means there is still backlog on Telegram's side, so the next call asks for more updates.
+     * When the backlog is drained the limit shrinks back, keeping batches small on quiet chats.
+     *
+     * @param received number of updates received in the last call
+     */
+    private void adjustLimit(int received) {
+        if (received >= currentLimit) {
+            currentLimit = Math.min(currentLimit * 2, config.pollingLimit());
+        } else if (received < currentLimit / 4) {
+            currentLimit = Math.max(currentLimit / 2, Math.min(MIN_POLLING_LIMIT, config.pollingLimit()));
+        }
+    }
+
+    /**
+     * @return the delay before the next getUpdates call, doubled on every consecutive failure and
+     * randomized between half and the full value to avoid retrying in lockstep.
+     */
+    private long backoffDelay() {
+        int exponent = Math.min(consecutiveFailures - 1, 20);
+        long delay = Math.min(config.pollingBackoffMax(), config.pollingBackoffInitial() << exponent);
+        return ThreadLocalRandom.current().nextLong(delay / 2, delay + 1);
+    }
+
+    private static class QueuedUpdate {
+
+        private final MessageUpdate update;
+        private final long enqueuedAt;
+
+        private QueuedUpdate(MessageUpdate update) {
+            this.update = update;
+            this.enqueuedAt = System.nanoTime();
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ *   The MIT License (MIT)
+ *
+ *   Copyright (c) 2017 Rebasing.xyz ReBot
+ *
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy of
+ *   this software and associated documentation files (the "Software"), to deal in
+ *   the Software without restriction, including without limitation the rights to
+ *   use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ *   the Software, and to permit persons to whom the Software is furnished to do so,
+ *   subject to the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ *   FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ *   COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ *   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package xyz.rebasing.rebot.telegram.api;
+
+import java.lang.invoke.MethodHandles;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+import org.jboss.logging.Logger;
+import xyz.rebasing.rebot.api.conf.BotConfig;
+import xyz.rebasing.rebot.api.conf.BotIdentity;
+import xyz.rebasing.rebot.service.persistence.repository.ApiRepository;
+
+/**
+ * Active-passive election of the node allowed to poll each bot, backed by the POLLER_LEASE table of the
+ * persistence datasource. Every node tries to acquire or renew the lease of each bot every third of the
+ * <b>xyz.rebasing.rebot.telegram.failover.lease</b> seconds, the holder polls while the others stay on standby
+ * and take over, resuming from the committed offset, once the holder stops renewing it.
+ * <p>
+ * The lease expires according to the database clock, while the holder measures its validity with its own monotonic
+ * clock from the moment it asked for the renewal, minus one renewal interval. The {@link BotPoller} checks
+ * {@link #remaining(BotIdentity)} before each getUpdates call and doesn't poll once it ran out, even if the renewal is
+ * still blocked on the database, so it always stops before a standby node is able to acquire the lease.
+ */
+class PollerLeader implements Runnable {
+
+    private final Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
+
+    private final BotConfig config;
+    private final ApiRepository apiRepository;
+    private final Consumer<BotIdentity> onAcquire;
+    private final Consumer<BotIdentity> onLose;
+    private final String node;
+    private final long leaseMillis;
+    private final long renewMillis;
+    private final LongSupplier clock;
+    // bots whose lease is held by this node and until when, in clock nanoseconds, the last renewal is valid.
+    private final Map<BotIdentity, Long> held = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "rebot-poller-leader"));
+
+    PollerLeader(BotConfig config, ApiRepository apiRepository,
+                 Consumer<BotIdentity> onAcquire, Consumer<BotIdentity> onLose) {
+        this(config, apiRepository, onAcquire, onLose, System::nanoTime);
+    }
+
+    /**
+     * @param clock monotonic clock, in nanoseconds, measuring the validity of the leases held
+     */
+    PollerLeader(BotConfig config, ApiRepository apiRepository,
+                 Consumer<BotIdentity> onAcquire, Consumer<BotIdentity> onLose, LongSupplier clock) {
+        this.config = config;
+        this.apiRepository = apiRepository;
+        this.onAcquire = onAcquire;
+        this.onLose = onLose;
+        this.node = config.failoverNode();
+        this.leaseMillis = TimeUnit.SECONDS.toMillis(config.failoverLease());
+        this.renewMillis = leaseMillis / 3;
+        this.clock = clock;
+    }
+
+    @SuppressWarnings("FutureReturnValueIgnored")
+    void start() {
+        log.infov("Failover enabled, node {0} is competing for the polling lease every {1}ms", node, renewMillis);
+        scheduler.scheduleWithFixedDelay(this, 0, renewMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops competing for the leases, stops the pollers of the bots held by this node and releases their leases
+     * so a standby node takes over without waiting for them to expire.
+     */
+    void stop() {
+        scheduler.shutdownNow();
+        try {
+            scheduler.awaitTermination(renewMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (BotIdentity bot : held.keySet()) {
+            lose(bot);
+            try {
+                apiRepository.releaseLease(bot.userId(), node);
+            } catch (final Exception e) {
+                log.warnv("Unable to release the polling lease of {0}: {1}", bot.name(), e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        for (BotIdentity bot : config.bots()) {
+            renew(bot);
+        }
+    }
+
+    /**
+     * @param bot {@link BotIdentity}
+     * @return milliseconds the given bot may still be polled by this node, 0 if its lease is not held or ran out
+     */
+    long remaining(BotIdentity bot) {
+        Long validUntil = held.get(bot);
+        if (null == validUntil) {
+            return 0L;
+        }
+        return Math.max(0L, TimeUnit.NANOSECONDS.toMillis(validUntil - clock.getAsLong()));
+    }
+
+    /**
+     * @return the node name and the bots this node is polling for
+     */
+    Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("node", node);
+        stats.put("leaseMs", leaseMillis);
+        stats.put("active", held.keySet().stream().map(BotIdentity::name).toArray());
+        return stats;
+    }
+
+    private void renew(BotIdentity bot) {
+        // measured before the call, the database starts counting the lease later than that
+        long validUntil = clock.getAsLong() + TimeUnit.MILLISECONDS.toNanos(leaseMillis - renewMillis);
+        boolean acquired;
+        try {
+            acquired = apiRepository.acquireLease(bot.userId(), node, leaseMillis);
+        } catch (final Exception e) {
+            long remaining = remaining(bot);
+            if (remaining > 0) {
+                log.warnv("Unable to renew the polling lease of {0}, still valid for {1}ms: {2}",
+                          bot.name(), remaining, e.getMessage());
+                return;
+            }
+            log.debugv("Unable to acquire the polling lease of {0}: {1}", bot.name(), e.getMessage());
+            acquired = false;
+        }
+
+        if (acquired) {
+            if (null == held.put(bot, validUntil)) {
+                log.infov("Node {0} acquired the polling lease of {1}", node, bot.name());
+                onAcquire.accept(bot);
+            }
+        } else if (held.containsKey(bot)) {
+            log.warnv("Node {0} lost the polling lease of {1}, going standby", node, bot.name());
+            lose(bot);
+        }
+    }
+
+    private void lose(BotIdentity bot) {
+        if (null != held.remove(bot)) {
+            onLose.accept(bot);
+        }
+    }
+}
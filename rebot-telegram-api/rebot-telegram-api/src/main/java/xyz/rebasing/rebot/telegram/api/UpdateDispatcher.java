@@ -0,0 +1,475 @@
+/*
+ *   The MIT License (MIT)
+ *
+ *   Copyright (c) 2017 Rebasing.xyz ReBot
+ *
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy of
+ *   this software and associated documentation files (the "Software"), to deal in
+ *   the Software without restriction, including without limitation the rights to
+ *   use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ *   the Software, and to permit persons to whom the Software is furnished to do so,
+ *   subject to the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ *   FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ *   COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ *   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package xyz.rebasing.rebot.telegram.api;
+
+import java.lang.invoke.MethodHandles;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.inject.Instance;
+import javax.inject.Inject;
+
+import org.jboss.logging.Logger;
+import xyz.rebasing.rebot.api.conf.BotConfig;
+import xyz.rebasing.rebot.api.conf.BotIdentity;
+import xyz.rebasing.rebot.api.domain.Message;
+import xyz.rebasing.rebot.api.domain.MessageUpdate;
+import xyz.rebasing.rebot.api.domain.UpdateKind;
+import xyz.rebasing.rebot.api.spi.PluginProvider;
+import xyz.rebasing.rebot.service.persistence.repository.ApiRepository;
+import xyz.rebasing.rebot.service.persistence.repository.WriteBehind;
+import xyz.rebasing.rebot.telegram.api.message.CommandRouter;
+import xyz.rebasing.rebot.telegram.api.polling.ReBotLongPoolingBot;
+
+import static xyz.rebasing.rebot.telegram.api.filter.ReBotPredicate.isCommand;
+import static xyz.rebasing.rebot.telegram.api.filter.ReBotPredicate.isMemberEvent;
+import static xyz.rebasing.rebot.telegram.api.filter.ReBotPredicate.messageIsNotNull;
+
+/**
+ * Single entry point for the updates received from Telegram, regardless if they were polled or pushed through
+ * the webhook. Redelivered updates, which happens when a getUpdates call or a webhook delivery is retried,
+ * are dropped based on a bounded set of the most recent update ids.
+ * <p>
+ * Updates are processed on <b>xyz.rebasing.rebot.telegram.updates.lanes</b> lanes, the chat id decides the lane so
+ * the updates of a chat are processed in the order they were received while different chats are processed in
+ * parallel.
+ * Each {@link UpdatePriority} has its own lanes, so the order is kept among the updates of a chat with the same
+ * priority. Administrative commands and member events get a lane of their own
+ * while commands and passive messages get <b>xyz.rebasing.rebot.telegram.updates.lanes</b> lanes each. Passive
+ * messages are shed, instead of waiting, once their lane is above <b>xyz.rebasing.rebot.telegram.updates.shed.threshold</b>
+ * of its capacity.
+ * <p>
+ * An update is only remembered once the commands and plugins processing it replied, the committed offset is the
+ * highest update id with no update still being processed before it. It is written every
+ * <b>xyz.rebasing.rebot.telegram.updates.commit.interval</b> milliseconds and when the lanes are drained. The polled
+ * updates are only confirmed to Telegram up to the committed offset, see {@link #confirmedOffset(BotIdentity)}, so the
+ * ones still queued, being processed or not committed yet when the process stops are polled again after a restart or
+ * by the node taking over (at-least-once). Updates pushed through the webhook are confirmed to Telegram as soon as
+ * they are dispatched and are not delivered again. An update whose processing fails is not delivered again, its
+ * replies may have been sent already. The writes kept in memory by the {@link WriteBehind} repositories are stored
+ * before the offset is committed.
+ * <p>
+ * The lanes are shared by every bot served by this process, duplicates and offsets are tracked per bot and the
+ * update is processed on behalf of the bot that received it.
+ */
+@ApplicationScoped
+public class UpdateDispatcher {
+
+    private final Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
+
+    @Inject
+    BotConfig config;
+
+    @Inject
+    ReBotLongPoolingBot callback;
+
+    @Inject
+    ApiRepository apiRepository;
+
+    @Inject
+    CommandRouter router;
+
+    @Inject
+    Instance<PluginProvider> plugin;
+
+    @Inject
+    Instance<WriteBehind> writeBehind;
+
+    private final Map<BotIdentity, BotUpdates> botUpdates = new ConcurrentHashMap<>();
+    private volatile boolean running = true;
+    private final Map<UpdatePriority, LaneGroup> groups = new EnumMap<>(UpdatePriority.class);
+    private final Set<UpdateKind> allowedUpdates = EnumSet.noneOf(UpdateKind.class);
+    private final LongAdder filtered = new LongAdder();
+    private final Set<CompletableFuture<Void>> inFlight = ConcurrentHashMap.newKeySet();
+    private ExecutorService laneService;
+    private final ScheduledExecutorService offsetWriter = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "rebot-offset-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    @SuppressWarnings({"unchecked", "FutureReturnValueIgnored"})
+    void init() {
+        router.administrativeCommands().forEach(c -> allowedUpdates.addAll(c.updateKinds()));
+        router.commands().forEach(c -> allowedUpdates.addAll(c.updateKinds()));
+        plugin.forEach(p -> allowedUpdates.addAll(p.updateKinds()));
+        log.infov("Consumed update kinds: {0}", allowedUpdates);
+
+        int laneCapacity = Math.max(1, config.updatesQueueSize() / config.updatesLanes());
+        groups.put(UpdatePriority.ADMINISTRATIVE, new LaneGroup(UpdatePriority.ADMINISTRATIVE, 1, laneCapacity, config.updatesShedThreshold()));
+        groups.put(UpdatePriority.MEMBER_EVENT, new LaneGroup(UpdatePriority.MEMBER_EVENT, 1, laneCapacity, config.updatesShedThreshold()));
+        groups.put(UpdatePriority.COMMAND, new LaneGroup(UpdatePriority.COMMAND, config.updatesLanes(), laneCapacity, config.updatesShedThreshold()));
+        groups.put(UpdatePriority.PASSIVE, new LaneGroup(UpdatePriority.PASSIVE, config.updatesLanes(), laneCapacity, config.updatesShedThreshold()));
+
+        int threads = groups.values().stream().mapToInt(g -> g.lanes.length).sum();
+        AtomicInteger threadId = new AtomicInteger();
+        laneService = Executors.newFixedThreadPool(threads, r -> new Thread(r, "rebot-lane-" + threadId.getAndIncrement()));
+        groups.values().forEach(group -> {
+            for (BlockingQueue<Dispatched> lane : group.lanes) {
+                laneService.submit(() -> process(lane));
+            }
+        });
+        offsetWriter.scheduleWithFixedDelay(this::commitOffsets, config.updatesCommitInterval(),
+                                            config.updatesCommitInterval(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Hands the update to the lane of its chat, blocking while the lane is full. The implementations of
+     * {@link ReBotLongPoolingBot} are notified about it from the lane.
+     * Passive updates are never waited for, they are dropped when their lane is above the shed threshold.
+     *
+     * @param bot    the bot that received the update
+     * @param update {@link MessageUpdate}
+     * @return false if the update was already dispatched or is of a kind no command or plugin consumes and got
+     * discarded
+     * @throws InterruptedException if interrupted while waiting for room in the lane
+     */
+    public boolean dispatch(BotIdentity bot, MessageUpdate update) throws InterruptedException {
+        if (!updatesOf(bot).begin(update.getUpdateId())) {
+            log.debugv("Discarding duplicated update {0} of {1}", update.getUpdateId(), bot.name());
+            return false;
+        }
+        Optional<UpdateKind> kind = UpdateKind.of(update);
+        if (kind.isEmpty() || !allowedUpdates.contains(kind.get())) {
+            log.debugv("Discarding update {0} of kind {1}, not consumed by any command or plugin", update.getUpdateId(), kind);
+            filtered.increment();
+            complete(bot, update.getUpdateId());
+            return false;
+        }
+        // make sure that even edited messages will be intercepted.
+        if (null != update.getEditedMessage()) {
+            log.trace("is updated message? true");
+            Message msg = new Message(update.getEditedMessage().getMessageId(),
+                                      update.getEditedMessage().getChat(),
+                                      update.getEditedMessage().getText());
+            msg.setDate(update.getEditedMessage().getDate());
+            msg.setEntities(update.getEditedMessage().getEntities());
+            msg.setFrom(update.getEditedMessage().getFrom());
+            update.setEdited(true);
+            update.setMessage(msg);
+        } else {
+            update.setEdited(false);
+        }
+        log.tracev("Message is [{0}]", update.toString());
+        LaneGroup group = groups.get(classify(bot, update));
+        BlockingQueue<Dispatched> lane = group.laneOf(bot, update);
+        if (group.priority == UpdatePriority.PASSIVE && lane.size() >= group.shedLimit) {
+            group.shed.increment();
+            log.debugv("Shedding passive update {0}, lane is overloaded", update.getUpdateId());
+            complete(bot, update.getUpdateId());
+            return true;
+        }
+        group.dispatched.increment();
+        lane.put(new Dispatched(bot, update));
+        return true;
+    }
+
+    /**
+     * @return the update kinds consumed by at least one command or plugin, in the format expected by allowed_updates
+     */
+    public List<String> allowedUpdates() {
+        return allowedUpdates.stream().map(UpdateKind::field).collect(Collectors.toList());
+    }
+
+    /**
+     * @param bot {@link BotIdentity}
+     * @return the last update id committed by the given bot, 0 if none
+     */
+    public long committedOffset(BotIdentity bot) {
+        try {
+            long offset = apiRepository.getUpdateOffset(bot.userId());
+            BotUpdates updates = updatesOf(bot);
+            updates.committed.accumulateAndGet(offset, Math::max);
+            updates.processed.accumulateAndGet(offset, Math::max);
+            return offset;
+        } catch (final Exception e) {
+            log.warnv("Unable to read the committed update offset: {0}", e.getMessage());
+            return 0L;
+        }
+    }
+
+    /**
+     * @param bot {@link BotIdentity}
+     * @return the last update id stored as processed by the given bot, never past an update still queued or being
+     * processed, the only offset Telegram may forget the updates up to
+     */
+    public long confirmedOffset(BotIdentity bot) {
+        return updatesOf(bot).committed.get();
+    }
+
+    /**
+     * Stops the lanes once the updates already dispatched are processed and replied, then commits their offset.
+     *
+     * @param timeout how long, in seconds, to wait for the lanes to be drained
+     */
+    public void drain(long timeout) {
+        running = false;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeout);
+        laneService.shutdown();
+        try {
+            if (!laneService.awaitTermination(timeout, TimeUnit.SECONDS)) {
+                log.warn("Lanes were not drained before shutting down.");
+            }
+            CompletableFuture.allOf(inFlight.toArray(new CompletableFuture[0]))
+                    .get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (final TimeoutException | ExecutionException e) {
+            log.warnv("{0} updates were not processed before shutting down, the polled ones are delivered again after a restart.",
+                      inFlight.size());
+        }
+        laneService.shutdownNow();
+        offsetWriter.shutdown();
+        commitOffsets();
+    }
+
+    /**
+     * @return for each priority the updates waiting on each lane, how many were dispatched and how many were shed
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        groups.values().forEach(group -> {
+            Map<String, Object> groupStats = new LinkedHashMap<>();
+            for (int i = 0; i < group.lanes.length; i++) {
+                groupStats.put("lane-" + i, group.lanes[i].size());
+            }
+            groupStats.put("dispatched", group.dispatched.sum());
+            groupStats.put("shed", group.shed.sum());
+            stats.put(group.priority.name().toLowerCase(Locale.ROOT), groupStats);
+        });
+        stats.put("filtered", filtered.sum());
+        botUpdates.forEach((bot, updates) -> {
+            Map<String, Object> botStats = new LinkedHashMap<>();
+            synchronized (updates) {
+                botStats.put("inFlight", updates.pending.size());
+            }
+            botStats.put("processedOffset", updates.processed.get());
+            botStats.put("committedOffset", updates.committed.get());
+            stats.put("bot-" + bot.name(), botStats);
+        });
+        return stats;
+    }
+
+    private BotUpdates updatesOf(BotIdentity bot) {
+        return botUpdates.computeIfAbsent(bot, b -> new BotUpdates(config.updatesDedupSize()));
+    }
+
+    private UpdatePriority classify(BotIdentity bot, MessageUpdate update) {
+        if (null == update.getMessage()) {
+            return UpdatePriority.PASSIVE;
+        }
+        if (isMemberEvent().test(update)) {
+            return UpdatePriority.MEMBER_EVENT;
+        }
+        if (messageIsNotNull().and(isCommand()).test(update)) {
+            return router.commandName(update, bot.userId()).flatMap(router::administrativeCommand).isPresent()
+                    ? UpdatePriority.ADMINISTRATIVE
+                    : UpdatePriority.COMMAND;
+        }
+        return UpdatePriority.PASSIVE;
+    }
+
+    private void process(BlockingQueue<Dispatched> lane) {
+        while (running || !lane.isEmpty()) {
+            try {
+                Dispatched dispatched = lane.poll(1, TimeUnit.SECONDS);
+                if (null != dispatched) {
+                    // the lane moves on while the commands and plugins reply, the update is completed afterwards
+                    CompletableFuture<Void> processed = deliver(dispatched).toCompletableFuture();
+                    inFlight.add(processed);
+                    processed.whenComplete((ignored, e) -> {
+                        inFlight.remove(processed);
+                        complete(dispatched.bot, dispatched.update.getUpdateId());
+                    });
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+    }
+
+    /**
+     * Notifies the callback about the update. An update that fails is not delivered again, part of its replies may
+     * have been sent already, it is logged and completed so it doesn't hold the offset of the ones after it.
+     *
+     * @return completes once the update was processed
+     */
+    private CompletionStage<Void> deliver(Dispatched dispatched) {
+        MessageUpdate update = dispatched.update;
+        try {
+            return config.callAs(dispatched.bot, () -> callback.onUpdateReceived(update));
+        } catch (final RuntimeException e) {
+            log.errorv("Error {0} while processing update {1}, skipping it.", e.getMessage(), update.getUpdateId());
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    private void complete(BotIdentity bot, long updateId) {
+        updatesOf(bot).complete(updateId);
+    }
+
+    /**
+     * Writes the offset of each bot whose processed updates moved since the last write. The writes kept in memory by
+     * the {@link WriteBehind} repositories, e.g. karma votes, are stored first, nothing is committed if they fail.
+     */
+    private void commitOffsets() {
+        Map<BotIdentity, Long> offsets = new HashMap<>();
+        botUpdates.forEach((bot, updates) -> {
+            long offset = updates.processed.get();
+            if (offset > updates.committed.get()) {
+                offsets.put(bot, offset);
+            }
+        });
+        if (offsets.isEmpty()) {
+            return;
+        }
+        for (WriteBehind repository : writeBehind) {
+            if (!repository.flush()) {
+                log.warn("Pending writes not stored, the update offsets will be committed on the next run.");
+                return;
+            }
+        }
+        offsets.forEach((bot, offset) -> {
+            BotUpdates updates = updatesOf(bot);
+            try {
+                apiRepository.commitUpdateOffset(bot.userId(), offset);
+                updates.committed.accumulateAndGet(offset, Math::max);
+            } catch (final Exception e) {
+                // retried on the next run, the in memory set still protects against redeliveries meanwhile.
+                log.warnv("Unable to commit update offset {0} of {1}: {2}", offset, bot.name(), e.getMessage());
+            }
+        });
+    }
+
+    private static class LaneGroup {
+
+        private final UpdatePriority priority;
+        private final BlockingQueue<Dispatched>[] lanes;
+        private final int shedLimit;
+        private final LongAdder dispatched = new LongAdder();
+        private final LongAdder shed = new LongAdder();
+
+        @SuppressWarnings("unchecked")
+        private LaneGroup(UpdatePriority priority, int size, int capacity, double shedThreshold) {
+            this.priority = priority;
+            this.lanes = new BlockingQueue[size];
+            for (int i = 0; i < size; i++) {
+                lanes[i] = new ArrayBlockingQueue<>(capacity);
+            }
+            this.shedLimit = Math.max(1, (int) (capacity * shedThreshold));
+        }
+
+        private BlockingQueue<Dispatched> laneOf(BotIdentity bot, MessageUpdate update) {
+            if (null == update.getMessage() || null == update.getMessage().getChat()) {
+                return lanes[Math.floorMod(bot.hashCode(), lanes.length)];
+            }
+            return lanes[Math.floorMod(Objects.hash(bot, update.getMessage().getChat().getId()), lanes.length)];
+        }
+    }
+
+    private static class Dispatched {
+
+        private final BotIdentity bot;
+        private final MessageUpdate update;
+
+        private Dispatched(BotIdentity bot, MessageUpdate update) {
+            this.bot = bot;
+            this.update = update;
+        }
+    }
+
+    /**
+     * Updates of a single bot, the recently processed ones used to drop duplicates and the ones still being processed
+     * used to find the offset that can be committed.
+     */
+    private static class BotUpdates {
+
+        private final Map<Long, Boolean> recent;
+        private final NavigableSet<Long> pending = new TreeSet<>();
+        private final AtomicLong processed = new AtomicLong();
+        private final AtomicLong committed = new AtomicLong();
+        private long highestDispatched = 0L;
+
+        private BotUpdates(int dedupSize) {
+            final int maxEntries = Math.max(1, dedupSize);
+            recent = new LinkedHashMap<>(16, 0.75f, false) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+                    return size() > maxEntries;
+                }
+            };
+        }
+
+        /**
+         * @return false if the update was already seen
+         */
+        private synchronized boolean begin(long updateId) {
+            if (recent.containsKey(updateId) || pending.contains(updateId)) {
+                return false;
+            }
+            pending.add(updateId);
+            highestDispatched = Math.max(highestDispatched, updateId);
+            return true;
+        }
+
+        /**
+         * Moves the processed offset up to the highest update id with no update still being processed before it.
+         */
+        private synchronized void complete(long updateId) {
+            recent.put(updateId, Boolean.TRUE);
+            pending.remove(updateId);
+            long offset = pending.isEmpty() ? highestDispatched : pending.first() - 1;
+            processed.accumulateAndGet(offset, Math::max);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ *   The MIT License (MIT)
+ *
+ *   Copyright (c) 2017 Rebasing.xyz ReBot
+ *
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy of
+ *   this software and associated documentation files (the "Software"), to deal in
+ *   the Software without restriction, including without limitation the rights to
+ *   use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ *   the Software, and to permit persons to whom the Software is furnished to do so,
+ *   subject to the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ *   FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ *   COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ *   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package xyz.rebasing.rebot.telegram.api;
+
+/**
+ * Classes of updates, from the most to the least important, each one is processed by its own lanes so a burst
+ * of chat messages does not delay administrative commands or members joining a chat.
+ */
+public enum UpdatePriority {
+
+    /**
+     * Commands provided by an {@link xyz.rebasing.rebot.api.spi.administrative.AdministrativeCommandProvider}.
+     */
+    ADMINISTRATIVE,
+    /**
+     * Members joining or leaving a chat, handled by the welcome plugin.
+     */
+    MEMBER_EVENT,
+    /**
+     * Any other message starting with /.
+     */
+    COMMAND,
+    /**
+     * Messages only inspected by the plugins, i.e. karma, they are shed when the bot is overloaded.
+     */
+    PASSIVE
+}
@@ -25,33 +25,28 @@ package xyz.rebasing.rebot.telegram.api;
 
 import java.lang.invoke.MethodHandles;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
 import org.jboss.logging.Logger;
 import xyz.rebasing.rebot.api.conf.BotConfig;
-import xyz.rebasing.rebot.api.domain.GetUpdatesConfProducer;
+import xyz.rebasing.rebot.api.conf.BotIdentity;
 import xyz.rebasing.rebot.api.domain.Message;
-import xyz.rebasing.rebot.api.domain.MessageUpdate;
-import xyz.rebasing.rebot.api.domain.TelegramResponse;
 import xyz.rebasing.rebot.api.shared.components.httpclient.IRebotOkHttpClient;
-import xyz.rebasing.rebot.service.persistence.domain.BotStatus;
 import xyz.rebasing.rebot.service.persistence.repository.ApiRepository;
 import xyz.rebasing.rebot.telegram.api.polling.ReBotLongPoolingBot;
+import xyz.rebasing.rebot.telegram.api.settings.ChatSettingsCache;
 
 @ApplicationScoped
-public class UpdatesReceiver implements Runnable {
+public class UpdatesReceiver {
 
     private final Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
 
@@ -61,6 +56,9 @@ public class UpdatesReceiver implements Runnable {
     @Inject
     ApiRepository apiRepository;
 
+    @Inject
+    ChatSettingsCache chatSettings;
+
     @Inject
     IRebotOkHttpClient okclient;
 
@@ -68,25 +66,123 @@ public class UpdatesReceiver implements Runnable {
     ObjectMapper objectMapper;
 
     @Inject
-    ReBotLongPoolingBot callback;
+    UpdateDispatcher dispatcher;
 
-    private Long lastUpdateId = 0L;
-    ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
+    // how long the processors are given to drain the hand-off queues when the bot goes down.
+    private static final long DRAIN_TIMEOUT = 10L;
+
+    private final Map<BotIdentity, BotPoller> pollers = new LinkedHashMap<>();
+    private volatile PollerLeader leader;
 
     /**
-     * Method responsible to configure the HttpClient and start the receiver by calling the method <b>run</b>
-     * Persists the Bot status on the database
+     * Starts receiving the updates of every configured bot, all of them received by the implementations of
+     * {@link ReBotLongPoolingBot} through {@link UpdateDispatcher#dispatch(BotIdentity, xyz.rebasing.rebot.api.domain.MessageUpdate)}.
+     * Each bot gets its own {@link BotPoller} while the http client, the lanes and the plugins are shared.
+     * The receiver configuration is done by the class {@link xyz.rebasing.rebot.api.domain.GetUpdatesConfProducer}
+     * <p>
+     * When the webhook ingress is enabled no polling happens, the webhook is registered on Telegram instead and the
+     * updates are received by {@link xyz.rebasing.rebot.telegram.api.webhook.WebhookUpdatesReceiver}.
+     * <p>
+     * When failover is enabled the pollers are only started for the bots whose lease is held by this node,
+     * see {@link PollerLeader}.
+     *
+     * @throws IllegalStateException if the webhook ingress is enabled without a secret to authenticate the calls
      */
-    @SuppressWarnings("FutureReturnValueIgnored")
-    public void start() {
-        executorService.scheduleAtFixedRate(this, 0, 800, TimeUnit.MILLISECONDS);
+    public synchronized void start() {
+        if (config.isWebhookIngress() && config.webhookSecret().isEmpty()) {
+            throw new IllegalStateException("Webhook ingress requires xyz.rebasing.rebot.telegram.webhook.secret, "
+                                                    + "the same secret_token must be used when registering the webhook.");
+        }
+        if (!config.isWebhookIngress() && config.isFailoverEnabled()) {
+            leader = new PollerLeader(config, apiRepository, this::startPoller, this::stopPoller);
+            leader.start();
+            return;
+        }
+        for (BotIdentity bot : config.bots()) {
+            if (config.isWebhookIngress()) {
+                registerWebhook(bot);
+            } else {
+                startPoller(bot);
+            }
+        }
     }
 
     /**
-     * When called interrupt the current thread.
+     * When called stops the long polling loops, the updates already handed off are given {@link #DRAIN_TIMEOUT}
+     * seconds to be processed, as Telegram will not deliver them again.
+     * With failover enabled the polling leases held by this node are released as well.
      */
     public void interrupt() {
-        executorService.shutdown();
+        // outside of the lock, the leader thread may be waiting on it to start or stop a poller
+        PollerLeader current = leader;
+        if (null != current) {
+            current.stop();
+        }
+        synchronized (this) {
+            pollers.values().forEach(poller -> poller.stop(DRAIN_TIMEOUT));
+            pollers.clear();
+        }
+        dispatcher.drain(DRAIN_TIMEOUT);
+    }
+
+    private synchronized void startPoller(BotIdentity bot) {
+        PollerLeader current = leader;
+        BotPoller poller = new BotPoller(bot, config, objectMapper, dispatcher, okclient.get(), okclient.mediaTypeJson(),
+                                         null == current ? () -> Long.MAX_VALUE : () -> current.remaining(bot));
+        pollers.put(bot, poller);
+        poller.start();
+    }
+
+    private synchronized void stopPoller(BotIdentity bot) {
+        BotPoller poller = pollers.remove(bot);
+        if (null != poller) {
+            poller.stop(DRAIN_TIMEOUT);
+        }
+    }
+
+    /**
+     * @return the hand-off queue statistics of each bot
+     */
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        pollers.forEach((bot, poller) -> stats.put(bot.name(), poller.stats()));
+        if (null != leader) {
+            stats.put("failover", leader.stats());
+        }
+        return stats;
+    }
+
+    /**
+     * Registers the configured webhook url, Telegram stops serving getUpdates while a webhook is set.
+     * Bots other than the default one get their name appended to the url path.
+     */
+    private void registerWebhook(BotIdentity bot) {
+        if (config.webhookUrl().isEmpty()) {
+            log.info("Webhook ingress enabled without xyz.rebasing.rebot.telegram.webhook.url, expecting it to be registered manually.");
+            return;
+        }
+        String url = bot.isDefault() ? config.webhookUrl().get() : config.webhookUrl().get() + "/" + bot.name();
+        try {
+            Map<String, Object> setWebhook = new HashMap<>();
+            setWebhook.put("url", url);
+            config.webhookSecret().ifPresent(secret -> setWebhook.put("secret_token", secret));
+            setWebhook.put("allowed_updates", dispatcher.allowedUpdates());
+            Request request = new Request.Builder()
+                    .url(String.format("https://api.telegram.org/bot%s/setWebhook", bot.token()))
+                    .addHeader("charset", StandardCharsets.UTF_8.name())
+                    .post(RequestBody.create(objectMapper.writeValueAsString(setWebhook),
+                                             okclient.mediaTypeJson()))
+                    .build();
+            try (Response response = okclient.get().newCall(request).execute()) {
+                if (response.isSuccessful()) {
+                    log.infov("Webhook of {0} registered on {1}", bot.name(), url);
+                } else {
+                    log.warnv("Unable to register the webhook of {0}, status code is {1}", bot.name(), response.code());
+                }
+            }
+        } catch (final Exception e) {
+            log.warnv("Unable to register the webhook of {0}: {1}", bot.name(), e.getMessage());
+        }
     }
 
     /**
@@ -96,7 +192,7 @@ public class UpdatesReceiver implements Runnable {
      * @return the bot status, true for enabled or false for disabled
      */
     public boolean isEnabled(long chatId) {
-        return apiRepository.isBotEnabled(chatId);
+        return apiRepository.isBotEnabled(config.botUserId(), chatId);
     }
 
     /**
@@ -107,8 +203,8 @@ public class UpdatesReceiver implements Runnable {
      */
     public void disable(Message message) {
         log.info("Disabling bot, requested by " + message.getFrom().toString());
-        apiRepository.persist(new BotStatus(false, message.getFrom(),
-                                            message.getChat().getId()));
+        apiRepository.setBotEnabled(config.botUserId(), message.getChat().getId(), false);
+        chatSettings.update(config.botUserId(), message.getChat().getId(), settings -> settings.withBotEnabled(false));
     }
 
     /**
@@ -116,70 +212,7 @@ public class UpdatesReceiver implements Runnable {
      */
     public void enable(Message message) {
         log.info("Enabling bot, requested by " + message.getFrom().toString());
-        apiRepository.remove(message.getChat().getId());
-    }
-
-    /**
-     * Starts the receiver, every message sent will be received by all classes that implements {@link ReBotLongPoolingBot} will receive the updates
-     * through the in through the call <b>callback.onUpdateReceived(u);</b> on this method.
-     * The receiver configuration is done by the class {@link GetUpdatesConfProducer}
-     * <p>
-     * This thread remains in execution until the bot goes down.
-     * The interval between the updates' verification is <b>800ms</b>
-     */
-    @Override
-    public synchronized void run() {
-
-        GetUpdatesConfProducer getUpdates = new GetUpdatesConfProducer().setLimit(100).setTimeout(10 * 1000).setOffset(lastUpdateId + 1);
-        log.tracev("receiver config -> {0}", getUpdates.toString());
-
-        Request request = null;
-        try {
-            request = new Request.Builder()
-                    .url(String.format("https://api.telegram.org/bot%s/getUpdates", config.botTokenId()))
-                    .addHeader("charset", StandardCharsets.UTF_8.name())
-                    .post(RequestBody.create(objectMapper.writeValueAsString(getUpdates),
-                                             okclient.mediaTypeJson()))
-                    .build();
-        } catch (JsonProcessingException e) {
-            log.errorv("failed to write json as string: {0}", e);
-        }
-
-        try (Response response = okclient.get().newCall(request).execute()) {
-            if (!response.isSuccessful()) {
-                log.warnv("Error received from Telegram API, status code is {0}", response.code());
-            }
-            TelegramResponse<ArrayList<MessageUpdate>> updates = objectMapper.
-                    readValue(response.body().string(), new TypeReference<>() {
-                    });
-
-            updates.getResult().removeIf(n -> n.getUpdateId() < lastUpdateId);
-            lastUpdateId = updates.getResult().parallelStream().map(MessageUpdate::getUpdateId).max(Long::compareTo).orElse(0L);
-            updates.getResult()
-                    .forEach(u -> {
-                        // make sure that even edited messages will be intercepted.
-                        if (null != u.getEditedMessage()) {
-                            log.trace("is updated message? true");
-                            Message msg = new Message(u.getEditedMessage().getMessageId(),
-                                                      u.getEditedMessage().getChat(),
-                                                      u.getEditedMessage().getText());
-                            msg.setDate(u.getEditedMessage().getDate());
-                            msg.setEntities(u.getEditedMessage().getEntities());
-                            msg.setFrom(u.getEditedMessage().getFrom());
-                            u.setEdited(true);
-                            u.setMessage(msg);
-                        } else {
-                            u.setEdited(false);
-                        }
-                        log.tracev("Message is [{0}]", u.toString());
-                        // notify the implementations of ReBotLongPoolingBot about the received messages.
-                        callback.onUpdateReceived(u);
-                    });
-        } catch (final Exception e) {
-            if (log.isDebugEnabled()) {
-                e.printStackTrace();
-            }
-            log.warnv("Error {0}", e.getMessage());
-        }
+        apiRepository.setBotEnabled(config.botUserId(), message.getChat().getId(), true);
+        chatSettings.update(config.botUserId(), message.getChat().getId(), settings -> settings.withBotEnabled(true));
     }
 }
@@ -0,0 +1,190 @@
+/*
+ *   The MIT License (MIT)
+ *
+ *   Copyright (c) 2017 Rebasing.xyz ReBot
+ *
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy of
+ *   this software and associated documentation files (the "Software"), to deal in
+ *   the Software without restriction, including without limitation the rights to
+ *   use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ *   the Software, and to permit persons to whom the Software is furnished to do so,
+ *   subject to the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ *   FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ *   COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ *   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package xyz.rebasing.rebot.telegram.api;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.transaction.UserTransaction;
+
+import org.jboss.logging.Logger;
+import xyz.rebasing.rebot.api.conf.BotConfig;
+import xyz.rebasing.rebot.api.conf.BotIdentity;
+import xyz.rebasing.rebot.api.domain.Chat;
+import xyz.rebasing.rebot.api.domain.Entity;
+import xyz.rebasing.rebot.api.domain.From;
+import xyz.rebasing.rebot.api.domain.Message;
+import xyz.rebasing.rebot.api.domain.MessageUpdate;
+import xyz.rebasing.rebot.telegram.api.message.CommandRouter;
+import xyz.rebasing.rebot.telegram.api.polling.ReBotLongPoolingBot;
+
+/**
+ * Processes a corpus of synthetic updates before the updates start being received, so class loading, the first
+ * queries and the JIT compilation of the processing path are paid by the warm-up instead of the first users.
+ * <p>
+ * The updates are handed to the same {@link ReBotLongPoolingBot} the lanes notify, on behalf of the warm-up bot,
+ * nothing is sent to Telegram on its behalf. The database work done while an update is received runs in a
+ * transaction that is rolled back, and the components keeping state across updates, the throttle, the response and
+ * chat settings caches and the karma votes, leave the warm-up bot out. The corpus holds the help of every command,
+ * administrative ones included, a plain message and the texts configured through
+ * <b>xyz.rebasing.rebot.telegram.warmup.messages</b>, the configured administrative commands are skipped since they
+ * change the chat settings. Commands and plugins writing to the database or external services by other means must
+ * not be configured.
+ */
+@ApplicationScoped
+public class WarmUp {
+
+    private final Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
+
+    // private chat and user reserved to the synthetic updates, no administrator lookup is needed on private chats
+    private static final long CHAT_ID = Long.MAX_VALUE;
+    private static final long USER_ID = Long.MAX_VALUE;
+
+    @Inject
+    BotConfig config;
+
+    @Inject
+    ReBotLongPoolingBot callback;
+
+    @Inject
+    CommandRouter router;
+
+    @Inject
+    UserTransaction transaction;
+
+    private volatile long durationMs = -1L;
+    private volatile List<Long> passesMs = Collections.emptyList();
+    private volatile int updates = 0;
+
+    /**
+     * Processes the corpus <b>xyz.rebasing.rebot.telegram.warmup.iterations</b> times, if the warm-up is enabled.
+     * The time taken by the first pass, with nothing warmed up yet, and by the last one are logged and available
+     * through {@link #stats()}.
+     */
+    public void run() {
+        if (!config.isWarmUpEnabled()) {
+            return;
+        }
+        BotIdentity bot = config.warmUpBot();
+        List<String> corpus = corpus(bot);
+        List<Long> passes = new ArrayList<>();
+        long start = System.nanoTime();
+        long updateId = 0L;
+        for (int i = 0; i < config.warmUpIterations(); i++) {
+            long passStart = System.nanoTime();
+            for (String text : corpus) {
+                process(bot, update(++updateId, text));
+            }
+            passes.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - passStart));
+        }
+        durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        passesMs = Collections.unmodifiableList(passes);
+        updates = (int) updateId;
+        log.infov("Warm-up processed {0} updates in {1}ms, the first pass took {2}ms and the last one {3}ms.",
+                  updateId, durationMs, passes.get(0), passes.get(passes.size() - 1));
+    }
+
+    /**
+     * @return how long the warm-up took, -1 if it didn't run, and how long each pass over the corpus took
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", config.isWarmUpEnabled());
+        stats.put("updates", updates);
+        stats.put("durationMs", durationMs);
+        stats.put("passesMs", passesMs);
+        return stats;
+    }
+
+    private List<String> corpus(BotIdentity bot) {
+        List<String> corpus = new ArrayList<>();
+        corpus.add(CommandRouter.HELP);
+        router.commands().forEach(c -> corpus.add(c.name() + " help"));
+        router.administrativeCommands().forEach(c -> corpus.add(c.name() + " help"));
+        for (String text : config.warmUpMessages()) {
+            if (router.commandName(update(0L, text), bot.userId()).flatMap(router::administrativeCommand).isPresent()) {
+                log.warnv("Warm-up message [{0}] skipped, administrative commands change the chat settings", text);
+            } else {
+                corpus.add(text);
+            }
+        }
+        // reaches the plugins
+        corpus.add("warming up");
+        return corpus;
+    }
+
+    private void process(BotIdentity bot, MessageUpdate update) {
+        try {
+            CompletionStage<Void> processed;
+            transaction.begin();
+            try {
+                processed = config.callAs(bot, () -> callback.onUpdateReceived(update));
+            } finally {
+                transaction.rollback();
+            }
+            // commands and plugins reply asynchronously, their own database work is not part of the transaction
+            processed.toCompletableFuture().get(config.warmUpTimeout(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.warnv("Warm-up update [{0}] not processed within {1}ms", update.getMessage().getText(), config.warmUpTimeout());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (final Exception e) {
+            log.warnv("Warm-up update [{0}] failed: {1}", update.getMessage().getText(), e.getMessage());
+        }
+    }
+
+    private MessageUpdate update(long updateId, String text) {
+        Chat chat = new Chat(CHAT_ID, BotIdentity.WARMUP);
+        chat.setType("private");
+        From from = new From();
+        from.setId(USER_ID);
+        from.setFirstName(BotIdentity.WARMUP);
+        from.setUsername(BotIdentity.WARMUP);
+        Message message = new Message(updateId, chat, text);
+        message.setFrom(from);
+        message.setDate(System.currentTimeMillis() / 1000);
+        if (text.startsWith("/")) {
+            Entity command = new Entity();
+            command.setType("bot_command");
+            command.setOffset(0);
+            int end = text.indexOf(' ');
+            command.setLength(end < 0 ? text.length() : end);
+            message.setEntities(Collections.singletonList(command));
+        }
+        MessageUpdate update = new MessageUpdate();
+        update.setUpdateId(updateId);
+        update.setMessage(message);
+        update.setEdited(false);
+        return update;
+    }
+}
@@ -23,13 +23,12 @@
 
 package xyz.rebasing.rebot.telegram.api.filter;
 
+import java.util.Set;
 import java.util.function.Predicate;
-import java.util.regex.Pattern;
 
+import xyz.rebasing.rebot.api.domain.CommandInvocation;
 import xyz.rebasing.rebot.api.domain.MessageUpdate;
 
-import static xyz.rebasing.rebot.telegram.api.utils.StringUtils.concat;
-
 /**
  * Predicate utility class
  */
@@ -37,15 +36,17 @@ public final class ReBotPredicate {
 
     private ReBotPredicate(){}
 
-    // same from karma plugin
-    private static Pattern KARMA_PATTERN = Pattern.compile("(^\\S+)(\\+\\+|\\-\\-|\\—|\\–)($)");
+    // service message fields sent by Telegram when members join or leave a chat
+    private static final Set<String> MEMBER_EVENTS = Set.of("new_chat_member", "new_chat_members", "new_chat_participant",
+                                                            "left_chat_member", "left_chat_participant");
 
     public static Predicate<MessageUpdate> messageIsNotNull() {
         return m -> null != m.getMessage().getText();
     }
 
     public static Predicate<MessageUpdate> isCommand() {
-        return m -> m.getMessage().getText().startsWith("/") && !KARMA_PATTERN.matcher(m.getMessage().getText()).find();
+        // karma given to a command, e.g. /ping++, is not a command
+        return m -> m.getMessage().invocation().isPresent();
     }
 
     public static Predicate<MessageUpdate> botCommand(String botUserId) {
@@ -56,7 +57,12 @@ public final class ReBotPredicate {
         return m -> m.getMessage().getFrom().isIsBot();
     }
 
+    public static Predicate<MessageUpdate> isMemberEvent() {
+        return m -> null != m.getMessage() && m.getMessage().getAdditionalProperties().keySet().stream()
+                .anyMatch(MEMBER_EVENTS::contains);
+    }
+
     public static Predicate<MessageUpdate> help() {
-        return m -> "help".equals(concat(m.getMessage().getText().split(" ")));
+        return m -> m.getMessage().invocation().map(CommandInvocation::lowerCaseArgs).filter("help"::equals).isPresent();
     }
 }
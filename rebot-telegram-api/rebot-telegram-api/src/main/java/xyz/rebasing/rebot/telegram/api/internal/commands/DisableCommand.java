@@ -27,6 +27,7 @@ import java.lang.invoke.MethodHandles;
 import java.util.Optional;
 
 import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Event;
 import javax.inject.Inject;
 
 import org.jboss.logging.Logger;
@@ -34,10 +35,12 @@ import xyz.rebasing.rebot.api.conf.BotConfig;
 import xyz.rebasing.rebot.api.domain.MessageUpdate;
 import xyz.rebasing.rebot.api.i18n.I18nHelper;
 import xyz.rebasing.rebot.api.shared.components.management.user.UserManagement;
+import xyz.rebasing.rebot.api.spi.InvalidateResponses;
 import xyz.rebasing.rebot.api.spi.administrative.AdministrativeCommandProvider;
-import xyz.rebasing.rebot.service.persistence.domain.CommandStatus;
 import xyz.rebasing.rebot.service.persistence.repository.ApiRepository;
 import xyz.rebasing.rebot.telegram.api.UpdatesReceiver;
+import xyz.rebasing.rebot.telegram.api.settings.ChatSettingsCache;
+import xyz.rebasing.rebot.telegram.api.settings.CommandOrdinals;
 
 @ApplicationScoped
 public class DisableCommand implements AdministrativeCommandProvider {
@@ -52,7 +55,13 @@ public class DisableCommand implements AdministrativeCommandProvider {
     @Inject
     private ApiRepository repository;
     @Inject
+    private ChatSettingsCache chatSettings;
+    @Inject
+    private CommandOrdinals ordinals;
+    @Inject
     private UserManagement userManagement;
+    @Inject
+    private Event<InvalidateResponses> invalidate;
 
     @Override
     public void load() {
@@ -71,24 +80,28 @@ public class DisableCommand implements AdministrativeCommandProvider {
         }
 
         if (key.get().equals("bot")) {
-            if (!updatesReceiver.isEnabled(messageUpdate.getMessage().getChat().getId())) {
+            if (!chatSettings.get(messageUpdate.getMessage()).isBotEnabled()) {
                 return String.format(
                         I18nHelper.resource("Administrative", locale, "disable.command.already.disabled"),
                         config.botUserId());
             }
 
             updatesReceiver.disable(messageUpdate.getMessage());
+            invalidate.fire(InvalidateResponses.chat(config.botUserId(), messageUpdate.getMessage().getChat().getId()));
             return String.format(
                     I18nHelper.resource("Administrative", locale, "disable.command.disabled"),
                     config.botUserId());
         } else {
             // if the provided command or plugin is valid make sure it is not already disabled before proceed.
-            if (!repository.isCommandEnabled(messageUpdate.getMessage().getChat().getId(), key.get())) {
+            if (!chatSettings.get(messageUpdate.getMessage()).isCommandEnabled(ordinals.of(key.get()))) {
                 return String.format(
                         I18nHelper.resource("Administrative", locale, "disable.command.already.disabled"),
                         key.get());
             } else {
-                repository.disableCommand(new CommandStatus(messageUpdate.getMessage().getChat().getId(), key.get(), false));
+                int ordinal = ordinals.of(key.get());
+                repository.setCommandEnabled(config.botUserId(), messageUpdate.getMessage().getChat().getId(), ordinal, false);
+                chatSettings.update(config.botUserId(), messageUpdate.getMessage().getChat().getId(), settings -> settings.withCommand(ordinal, false));
+                invalidate.fire(InvalidateResponses.chat(config.botUserId(), messageUpdate.getMessage().getChat().getId()));
                 return String.format(
                         I18nHelper.resource("Administrative", locale, "disable.command.disabled"),
                         key.get());
@@ -64,6 +64,12 @@ public class DumpMenuCommand implements AdministrativeCommandProvider {
         return response.toString();
     }
 
+    @Override
+    public long cacheTtl(String key) {
+        // the loaded commands don't change while the bot runs
+        return config.responsesTtl();
+    }
+
     @Override
     public String name() {
         return "/dump";
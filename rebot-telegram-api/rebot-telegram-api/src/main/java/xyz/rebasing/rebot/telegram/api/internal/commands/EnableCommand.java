@@ -27,6 +27,7 @@ import java.lang.invoke.MethodHandles;
 import java.util.Optional;
 
 import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Event;
 import javax.inject.Inject;
 
 import org.jboss.logging.Logger;
@@ -34,9 +35,12 @@ import xyz.rebasing.rebot.api.conf.BotConfig;
 import xyz.rebasing.rebot.api.domain.MessageUpdate;
 import xyz.rebasing.rebot.api.i18n.I18nHelper;
 import xyz.rebasing.rebot.api.shared.components.management.user.UserManagement;
+import xyz.rebasing.rebot.api.spi.InvalidateResponses;
 import xyz.rebasing.rebot.api.spi.administrative.AdministrativeCommandProvider;
 import xyz.rebasing.rebot.service.persistence.repository.ApiRepository;
 import xyz.rebasing.rebot.telegram.api.UpdatesReceiver;
+import xyz.rebasing.rebot.telegram.api.settings.ChatSettingsCache;
+import xyz.rebasing.rebot.telegram.api.settings.CommandOrdinals;
 
 @ApplicationScoped
 public class EnableCommand implements AdministrativeCommandProvider {
@@ -50,7 +54,13 @@ public class EnableCommand implements AdministrativeCommandProvider {
     @Inject
     private ApiRepository repository;
     @Inject
+    private ChatSettingsCache chatSettings;
+    @Inject
+    private CommandOrdinals ordinals;
+    @Inject
     private UserManagement userManagement;
+    @Inject
+    private Event<InvalidateResponses> invalidate;
 
     @Override
     public void load() {
@@ -69,24 +79,28 @@ public class EnableCommand implements AdministrativeCommandProvider {
         }
 
         if ("bot".equals(key.get())) {
-            if (updatesReceiver.isEnabled(messageUpdate.getMessage().getChat().getId())) {
+            if (chatSettings.get(messageUpdate.getMessage()).isBotEnabled()) {
                 return String.format(
                         I18nHelper.resource("Administrative", locale, "enable.command.already.enabled"),
                         config.botUserId());
             }
 
             updatesReceiver.enable(messageUpdate.getMessage());
+            invalidate.fire(InvalidateResponses.chat(config.botUserId(), messageUpdate.getMessage().getChat().getId()));
             return String.format(
                     I18nHelper.resource("Administrative", locale, "enable.command.enabled"),
                     config.botUserId());
         } else {
             // ve se o parametro passado eh um plugin ou comando valido e ve se ele ja esta ativado.
-            if (repository.isCommandEnabled(messageUpdate.getMessage().getChat().getId(), key.get())) {
+            if (chatSettings.get(messageUpdate.getMessage()).isCommandEnabled(ordinals.of(key.get()))) {
                 return String.format(
                         I18nHelper.resource("Administrative", locale, "enable.command.already.enabled"),
                         key.get());
             } else {
-                repository.enableCommand(messageUpdate.getMessage().getChat().getId(), key.get());
+                int ordinal = ordinals.of(key.get());
+                repository.setCommandEnabled(config.botUserId(), messageUpdate.getMessage().getChat().getId(), ordinal, true);
+                chatSettings.update(config.botUserId(), messageUpdate.getMessage().getChat().getId(), settings -> settings.withCommand(ordinal, true));
+                invalidate.fire(InvalidateResponses.chat(config.botUserId(), messageUpdate.getMessage().getChat().getId()));
                 return String.format(
                         I18nHelper.resource("Administrative", locale, "enable.command.enabled"),
                         key.get());
@@ -24,12 +24,10 @@
 package xyz.rebasing.rebot.telegram.api.internal.commands;
 
 import java.lang.invoke.MethodHandles;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.BitSet;
 import java.util.Optional;
 
 import javax.enterprise.context.ApplicationScoped;
-import javax.enterprise.inject.Instance;
 import javax.inject.Inject;
 
 import org.jboss.logging.Logger;
@@ -37,10 +35,9 @@ import xyz.rebasing.rebot.api.conf.BotConfig;
 import xyz.rebasing.rebot.api.domain.MessageUpdate;
 import xyz.rebasing.rebot.api.i18n.I18nHelper;
 import xyz.rebasing.rebot.api.shared.components.management.user.UserManagement;
-import xyz.rebasing.rebot.api.spi.CommandProvider;
-import xyz.rebasing.rebot.api.spi.PluginProvider;
 import xyz.rebasing.rebot.api.spi.administrative.AdministrativeCommandProvider;
-import xyz.rebasing.rebot.service.persistence.repository.ApiRepository;
+import xyz.rebasing.rebot.telegram.api.settings.ChatSettingsCache;
+import xyz.rebasing.rebot.telegram.api.settings.CommandOrdinals;
 
 @ApplicationScoped
 public class ListAvailablePluginsOrCommands implements AdministrativeCommandProvider {
@@ -51,11 +48,9 @@ public class ListAvailablePluginsOrCommands implements AdministrativeCommandProv
     BotConfig config;
 
     @Inject
-    ApiRepository repository;
+    ChatSettingsCache chatSettings;
     @Inject
-    Instance<CommandProvider> command;
-    @Inject
-    Instance<PluginProvider> plugin;
+    CommandOrdinals ordinals;
     @Inject
     UserManagement userManagement;
 
@@ -71,25 +66,20 @@ public class ListAvailablePluginsOrCommands implements AdministrativeCommandProv
         if (!isAdministrator) {
             return I18nHelper.resource("Administrative", locale, "list.command.not.allowed");
         } else {
-            List<String> avialableResources = new ArrayList<>();
-            command.stream().forEach(c -> {
-                avialableResources.add(c.name().replace("/", ""));
-            });
-            plugin.stream().forEach(p -> {
-                avialableResources.add(p.name());
-            });
+            BitSet disabled = chatSettings.get(messageUpdate.getMessage()).disabledCommands();
+            BitSet resources = ordinals.registered();
 
             if (key.isPresent() && "disabled".equals(key.get())) {
-                avialableResources.removeIf(it -> repository.isCommandEnabled(messageUpdate.getMessage().getChat().getId(), it));
-                if (!avialableResources.isEmpty()) {
-                    return avialableResources;
+                resources.and(disabled);
+                if (!resources.isEmpty()) {
+                    return ordinals.names(resources);
                 } else {
                     return I18nHelper.resource("Administrative", locale, "list.command.no.items.found");
                 }
             }
 
-            avialableResources.removeIf(it -> !repository.isCommandEnabled(messageUpdate.getMessage().getChat().getId(), it));
-            return avialableResources;
+            resources.andNot(disabled);
+            return ordinals.names(resources);
         }
     }
 
@@ -28,6 +28,7 @@ import java.util.Arrays;
 import java.util.Optional;
 
 import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Event;
 import javax.inject.Inject;
 
 import org.jboss.logging.Logger;
@@ -36,9 +37,11 @@ import xyz.rebasing.rebot.api.domain.MessageUpdate;
 import xyz.rebasing.rebot.api.i18n.I18nHelper;
 import xyz.rebasing.rebot.api.i18n.SupportedLocales;
 import xyz.rebasing.rebot.api.shared.components.management.user.UserManagement;
+import xyz.rebasing.rebot.api.spi.InvalidateResponses;
 import xyz.rebasing.rebot.api.spi.administrative.AdministrativeCommandProvider;
 import xyz.rebasing.rebot.service.persistence.domain.ChatLocale;
 import xyz.rebasing.rebot.service.persistence.repository.LocaleRepository;
+import xyz.rebasing.rebot.telegram.api.settings.ChatSettingsCache;
 
 @ApplicationScoped
 public class LocaleCommand implements AdministrativeCommandProvider {
@@ -54,6 +57,12 @@ public class LocaleCommand implements AdministrativeCommandProvider {
     @Inject
     LocaleRepository localeRepository;
 
+    @Inject
+    ChatSettingsCache chatSettings;
+
+    @Inject
+    Event<InvalidateResponses> invalidate;
+
     @Override
     public void load() {
         log.debugv("Enabling chat locale command {0}", this.name());
@@ -67,8 +76,7 @@ public class LocaleCommand implements AdministrativeCommandProvider {
         if (!key.isPresent() || "".equals(key.get())) {
             return String.format(I18nHelper.resource("Administrative", locale, "locale.current.definition"),
                                  messageUpdate.getMessage().getChat().getTitle(),
-                                 localeRepository.get(messageUpdate.getMessage().getChat().getId(),
-                                                      messageUpdate.getMessage().getChat().getTitle()));
+                                 chatSettings.get(messageUpdate.getMessage()).locale());
         } else {
 
             if (!isAdministrator) {
@@ -77,16 +85,21 @@ public class LocaleCommand implements AdministrativeCommandProvider {
 
             try {
 
-                ChatLocale chatLocale = new ChatLocale(messageUpdate.getMessage().getChat().getId(),
+                ChatLocale chatLocale = new ChatLocale(config.botUserId(),
+                                                       messageUpdate.getMessage().getChat().getId(),
                                                        messageUpdate.getMessage().getChat().getTitle(),
                                                        SupportedLocales.valueOf(key.get()).localeName());
 
                 if ("persisted".equals(localeRepository.persistChatLocale(chatLocale))) {
+                    chatSettings.update(config.botUserId(), messageUpdate.getMessage().getChat().getId(),
+                                        settings -> settings.withLocale(chatLocale.getChatLocale()));
+                    invalidate.fire(InvalidateResponses.chat(config.botUserId(),
+                                                             messageUpdate.getMessage().getChat().getId()));
                     return String.format(I18nHelper.resource("Administrative",
                                                              SupportedLocales.valueOf(key.get()).localeName(),
                                                              "locale.current.definition"),
                                          messageUpdate.getMessage().getChat().getTitle(),
-                                         localeRepository.get(messageUpdate.getMessage().getChat().getId(), messageUpdate.getMessage().getChat().getTitle()));
+                                         chatSettings.get(messageUpdate.getMessage()).locale());
                 }
             } catch (final Exception e) {
 
@@ -0,0 +1,89 @@
+/*
+ *   The MIT License (MIT)
+ *
+ *   Copyright (c) 2017 Rebasing.xyz ReBot
+ *
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy of
+ *   this software and associated documentation files (the "Software"), to deal in
+ *   the Software without restriction, including without limitation the rights to
+ *   use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ *   the Software, and to permit persons to whom the Software is furnished to do so,
+ *   subject to the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ *   FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ *   COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ *   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package xyz.rebasing.rebot.telegram.api.message;
+
+import java.lang.invoke.MethodHandles;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+import org.jboss.logging.Logger;
+
+/**
+ * Keeps the messages of a chat processed one after the other once their commands and plugins became asynchronous,
+ * a message only starts after the replies of the previous one in the same chat were delivered, e.g. the sed plugin
+ * relies on it to see the history in order. No thread waits for the previous message, chats without pending work
+ * start right away.
+ * <p>
+ * At most <b>limit</b> messages are pending at the same time, running or waiting for their chat, callers wait for
+ * one of them to complete beyond that, so a burst is held on the lanes where it can be shed instead of piling up here.
+ */
+class ChatSequence {
+
+    private final Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
+
+    private final Map<Long, CompletableFuture<Void>> tails = new ConcurrentHashMap<>();
+    private final Semaphore permits;
+    private final int limit;
+
+    /**
+     * @param limit max number of messages pending at the same time
+     */
+    ChatSequence(int limit) {
+        this.limit = limit;
+        this.permits = new Semaphore(limit);
+    }
+
+    /**
+     * @param chatId chat the work belongs to
+     * @param work   starts the processing of a message, called once the previous one of the chat completed
+     * @return completes when the work completed, failed work is logged and doesn't hold the chat
+     * @throws InterruptedException if interrupted while waiting for a pending message to complete
+     */
+    CompletionStage<Void> then(long chatId, Supplier<CompletionStage<Void>> work) throws InterruptedException {
+        permits.acquire();
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        CompletableFuture<Void> previous = tails.put(chatId, done);
+        CompletableFuture<Void> start = null == previous ? CompletableFuture.completedFuture(null) : previous;
+        start.thenCompose(ignored -> work.get()).whenComplete((ignored, e) -> {
+            if (null != e) {
+                log.warnv("Message of chat {0} not processed: {1}", chatId, e.getMessage());
+            }
+            tails.remove(chatId, done);
+            permits.release();
+            done.complete(null);
+        });
+        return done;
+    }
+
+    /**
+     * @return how many messages are pending, running or waiting for the previous message of their chat
+     */
+    int pending() {
+        return limit - permits.availablePermits();
+    }
+}
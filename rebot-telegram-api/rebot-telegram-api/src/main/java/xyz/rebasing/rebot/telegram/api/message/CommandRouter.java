@@ -0,0 +1,144 @@
+/*
+ *   The MIT License (MIT)
+ *
+ *   Copyright (c) 2017 Rebasing.xyz ReBot
+ *
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy of
+ *   this software and associated documentation files (the "Software"), to deal in
+ *   the Software without restriction, including without limitation the rights to
+ *   use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ *   the Software, and to permit persons to whom the Software is furnished to do so,
+ *   subject to the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ *   FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ *   COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ *   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package xyz.rebasing.rebot.telegram.api.message;
+
+import java.lang.invoke.MethodHandles;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.inject.Instance;
+import javax.inject.Inject;
+
+import org.jboss.logging.Logger;
+import xyz.rebasing.rebot.api.domain.CommandInvocation;
+import xyz.rebasing.rebot.api.domain.MessageUpdate;
+import xyz.rebasing.rebot.api.spi.CommandProvider;
+import xyz.rebasing.rebot.api.spi.administrative.AdministrativeCommandProvider;
+
+/**
+ * Routing table of the available commands, built once at startup and keyed by the command name, e.g. <b>/ping</b>.
+ * Each command update is routed with a single lookup of the name of its {@link CommandInvocation}, instead of asking
+ * every provider whether it can process it.
+ * <p>
+ * Two providers, administrative or not, with the same name would shadow each other, the application refuses to start
+ * in that case.
+ */
+@ApplicationScoped
+public class CommandRouter {
+
+    private final Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
+
+    // handled by the IncomeMessageProcessor itself
+    public static final String HELP = "/help";
+
+    @Inject
+    Instance<AdministrativeCommandProvider> administrativeCommand;
+
+    @Inject
+    Instance<CommandProvider> command;
+
+    private final Map<String, AdministrativeCommandProvider> administrativeCommands = new LinkedHashMap<>();
+    private final Map<String, CommandProvider> commands = new LinkedHashMap<>();
+
+    @PostConstruct
+    void init() {
+        Map<String, Object> names = new LinkedHashMap<>();
+        names.put(HELP, IncomeMessageProcessor.class);
+        for (AdministrativeCommandProvider c : administrativeCommand) {
+            register(names, c.name(), c);
+            administrativeCommands.put(c.name(), c);
+        }
+        for (CommandProvider c : command) {
+            register(names, c.name(), c);
+            commands.put(c.name(), c);
+        }
+        log.debugv("Command routing table built with {0} commands", names.size());
+    }
+
+    /**
+     * Extracts the command name of the given message, the name is the command token without the bot mention.
+     * Commands mentioning other bots, e.g. <b>/ping@otherBot</b>, are not addressed to this bot.
+     *
+     * @param messageUpdate message containing the command
+     * @param botUserId     user id of the bot that received the message
+     * @return the command name or empty if the message is not a command addressed to this bot
+     */
+    public Optional<String> commandName(MessageUpdate messageUpdate, String botUserId) {
+        if (null == messageUpdate.getMessage()) {
+            return Optional.empty();
+        }
+        return messageUpdate.getMessage().invocation()
+                .filter(invocation -> invocation.isAddressedTo(botUserId))
+                .map(CommandInvocation::name);
+    }
+
+    /**
+     * @param name command name, as returned by {@link #commandName(MessageUpdate, String)}
+     * @return the administrative command with the given name
+     */
+    public Optional<AdministrativeCommandProvider> administrativeCommand(String name) {
+        return Optional.ofNullable(administrativeCommands.get(name));
+    }
+
+    /**
+     * @param name command name, as returned by {@link #commandName(MessageUpdate, String)}
+     * @return the command with the given name
+     */
+    public Optional<CommandProvider> command(String name) {
+        return Optional.ofNullable(commands.get(name));
+    }
+
+    /**
+     * @return all administrative commands, in the order they were discovered
+     */
+    public Collection<AdministrativeCommandProvider> administrativeCommands() {
+        return Collections.unmodifiableCollection(administrativeCommands.values());
+    }
+
+    /**
+     * @return all commands, in the order they were discovered
+     */
+    public Collection<CommandProvider> commands() {
+        return Collections.unmodifiableCollection(commands.values());
+    }
+
+    private void register(Map<String, Object> names, String name, Object provider) {
+        Object previous = names.putIfAbsent(name, provider);
+        if (null != previous) {
+            throw new IllegalStateException(String.format("Command %s is provided by both %s and %s",
+                                                          name, describe(previous), describe(provider)));
+        }
+    }
+
+    private String describe(Object provider) {
+        Class<?> type = provider instanceof Class ? (Class<?>) provider : provider.getClass();
+        // drop the CDI client proxy suffix
+        return type.getName().replace("_ClientProxy", "");
+    }
+}
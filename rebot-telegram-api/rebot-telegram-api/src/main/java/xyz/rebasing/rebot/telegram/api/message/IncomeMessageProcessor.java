@@ -24,15 +24,22 @@
 package xyz.rebasing.rebot.telegram.api.message;
 
 import java.lang.invoke.MethodHandles;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
 import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
+import javax.annotation.PostConstruct;
 import javax.enterprise.context.ApplicationScoped;
-import javax.enterprise.inject.Instance;
 import javax.inject.Inject;
 
 import org.jboss.logging.Logger;
 import xyz.rebasing.rebot.api.conf.BotConfig;
+import xyz.rebasing.rebot.api.conf.BotIdentity;
+import xyz.rebasing.rebot.api.domain.CommandInvocation;
 import xyz.rebasing.rebot.api.domain.Message;
 import xyz.rebasing.rebot.api.domain.MessageUpdate;
 import xyz.rebasing.rebot.api.i18n.I18nHelper;
@@ -41,113 +48,160 @@ import xyz.rebasing.rebot.api.shared.components.message.sender.OutcomeMessagePro
 import xyz.rebasing.rebot.api.spi.CommandProvider;
 import xyz.rebasing.rebot.api.spi.PluginProvider;
 import xyz.rebasing.rebot.api.spi.administrative.AdministrativeCommandProvider;
-import xyz.rebasing.rebot.service.persistence.repository.ApiRepository;
-import xyz.rebasing.rebot.service.persistence.repository.LocaleRepository;
 import xyz.rebasing.rebot.telegram.api.filter.ReBotPredicate;
+import xyz.rebasing.rebot.telegram.api.resilience.Resilience;
+import xyz.rebasing.rebot.telegram.api.resilience.Throttle;
+import xyz.rebasing.rebot.telegram.api.settings.ChatSettingsCache;
+import xyz.rebasing.rebot.telegram.api.settings.CommandOrdinals;
 
 import static xyz.rebasing.rebot.telegram.api.filter.ReBotPredicate.isCommand;
 import static xyz.rebasing.rebot.telegram.api.filter.ReBotPredicate.messageIsNotNull;
-import static xyz.rebasing.rebot.telegram.api.utils.StringUtils.concat;
 
 @ApplicationScoped
 public class IncomeMessageProcessor implements Processor {
 
     private final Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
-    private boolean isAdministrativeCommand = false;
-
-    private String locale;
 
     @Inject
     BotConfig config;
 
     @Inject
-    private Instance<CommandProvider> command;
+    private CommandRouter router;
+    @Inject
+    private PluginRouter pluginRouter;
+    @Inject
+    private PluginFanOut pluginFanOut;
+    @Inject
+    private Resilience resilience;
     @Inject
-    private Instance<AdministrativeCommandProvider> administrativeCommand;
+    private ResponseCache responses;
     @Inject
-    private Instance<PluginProvider> plugin;
+    private Throttle throttle;
     @Inject
     private OutcomeMessageProcessor reply;
     @Inject
-    private ApiRepository apiRepository;
+    private ChatSettingsCache chatSettings;
     @Inject
-    private LocaleRepository localeRepository;
+    private CommandOrdinals ordinals;
     @Inject
     private MessageManagement messageManagement;
 
+    private ChatSequence sequence;
+    // administrative commands don't wait behind the commands and plugins still replying in the chat
+    private ChatSequence administrativeSequence;
+
+    @PostConstruct
+    void init() {
+        sequence = new ChatSequence(config.updatesInFlight());
+        administrativeSequence = new ChatSequence(config.updatesInFlight());
+    }
+
     @Override
-    public void process(MessageUpdate messageUpdate) {
-        locale = localeRepository.get(messageUpdate.getMessage().getChat().getId(), messageUpdate.getMessage().getChat().getTitle());
+    public CompletionStage<Void> process(MessageUpdate messageUpdate) {
+        // commands and plugins reply asynchronously in the order of the chat, the lane waits only while too many
+        // messages are pending
+        BotIdentity bot = config.currentBot();
+        boolean administrative = router.commandName(messageUpdate, bot.userId())
+                .flatMap(router::administrativeCommand)
+                .isPresent();
+        try {
+            return (administrative ? administrativeSequence : sequence)
+                    .then(messageUpdate.getMessage().getChat().getId(),
+                          () -> config.callAs(bot, () -> handle(messageUpdate)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * @return how many messages are being processed or waiting for the previous message of their chat
+     */
+    public int pending() {
+        return sequence.pending() + administrativeSequence.pending();
+    }
+
+    private CompletionStage<Void> handle(MessageUpdate messageUpdate) {
+        ProcessingContext context = new ProcessingContext(messageUpdate, chatSettings.get(messageUpdate.getMessage()));
+        String locale = context.locale();
         if (log.isDebugEnabled()) {
             log.debugv("current message is being processed with the locale: {0}", locale);
         }
 
         // before proceed with other commands/plugins execute administrative commands
-        administrativeCommand.forEach(c -> {
-
-            if (c.canProcessCommand(messageUpdate, config.botUserId())) {
-                if (ReBotPredicate.help().test(messageUpdate)) {
-                    reply.processOutgoingMessage(new Message(messageUpdate.getMessage().getMessageId(),
-                                                             messageUpdate.getMessage().getChat(),
-                                                             c.help(locale)),
-                                                 c.deleteMessage(),
-                                                 c.deleteMessageTimeout());
-                    // delete the command itself
-                    if (c.deleteMessage()) {
-                        messageManagement.deleteMessage(messageUpdate.getMessage().getChat().getId(),
-                                                        messageUpdate.getMessage().getMessageId(),
-                                                        c.deleteMessageTimeout());
-                    }
-
-                    isAdministrativeCommand = true;
-                    return;
-                }
+        Optional<AdministrativeCommandProvider> administrative = router.commandName(messageUpdate, config.botUserId())
+                .flatMap(router::administrativeCommand);
+        if (administrative.isPresent()) {
+            AdministrativeCommandProvider c = administrative.get();
+            if (ReBotPredicate.help().test(messageUpdate)) {
                 reply.processOutgoingMessage(new Message(messageUpdate.getMessage().getMessageId(),
                                                          messageUpdate.getMessage().getChat(),
-                                                         c.execute(Optional.of(
-                                                                           concat(messageUpdate.getMessage().getText().split(" "))),
-                                                                   messageUpdate,
-                                                                   locale).toString()),
+                                                         c.help(locale)),
+                                             c.deleteMessage(),
+                                             c.deleteMessageTimeout());
+            } else {
+                Optional<String> args = messageUpdate.getMessage().invocation().map(CommandInvocation::lowerCaseArgs);
+                long ttl = config.responsesTtl(c.name().replace("/", ""), c.cacheTtl(args.orElse("")));
+                ResponseCache.Key key = responses.key(c.name(), args, locale, config.botUserId(),
+                                                      messageUpdate.getMessage().getChat().getId(), c.cachePerChat());
+                String response = (ttl > 0 ? responses.get(key) : Optional.<String>empty())
+                        .orElseGet(() -> responses.put(key, c.execute(args, messageUpdate, locale).toString(), ttl));
+                reply.processOutgoingMessage(new Message(messageUpdate.getMessage().getMessageId(),
+                                                         messageUpdate.getMessage().getChat(),
+                                                         response),
                                              c.deleteMessage(),
                                              c.deleteMessageTimeout());
-                // delete the command itself
-                if (c.deleteMessage()) {
-                    messageManagement.deleteMessage(messageUpdate.getMessage().getChat().getId(),
-                                                    messageUpdate.getMessage().getMessageId(),
-                                                    c.deleteMessageTimeout());
-                }
-                isAdministrativeCommand = true;
-                return;
             }
-        });
+            // delete the command itself
+            if (c.deleteMessage()) {
+                messageManagement.deleteMessage(messageUpdate.getMessage().getChat().getId(),
+                                                messageUpdate.getMessage().getMessageId(),
+                                                c.deleteMessageTimeout());
+            }
+            // the command may have changed the chat settings
+            context = context.withAdministrativeCommand().withSettings(chatSettings.get(messageUpdate.getMessage()));
+        }
 
-        if (apiRepository.isBotEnabled(messageUpdate.getMessage().getChat().getId())) {
+        if (context.settings().isBotEnabled()) {
             Predicate predicate = messageIsNotNull().and(isCommand());
 
             if (predicate.test(messageUpdate)) {
-                commandProcessor(messageUpdate);
+                return commandProcessor(context);
             } else {
-                nonCommandProcessor(messageUpdate);
+                return nonCommandProcessor(context);
             }
         }
+        return CompletableFuture.completedFuture(null);
     }
 
     @Override
-    public void commandProcessor(MessageUpdate messageUpdate) {
+    public CompletionStage<Void> commandProcessor(ProcessingContext context) {
+        final MessageUpdate messageUpdate = context.messageUpdate();
+        final String locale = context.locale();
 
-        final StringBuilder response = new StringBuilder("");
         log.debugv("Processing command: {0}", messageUpdate.getMessage().getText());
 
-        String[] args = messageUpdate.getMessage().getText().split(" ");
-        String command2process = args[0].replace("@" + config.botUserId(), "");
+        // parsed once per update, routing and the command share it
+        Optional<CommandInvocation> invocation = messageUpdate.getMessage().invocation();
+        String command2process = router.commandName(messageUpdate, config.botUserId()).orElse("");
 
         // /help command
         // will delete messages within 10 seconds
-        if ("/help".equals(command2process)) {
-            command.forEach(c -> response.append(c.name() + " - " + c.description(locale) + "\n"));
-            administrativeCommand.forEach(ac -> response.append(ac.name() + " - " + ac.description(locale) + "\n"));
-            response.append(I18nHelper.resource("Administrative", locale, "internal.help.response"));
-            reply.processOutgoingMessage(new Message(messageUpdate.getMessage().getMessageId(), messageUpdate.getMessage().getChat(), response.toString()),
+        if (CommandRouter.HELP.equals(command2process)) {
+            if (throttled(messageUpdate, CommandRouter.HELP, locale)) {
+                return CompletableFuture.completedFuture(null);
+            }
+            // the same for every chat sharing the locale, rebuilt only after it expires
+            ResponseCache.Key key = responses.key(CommandRouter.HELP, Optional.empty(), locale, config.botUserId(),
+                                                  messageUpdate.getMessage().getChat().getId(), false);
+            String response = responses.get(key).orElseGet(() -> {
+                final StringBuilder help = new StringBuilder("");
+                router.commands().forEach(c -> help.append(c.name() + " - " + c.description(locale) + "\n"));
+                router.administrativeCommands().forEach(ac -> help.append(ac.name() + " - " + ac.description(locale) + "\n"));
+                help.append(I18nHelper.resource("Administrative", locale, "internal.help.response"));
+                return responses.put(key, help.toString(), config.responsesTtl("help", config.responsesTtl()));
+            });
+            reply.processOutgoingMessage(new Message(messageUpdate.getMessage().getMessageId(), messageUpdate.getMessage().getChat(), response),
                                          config.deleteMessages(), config.deleteMessagesAfter());
             // delete the command itself
             if (config.deleteMessages()) {
@@ -155,66 +209,106 @@ public class IncomeMessageProcessor implements Processor {
                                                 messageUpdate.getMessage().getMessageId(),
                                                 config.deleteMessagesAfter());
             }
+            return CompletableFuture.completedFuture(null);
         }
 
-        command.forEach(command -> {
-            if (!apiRepository.isCommandEnabled(messageUpdate.getMessage().getChat().getId(), command.name().replace("/", ""))) {
-                return;
-            } else {
-                if (command.canProcessCommand(messageUpdate, config.botUserId())) {
-                    if ("help".equals(concat(args))) {
-                        response.append(command.help(locale));
-                    } else {
-                        response.append(command.execute(Optional.of(concat(args)), messageUpdate, locale));
-                        log.debugv("COMMAND_PROCESSOR - Command processed, result is: {0}", response);
-                    }
-                    reply.processOutgoingMessage(new Message(messageUpdate.getMessage().getMessageId(),
-                                                             messageUpdate.getMessage().getChat(),
-                                                             response.toString()),
-                                                 command.deleteMessage(), command.deleteMessageTimeout());
-
-                    // delete the command itself
-                    if (command.deleteMessage()) {
-                        messageManagement.deleteMessage(messageUpdate.getMessage().getChat().getId(),
-                                                        messageUpdate.getMessage().getMessageId(),
-                                                        command.deleteMessageTimeout());
-                    }
-                }
+        // only the matched command is checked against the chat settings
+        Optional<CommandProvider> matched = router.command(command2process);
+        if (!matched.isPresent()
+                || !context.settings().isCommandEnabled(ordinals.of(command2process.replace("/", "")))) {
+            if (!context.isAdministrativeCommand()) {
+                log.debugv("Command [{0}] will not to be processed by this bot or is not an administrative command.",
+                           messageUpdate.getMessage().getText() + "");
             }
-        });
-        if (response.length() < 1 && !isAdministrativeCommand) {
-            log.debugv("Command [{0}] will not to be processed by this bot or is not an administrative command.",
-                       messageUpdate.getMessage().getText() + "");
+            return CompletableFuture.completedFuture(null);
         }
+
+        CommandProvider command = matched.get();
+        if (throttled(messageUpdate, command.name(), locale)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        Executor executor = resilience.commandExecutor(config.currentBot());
+        CompletionStage<Object> response;
+        Optional<String> args = invocation.map(CommandInvocation::lowerCaseArgs);
+        long ttl = config.responsesTtl(command.name().replace("/", ""), command.cacheTtl(args.orElse("")));
+        ResponseCache.Key key = responses.key(command.name(), args, locale, config.botUserId(),
+                                              messageUpdate.getMessage().getChat().getId(), command.cachePerChat());
+        boolean help = args.filter("help"::equals).isPresent();
+        Optional<String> cached = ttl > 0 && !help ? responses.get(key) : Optional.empty();
+        if (help) {
+            response = CompletableFuture.completedFuture(command.help(locale));
+        } else if (cached.isPresent()) {
+            response = CompletableFuture.completedFuture(cached.get());
+        } else {
+            // the command runs behind its bulkhead and circuit breaker, replying unavailable when they reject it,
+            // only its own responses are kept, never the fallback
+            response = resilience.callAsync(command.name(), executor,
+                                            e -> command.executeAsync(args, messageUpdate, locale, e)
+                                                    .thenApply(result -> responses.put(key, result, ttl)),
+                                            () -> String.format(I18nHelper.resource("Administrative", locale, "internal.service.unavailable"),
+                                                                command.name()));
+        }
+        return response.thenAcceptAsync(result -> {
+            log.debugv("COMMAND_PROCESSOR - Command processed, result is: {0}", result);
+            reply.processOutgoingMessage(new Message(messageUpdate.getMessage().getMessageId(),
+                                                     messageUpdate.getMessage().getChat(),
+                                                     String.valueOf(result)),
+                                         command.deleteMessage(), command.deleteMessageTimeout());
+
+            // delete the command itself
+            if (command.deleteMessage()) {
+                messageManagement.deleteMessage(messageUpdate.getMessage().getChat().getId(),
+                                                messageUpdate.getMessage().getMessageId(),
+                                                command.deleteMessageTimeout());
+            }
+        }, executor);
+    }
+
+    /**
+     * @return true if the sender or the command reached its limit in the chat, the sender is warned only once
+     */
+    private boolean throttled(MessageUpdate messageUpdate, String command, String locale) {
+        long userId = null != messageUpdate.getMessage().getFrom() ? messageUpdate.getMessage().getFrom().getId() : 0L;
+        Throttle.Decision decision = throttle.acquire(messageUpdate.getMessage().getChat().getId(), userId, command);
+        if (decision == Throttle.Decision.WARN) {
+            reply.processOutgoingMessage(new Message(messageUpdate.getMessage().getMessageId(),
+                                                     messageUpdate.getMessage().getChat(),
+                                                     String.format(I18nHelper.resource("Administrative", locale, "internal.throttled"),
+                                                                   command)),
+                                         config.deleteMessages(), config.deleteMessagesAfter());
+        }
+        if (decision != Throttle.Decision.ALLOWED) {
+            log.debugv("Command {0} throttled in the chat {1}", command, messageUpdate.getMessage().getChat().getId());
+            return true;
+        }
+        return false;
     }
 
     @Override
-    public void nonCommandProcessor(MessageUpdate messageUpdate) {
+    public CompletionStage<Void> nonCommandProcessor(ProcessingContext context) {
+        final MessageUpdate messageUpdate = context.messageUpdate();
         log.debugv("NON_COMMAND_PROCESSOR - Processing message: {0}", messageUpdate.getMessage().toString());
-        Message message = new Message(messageUpdate.getMessage().getMessageId(),
-                                      messageUpdate.getMessage().getChat());
-
-        plugin.forEach(plugin -> {
-            if (!apiRepository.isCommandEnabled(messageUpdate.getMessage().getChat().getId(), plugin.name())) {
-                return;
-            } else {
-                message.setText(plugin.process(messageUpdate, locale));
-                try {
-                    if (null != message.getText()) {
-                        if (message.getText().contains("karma")) {
-                            message.setMessageId(0);
-                        }
-                        reply.processOutgoingMessage(message, plugin.deleteMessage(), plugin.deleteMessageTimeout());
-                        // delete the command itself
-                        if (plugin.deleteMessage()) {
-                            messageManagement.deleteMessage(messageUpdate.getMessage().getChat().getId(),
-                                                            messageUpdate.getMessage().getMessageId(),
-                                                            plugin.deleteMessageTimeout());
-                        }
-                    }
-                } catch (final Exception e) {
-                    log.debug("NON_COMMAND_PROCESSOR - Message not processed by the available plugins.");
+        // only the plugins whose triggers match the message are invoked, all of them at the same time
+        List<PluginProvider> plugins = pluginRouter.triggered(messageUpdate).stream()
+                .filter(plugin -> context.settings().isCommandEnabled(ordinals.of(plugin.name())))
+                .collect(Collectors.toList());
+        return pluginFanOut.run(plugins, (plugin, executor) -> plugin.processAsync(messageUpdate, context.locale(), executor), (plugin, text) -> {
+            Message message = new Message(messageUpdate.getMessage().getMessageId(),
+                                          messageUpdate.getMessage().getChat());
+            message.setText(text);
+            try {
+                if (message.getText().contains("karma")) {
+                    message.setMessageId(0);
+                }
+                reply.processOutgoingMessage(message, plugin.deleteMessage(), plugin.deleteMessageTimeout());
+                // delete the command itself
+                if (plugin.deleteMessage()) {
+                    messageManagement.deleteMessage(messageUpdate.getMessage().getChat().getId(),
+                                                    messageUpdate.getMessage().getMessageId(),
+                                                    plugin.deleteMessageTimeout());
                 }
+            } catch (final Exception e) {
+                log.debug("NON_COMMAND_PROCESSOR - Message not processed by the available plugins.");
             }
         });
     }
@@ -0,0 +1,213 @@
+/*
+ *   The MIT License (MIT)
+ *
+ *   Copyright (c) 2017 Rebasing.xyz ReBot
+ *
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy of
+ *   this software and associated documentation files (the "Software"), to deal in
+ *   the Software without restriction, including without limitation the rights to
+ *   use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ *   the Software, and to permit persons to whom the Software is furnished to do so,
+ *   subject to the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ *   FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ *   COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ *   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package xyz.rebasing.rebot.telegram.api.message;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import xyz.rebasing.rebot.api.conf.BotConfig;
+import xyz.rebasing.rebot.api.conf.BotIdentity;
+import xyz.rebasing.rebot.api.spi.PluginProvider;
+import xyz.rebasing.rebot.telegram.api.resilience.Guard;
+import xyz.rebasing.rebot.telegram.api.resilience.Resilience;
+
+/**
+ * Runs the plugins triggered by a message concurrently without blocking the caller, so a slow plugin, e.g. one
+ * calling an external api, does not delay the others and a message takes as long as its slowest plugin instead of
+ * the sum of all of them.
+ * <p>
+ * Synchronous plugins run on a bounded pool, asynchronous ones only use it for their own blocking work. Plugins that
+ * don't reply within <b>xyz.rebasing.rebot.telegram.plugins.deadline</b> milliseconds, or within their own
+ * {@link Guard} timeout if shorter, are given up and counted by their guard, their tasks are cancelled and the running
+ * ones interrupted, so a plugin that hangs releases its thread and its guard permit instead of filling the pool. Plugins
+ * whose circuit breaker is open or that reached their concurrency limit are skipped.
+ */
+@ApplicationScoped
+public class PluginFanOut {
+
+    // tasks waiting for a free thread per pool thread, above it the plugins are rejected instead of queued.
+    private static final int QUEUE_PER_THREAD = 16;
+
+    @Inject
+    BotConfig config;
+
+    @Inject
+    Resilience resilience;
+
+    private ThreadPoolExecutor pluginService;
+    private final LongAdder invoked = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder cancelled = new LongAdder();
+
+    @PostConstruct
+    void init() {
+        AtomicInteger threads = new AtomicInteger();
+        pluginService = new ThreadPoolExecutor(config.pluginsThreads(), config.pluginsThreads(),
+                                               0L, TimeUnit.MILLISECONDS,
+                                               new ArrayBlockingQueue<>(config.pluginsThreads() * QUEUE_PER_THREAD),
+                                               r -> {
+                                                   Thread t = new Thread(r, "rebot-plugin-" + threads.incrementAndGet());
+                                                   t.setDaemon(true);
+                                                   return t;
+                                               });
+    }
+
+    @PreDestroy
+    void destroy() {
+        pluginService.shutdownNow();
+    }
+
+    /**
+     * Starts the given plugins and hands each non null result to the consumer as soon as it is ready.
+     *
+     * @param plugins plugins to run
+     * @param process starts the processing of the message by a plugin on the given executor
+     * @param deliver receives each plugin and its result, called on the plugin pool on behalf of the current bot
+     * @return completes once every plugin result was delivered or given up
+     */
+    public CompletionStage<Void> run(List<PluginProvider> plugins,
+                                     BiFunction<PluginProvider, Executor, CompletionStage<String>> process,
+                                     BiConsumer<PluginProvider, String> deliver) {
+        if (plugins.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        BotIdentity bot = config.currentBot();
+        Executor executor = task -> submit(bot, task);
+        CompletableFuture<?>[] replies = new CompletableFuture<?>[plugins.size()];
+        for (int i = 0; i < plugins.size(); i++) {
+            PluginProvider plugin = plugins.get(i);
+            long timeout = Math.min(config.pluginsDeadline(), resilience.guard(plugin.name()).timeout());
+            invoked.increment();
+            PluginCall call = new PluginCall(bot);
+            replies[i] = resilience.callAsync(plugin.name(), executor, timeout, call.start(e -> process.apply(plugin, e)), () -> null)
+                    .whenComplete((result, error) -> call.cancel())
+                    .thenAcceptAsync(result -> {
+                        if (null != result) {
+                            deliver.accept(plugin, result);
+                        }
+                    }, executor)
+                    .toCompletableFuture();
+        }
+        return CompletableFuture.allOf(replies);
+    }
+
+    private Future<?> submit(BotIdentity bot, Runnable task) {
+        try {
+            return pluginService.submit(() -> config.runAs(bot, task));
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw e;
+        }
+    }
+
+    /**
+     * @return how many plugins were invoked, how many tasks were rejected for lack of threads and how many plugins
+     * were cancelled at the deadline, failures and timeouts are counted per plugin by {@link Resilience#stats()}
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("threads", pluginService.getMaximumPoolSize());
+        stats.put("active", pluginService.getActiveCount());
+        stats.put("queued", pluginService.getQueue().size());
+        stats.put("deadlineMs", config.pluginsDeadline());
+        stats.put("invoked", invoked.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("cancelled", cancelled.sum());
+        return stats;
+    }
+
+    /**
+     * Keeps the tasks started by a plugin, so they can be cancelled once the plugin is given up.
+     */
+    private class PluginCall {
+
+        private final BotIdentity bot;
+        private final Queue<Future<?>> tasks = new ConcurrentLinkedQueue<>();
+        // completes when the plugin replies, or is cancelled to release the guard permit when it is given up
+        private final CompletableFuture<String> reply = new CompletableFuture<>();
+        private volatile boolean started;
+
+        PluginCall(BotIdentity bot) {
+            this.bot = bot;
+        }
+
+        Function<Executor, CompletionStage<String>> start(Function<Executor, CompletionStage<String>> process) {
+            return ignored -> {
+                process.apply(this::submit).whenComplete((result, error) -> {
+                    if (null == error) {
+                        reply.complete(result);
+                    } else {
+                        reply.completeExceptionally(error);
+                    }
+                });
+                started = true;
+                return reply;
+            };
+        }
+
+        private void submit(Runnable task) {
+            Future<?> future = PluginFanOut.this.submit(bot, task);
+            tasks.add(future);
+            // work started by the plugin after being given up doesn't run either
+            if (reply.isCancelled()) {
+                future.cancel(true);
+            }
+        }
+
+        /**
+         * Called once the guard gave its result, the reply is still pending only when the deadline fired first.
+         */
+        void cancel() {
+            if (!started || reply.isDone()) {
+                return;
+            }
+            // cancelled before interrupting the tasks, so whatever they return once interrupted is ignored
+            if (reply.cancel(false)) {
+                cancelled.increment();
+                tasks.forEach(task -> task.cancel(true));
+            }
+        }
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ *   The MIT License (MIT)
+ *
+ *   Copyright (c) 2017 Rebasing.xyz ReBot
+ *
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy of
+ *   this software and associated documentation files (the "Software"), to deal in
+ *   the Software without restriction, including without limitation the rights to
+ *   use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ *   the Software, and to permit persons to whom the Software is furnished to do so,
+ *   subject to the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ *   FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ *   COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ *   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package xyz.rebasing.rebot.telegram.api.message;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.inject.Instance;
+import javax.inject.Inject;
+
+import org.jboss.logging.Logger;
+import xyz.rebasing.rebot.api.domain.MessageUpdate;
+import xyz.rebasing.rebot.api.domain.UpdateKind;
+import xyz.rebasing.rebot.api.spi.PluginProvider;
+import xyz.rebasing.rebot.api.spi.PluginTrigger;
+
+/**
+ * Selects the plugins triggered by a message. The literals and prefixes declared through
+ * {@link PluginProvider#trigger()} by all plugins are compiled at startup into a single Aho-Corasick automaton, so
+ * finding the triggered plugins takes one pass over the message text regardless of the number of plugins, and plain
+ * chat messages that trigger nothing never reach the plugins.
+ */
+@ApplicationScoped
+public class PluginRouter {
+
+    private final Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
+
+    @Inject
+    Instance<PluginProvider> plugin;
+
+    private final List<PluginProvider> plugins = new ArrayList<>();
+    // plugins triggered by every message
+    private final BitSet always = new BitSet();
+    // plugins accepting each kind of update, edits are removed from the plugins that don't want them
+    private final Map<UpdateKind, BitSet> kinds = new EnumMap<>(UpdateKind.class);
+    private final Map<String, BitSet> fields = new LinkedHashMap<>();
+
+    // automaton, state 0 is the root
+    private char[][] transitionKeys;
+    private int[][] transitionStates;
+    private int[] failure;
+    private int[] depth;
+    // plugins whose literal ends on each state, including the ones reached through the failure links
+    private BitSet[] literalOutput;
+    // plugins whose prefix is exactly the path to each state
+    private BitSet[] prefixOutput;
+
+    @PostConstruct
+    void init() {
+        List<Map<Character, Integer>> trie = new ArrayList<>();
+        List<BitSet> literals = new ArrayList<>();
+        List<BitSet> prefixes = new ArrayList<>();
+        List<Integer> depths = new ArrayList<>();
+        newState(trie, literals, prefixes, depths, 0);
+
+        for (PluginProvider p : plugin) {
+            int index = plugins.size();
+            plugins.add(p);
+            PluginTrigger trigger = p.trigger();
+            for (UpdateKind kind : p.updateKinds()) {
+                if (kind != UpdateKind.EDITED_MESSAGE || trigger.edits()) {
+                    kinds.computeIfAbsent(kind, k -> new BitSet()).set(index);
+                }
+            }
+            if (trigger.isAlways()) {
+                always.set(index);
+                continue;
+            }
+            trigger.literals().forEach(l -> literals.get(insert(trie, literals, prefixes, depths, l)).set(index));
+            trigger.prefixes().forEach(l -> prefixes.get(insert(trie, literals, prefixes, depths, l)).set(index));
+            trigger.fields().forEach(f -> fields.computeIfAbsent(f, k -> new BitSet()).set(index));
+            log.debugv("Plugin {0} triggered by {1}", p.name(), trigger);
+        }
+        compile(trie, literals, prefixes, depths);
+        log.debugv("Plugin triggers compiled into {0} states", trie.size());
+    }
+
+    /**
+     * @param update message received
+     * @return the plugins triggered by the given message, in the order they were discovered
+     */
+    public List<PluginProvider> triggered(MessageUpdate update) {
+        BitSet matched = (BitSet) always.clone();
+        if (null != update.getMessage()) {
+            Map<String, Object> properties = update.getMessage().getAdditionalProperties();
+            if (null != properties && !properties.isEmpty()) {
+                fields.forEach((field, triggered) -> {
+                    if (properties.containsKey(field)) {
+                        matched.or(triggered);
+                    }
+                });
+            }
+            if (null != update.getMessage().getText() && transitionKeys.length > 1) {
+                scan(update.getMessage().getText(), matched);
+            }
+        }
+        Optional<UpdateKind> kind = UpdateKind.of(update);
+        if (kind.isPresent()) {
+            matched.and(kinds.getOrDefault(kind.get(), new BitSet()));
+        }
+        if (matched.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<PluginProvider> triggered = new ArrayList<>(matched.cardinality());
+        matched.stream().forEach(i -> triggered.add(plugins.get(i)));
+        return triggered;
+    }
+
+    /**
+     * Walks the automaton over the text once, collecting the plugins whose literals are found anywhere and the
+     * ones whose prefixes match the beginning of the text.
+     */
+    private void scan(String text, BitSet matched) {
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            int next;
+            while ((next = next(state, c)) < 0 && state != 0) {
+                state = failure[state];
+            }
+            state = Math.max(next, 0);
+            if (null != literalOutput[state]) {
+                matched.or(literalOutput[state]);
+            }
+            // only reachable while the whole text read so far is a path from the root
+            if (null != prefixOutput[state] && depth[state] == i + 1) {
+                matched.or(prefixOutput[state]);
+            }
+        }
+    }
+
+    private int next(int state, char c) {
+        int position = Arrays.binarySearch(transitionKeys[state], c);
+        return position < 0 ? -1 : transitionStates[state][position];
+    }
+
+    private static int newState(List<Map<Character, Integer>> trie, List<BitSet> literals, List<BitSet> prefixes,
+                                List<Integer> depths, int depth) {
+        trie.add(new TreeMap<>());
+        literals.add(null);
+        prefixes.add(null);
+        depths.add(depth);
+        return trie.size() - 1;
+    }
+
+    /**
+     * @return the state reached by the given word, with an empty plugin set ready to be filled in
+     */
+    private static int insert(List<Map<Character, Integer>> trie, List<BitSet> literals, List<BitSet> prefixes,
+                              List<Integer> depths, String word) {
+        int state = 0;
+        for (char c : word.toCharArray()) {
+            Integer next = trie.get(state).get(c);
+            if (null == next) {
+                next = newState(trie, literals, prefixes, depths, depths.get(state) + 1);
+                trie.get(state).put(c, next);
+            }
+            state = next;
+        }
+        if (null == literals.get(state)) {
+            literals.set(state, new BitSet());
+        }
+        if (null == prefixes.get(state)) {
+            prefixes.set(state, new BitSet());
+        }
+        return state;
+    }
+
+    /**
+     * Computes the failure links breadth first and freezes the trie into arrays.
+     */
+    private void compile(List<Map<Character, Integer>> trie, List<BitSet> literals, List<BitSet> prefixes,
+                         List<Integer> depths) {
+        int size = trie.size();
+        transitionKeys = new char[size][];
+        transitionStates = new int[size][];
+        failure = new int[size];
+        depth = new int[size];
+        literalOutput = new BitSet[size];
+        prefixOutput = new BitSet[size];
+        for (int state = 0; state < size; state++) {
+            Map<Character, Integer> transitions = trie.get(state);
+            transitionKeys[state] = new char[transitions.size()];
+            transitionStates[state] = new int[transitions.size()];
+            int i = 0;
+            for (Map.Entry<Character, Integer> transition : transitions.entrySet()) {
+                transitionKeys[state][i] = transition.getKey();
+                transitionStates[state][i++] = transition.getValue();
+            }
+            depth[state] = depths.get(state);
+            prefixOutput[state] = emptyToNull(prefixes.get(state));
+        }
+
+        Deque<Integer> queue = new ArrayDeque<>(trie.get(0).values());
+        literalOutput[0] = null;
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            BitSet output = null == literals.get(state) ? new BitSet() : (BitSet) literals.get(state).clone();
+            BitSet inherited = literalOutput[failure[state]];
+            if (null != inherited) {
+                output.or(inherited);
+            }
+            literalOutput[state] = emptyToNull(output);
+            for (Map.Entry<Character, Integer> transition : trie.get(state).entrySet()) {
+                int child = transition.getValue();
+                int fallback = failure[state];
+                int next;
+                while ((next = next(fallback, transition.getKey())) < 0 && fallback != 0) {
+                    fallback = failure[fallback];
+                }
+                failure[child] = next < 0 || next == child ? 0 : next;
+                queue.add(child);
+            }
+        }
+    }
+
+    private static BitSet emptyToNull(BitSet set) {
+        return null == set || set.isEmpty() ? null : set;
+    }
+}
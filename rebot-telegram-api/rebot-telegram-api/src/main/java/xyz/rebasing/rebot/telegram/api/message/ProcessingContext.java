@@ -0,0 +1,92 @@
+/*
+ *   The MIT License (MIT)
+ *
+ *   Copyright (c) 2017 Rebasing.xyz ReBot
+ *
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy of
+ *   this software and associated documentation files (the "Software"), to deal in
+ *   the Software without restriction, including without limitation the rights to
+ *   use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ *   the Software, and to permit persons to whom the Software is furnished to do so,
+ *   subject to the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ *   FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ *   COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ *   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package xyz.rebasing.rebot.telegram.api.message;
+
+import xyz.rebasing.rebot.api.domain.MessageUpdate;
+import xyz.rebasing.rebot.telegram.api.settings.ChatSettings;
+
+/**
+ * Holds the state resolved for a single update while it goes through the {@link Processor}, it is immutable so
+ * updates from different chats can be processed at the same time.
+ */
+public final class ProcessingContext {
+
+    private final MessageUpdate messageUpdate;
+    private final ChatSettings settings;
+    private final boolean administrativeCommand;
+
+    public ProcessingContext(MessageUpdate messageUpdate, ChatSettings settings) {
+        this(messageUpdate, settings, false);
+    }
+
+    private ProcessingContext(MessageUpdate messageUpdate, ChatSettings settings, boolean administrativeCommand) {
+        this.messageUpdate = messageUpdate;
+        this.settings = settings;
+        this.administrativeCommand = administrativeCommand;
+    }
+
+    /**
+     * @return a copy of this context flagged as already handled by an administrative command
+     */
+    public ProcessingContext withAdministrativeCommand() {
+        return new ProcessingContext(messageUpdate, settings, true);
+    }
+
+    /**
+     * @param settings the chat settings, as changed by an administrative command
+     * @return a copy of this context with the given chat settings
+     */
+    public ProcessingContext withSettings(ChatSettings settings) {
+        return new ProcessingContext(messageUpdate, settings, administrativeCommand);
+    }
+
+    public MessageUpdate messageUpdate() {
+        return messageUpdate;
+    }
+
+    public long chatId() {
+        return messageUpdate.getMessage().getChat().getId();
+    }
+
+    public String locale() {
+        return settings.locale();
+    }
+
+    public ChatSettings settings() {
+        return settings;
+    }
+
+    public boolean isAdministrativeCommand() {
+        return administrativeCommand;
+    }
+
+    @Override
+    public String toString() {
+        return "ProcessingContext{" +
+                "updateId=" + messageUpdate.getUpdateId() +
+                ", settings=" + settings +
+                ", administrativeCommand=" + administrativeCommand +
+                '}';
+    }
+}
@@ -24,6 +24,8 @@
 
 package xyz.rebasing.rebot.telegram.api.message;
 
+import java.util.concurrent.CompletionStage;
+
 import xyz.rebasing.rebot.api.domain.MessageUpdate;
 
 public interface Processor {
@@ -33,19 +35,22 @@ public interface Processor {
      * If any plugin or service can process the update, it will be processed and a reply will be sent by the
      * plugin or service that processed the update.
      * @param messageUpdate Message to be processed
+     * @return completes once the commands and plugins processing the update replied
      */
-    void process(MessageUpdate messageUpdate);
+    CompletionStage<Void> process(MessageUpdate messageUpdate);
 
     /**
      * Process the commands, anything started with / will be considered a command
-     * @param messageUpdate Message to be processed
+     * @param context {@link ProcessingContext} of the message to be processed
+     * @return completes once the command replied, without blocking the caller while it runs
      */
-    void commandProcessor(MessageUpdate messageUpdate);
+    CompletionStage<Void> commandProcessor(ProcessingContext context);
 
     /**
      * Process everything, usually it is filtered by the plugins, i.e karma plugin.
      * If the message processed matches a plugin condition, it will be processed.
-     * @param messageUpdate Message to be processed
+     * @param context {@link ProcessingContext} of the message to be processed
+     * @return completes once the triggered plugins replied, without blocking the caller while they run
      */
-    void nonCommandProcessor(MessageUpdate messageUpdate);
+    CompletionStage<Void> nonCommandProcessor(ProcessingContext context);
 }
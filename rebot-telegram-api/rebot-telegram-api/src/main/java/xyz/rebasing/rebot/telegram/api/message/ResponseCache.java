@@ -0,0 +1,247 @@
+/*
+ *   The MIT License (MIT)
+ *
+ *   Copyright (c) 2017 Rebasing.xyz ReBot
+ *
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy of
+ *   this software and associated documentation files (the "Software"), to deal in
+ *   the Software without restriction, including without limitation the rights to
+ *   use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ *   the Software, and to permit persons to whom the Software is furnished to do so,
+ *   subject to the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ *   FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ *   COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ *   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package xyz.rebasing.rebot.telegram.api.message;
+
+import java.lang.invoke.MethodHandles;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+
+import org.jboss.logging.Logger;
+import xyz.rebasing.rebot.api.conf.BotConfig;
+import xyz.rebasing.rebot.api.spi.InvalidateResponses;
+import xyz.rebasing.rebot.telegram.api.settings.ChatKey;
+
+/**
+ * Keeps the responses of the commands that reply with the same text for the same arguments, e.g. /help or /currency
+ * without arguments, so they are not rebuilt for every message. Responses are keyed by bot, command, normalized
+ * arguments, locale and, for the commands depending on the chat settings, the chat and the version of its settings,
+ * which each bot in a group keeps apart.
+ * <p>
+ * Entries expire after the ttl of their command and are dropped by {@link InvalidateResponses} events, a response
+ * computed while an invalidation happened is not kept. At most <b>xyz.rebasing.rebot.telegram.responses.size</b>
+ * responses are kept, none of them computed while warming up.
+ */
+@ApplicationScoped
+public class ResponseCache {
+
+    private final Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
+
+    @Inject
+    BotConfig config;
+
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<ChatKey, Long> chatVersions = new ConcurrentHashMap<>();
+    // bumped by every invalidation, responses computed across one of them are discarded
+    private final AtomicLong generation = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    private final LongAdder invalidated = new LongAdder();
+
+    /**
+     * @param command command name, with the leading slash
+     * @param args    command parameters
+     * @param locale  chat locale
+     * @param botId   user id of the bot the command was sent to
+     * @param chatId  chat the command was sent to
+     * @param perChat true if the response depends on the chat settings
+     * @return the key to look up and store the response with
+     */
+    public Key key(String command, Optional<String> args, String locale, String botId, long chatId, boolean perChat) {
+        long chat = perChat ? chatId : 0L;
+        return new Key(botId, command, normalize(args.orElse("")), locale, chat,
+                       perChat ? chatVersions.getOrDefault(new ChatKey(botId, chatId), 0L) : 0L, generation.get());
+    }
+
+    /**
+     * @param key {@link Key}
+     * @return the response kept for the given key, if any and not expired, nothing while warming up
+     */
+    public Optional<String> get(Key key) {
+        if (config.isWarmingUp()) {
+            return Optional.empty();
+        }
+        Entry entry = entries.get(key);
+        if (null == entry || entry.expiresAt - System.nanoTime() <= 0) {
+            misses.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+        return Optional.of(entry.response);
+    }
+
+    /**
+     * @param key      the key used to look up the response
+     * @param response the response, null responses are not kept
+     * @param ttl      seconds the response is kept, nothing is kept if not positive
+     * @return the response, to be used as the last step of a computation
+     */
+    public <T> T put(Key key, T response, long ttl) {
+        if (null == response || ttl <= 0 || config.responsesSize() == 0 || key.generation != generation.get()
+                || config.isWarmingUp()) {
+            return response;
+        }
+        if (entries.size() >= config.responsesSize() && !entries.containsKey(key)) {
+            makeRoom();
+        }
+        entries.put(key, new Entry(String.valueOf(response), System.nanoTime() + TimeUnit.SECONDS.toNanos(ttl)));
+        return response;
+    }
+
+    void onInvalidate(@Observes InvalidateResponses event) {
+        log.debugv("Invalidating responses: {0}", event);
+        generation.incrementAndGet();
+        if (event.isAll()) {
+            invalidated.add(entries.size());
+            entries.clear();
+            return;
+        }
+        ChatKey chat = event.chatId().isPresent() && event.botId().isPresent()
+                ? new ChatKey(event.botId().get(), event.chatId().getAsLong()) : null;
+        if (null != chat) {
+            chatVersions.merge(chat, 1L, Long::sum);
+        }
+        entries.keySet().removeIf(key -> {
+            boolean stale = event.commands().contains(key.command)
+                    || (null != chat && key.chat == chat.chatId() && key.bot.equals(chat.botId()));
+            if (stale) {
+                invalidated.increment();
+            }
+            return stale;
+        });
+    }
+
+    /**
+     * @return how many responses are kept, and how many lookups found them
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", entries.size());
+        stats.put("maxSize", config.responsesSize());
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("evicted", evicted.sum());
+        stats.put("invalidated", invalidated.sum());
+        return stats;
+    }
+
+    // expired responses go first, if none expired any response is dropped
+    private void makeRoom() {
+        long now = System.nanoTime();
+        entries.values().removeIf(entry -> {
+            boolean expired = entry.expiresAt - now <= 0;
+            if (expired) {
+                evicted.increment();
+            }
+            return expired;
+        });
+        Iterator<Key> keys = entries.keySet().iterator();
+        while (entries.size() >= config.responsesSize() && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+            evicted.increment();
+        }
+    }
+
+    private static String normalize(String args) {
+        StringBuilder normalized = new StringBuilder(args.length());
+        for (int i = 0; i < args.length(); i++) {
+            char c = args.charAt(i);
+            if (Character.isWhitespace(c)) {
+                if (normalized.length() > 0 && normalized.charAt(normalized.length() - 1) != ' ') {
+                    normalized.append(' ');
+                }
+            } else {
+                normalized.append(c);
+            }
+        }
+        int end = normalized.length();
+        return end > 0 && normalized.charAt(end - 1) == ' ' ? normalized.substring(0, end - 1) : normalized.toString();
+    }
+
+    /**
+     * Identifies a response, the generation it was looked up at is not part of its identity.
+     */
+    public static final class Key {
+
+        private final String bot;
+        private final String command;
+        private final String args;
+        private final String locale;
+        private final long chat;
+        private final long chatVersion;
+        private final long generation;
+
+        private Key(String bot, String command, String args, String locale, long chat, long chatVersion,
+                    long generation) {
+            this.bot = bot;
+            this.command = command;
+            this.args = args;
+            this.locale = locale;
+            this.chat = chat;
+            this.chatVersion = chatVersion;
+            this.generation = generation;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return chat == key.chat && chatVersion == key.chatVersion && bot.equals(key.bot)
+                    && command.equals(key.command) && args.equals(key.args) && Objects.equals(locale, key.locale);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(bot, command, args, locale, chat, chatVersion);
+        }
+    }
+
+    private static final class Entry {
+
+        private final String response;
+        private final long expiresAt;
+
+        private Entry(String response, long expiresAt) {
+            this.response = response;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -24,6 +24,8 @@
 
 package xyz.rebasing.rebot.telegram.api.polling;
 
+import java.util.concurrent.CompletionStage;
+
 import xyz.rebasing.rebot.api.domain.MessageUpdate;
 
 public interface ReBotLongPoolingBot {
@@ -31,7 +33,8 @@ public interface ReBotLongPoolingBot {
     /**
      * On each update received, all classes that implements this interface will be notified
      * @param update Telegram Update
+     * @return completes once the update was processed, only then it is committed and not delivered again
      */
-    void onUpdateReceived(MessageUpdate update);
+    CompletionStage<Void> onUpdateReceived(MessageUpdate update);
 
 }
\ No newline at end of file
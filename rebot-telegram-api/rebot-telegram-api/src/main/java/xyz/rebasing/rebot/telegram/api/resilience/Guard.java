@@ -0,0 +1,194 @@
+/*
+ *   The MIT License (MIT)
+ *
+ *   Copyright (c) 2017 Rebasing.xyz ReBot
+ *
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy of
+ *   this software and associated documentation files (the "Software"), to deal in
+ *   the Software without restriction, including without limitation the rights to
+ *   use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ *   the Software, and to permit persons to whom the Software is furnished to do so,
+ *   subject to the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ *   FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ *   COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ *   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package xyz.rebasing.rebot.telegram.api.resilience;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bulkhead and circuit breaker of a single command or plugin.
+ * <p>
+ * The bulkhead limits how many calls run at the same time, a call holds its permit until it really ends, even after
+ * the caller gave up waiting, so an upstream that hangs can't take more threads than its limit. The circuit breaker
+ * opens after a number of consecutive failures or timeouts and rejects the calls while open, after a while a single
+ * trial call is let through, closing the breaker if it succeeds or opening it again otherwise.
+ */
+public class Guard {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final String name;
+    private final int concurrency;
+    private final long timeout;
+    private final int failureThreshold;
+    private final long openMillis;
+    private final Semaphore permits;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures = 0;
+    private long openedAt = 0L;
+    private boolean trialInFlight = false;
+
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder shortCircuited = new LongAdder();
+
+    Guard(String name, int concurrency, long timeout, int failureThreshold, long openMillis) {
+        this.name = name;
+        this.concurrency = concurrency;
+        this.timeout = timeout;
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+        this.permits = new Semaphore(concurrency);
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * @return how long, in milliseconds, the caller waits for a call before giving up on it
+     */
+    public long timeout() {
+        return timeout;
+    }
+
+    /**
+     * @return a permit to make a call, or null if the breaker is open or the concurrency limit was reached
+     */
+    public Permit tryAcquire() {
+        if (!allowed()) {
+            shortCircuited.increment();
+            return null;
+        }
+        if (!permits.tryAcquire()) {
+            rejected.increment();
+            synchronized (this) {
+                // the trial call was not made, let the next one try
+                if (state == State.HALF_OPEN) {
+                    trialInFlight = false;
+                }
+            }
+            return null;
+        }
+        return new Permit();
+    }
+
+    public synchronized void succeeded() {
+        succeeded.increment();
+        consecutiveFailures = 0;
+        state = State.CLOSED;
+        trialInFlight = false;
+    }
+
+    public void failed() {
+        failed.increment();
+        failure();
+    }
+
+    public void timedOut() {
+        timedOut.increment();
+        failure();
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+
+    /**
+     * @return the breaker state and how many calls succeeded, failed, timed out or were rejected by the bulkhead or
+     * the open breaker
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("state", state().name());
+        stats.put("inFlight", concurrency - permits.availablePermits());
+        stats.put("concurrency", concurrency);
+        stats.put("timeoutMs", timeout);
+        stats.put("succeeded", succeeded.sum());
+        stats.put("failed", failed.sum());
+        stats.put("timedOut", timedOut.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("shortCircuited", shortCircuited.sum());
+        return stats;
+    }
+
+    private synchronized boolean allowed() {
+        switch (state) {
+            case OPEN:
+                if (System.currentTimeMillis() - openedAt < openMillis) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                trialInFlight = true;
+                return true;
+            case HALF_OPEN:
+                if (trialInFlight) {
+                    return false;
+                }
+                trialInFlight = true;
+                return true;
+            default:
+                return true;
+        }
+    }
+
+    private synchronized void failure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+            trialInFlight = false;
+        }
+    }
+
+    /**
+     * Bulkhead slot taken by a call, held until the call really ends.
+     */
+    public class Permit {
+
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        private Permit() {
+        }
+
+        /**
+         * Gives the slot back, only the first call has any effect.
+         */
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                permits.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ *   The MIT License (MIT)
+ *
+ *   Copyright (c) 2017 Rebasing.xyz ReBot
+ *
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy of
+ *   this software and associated documentation files (the "Software"), to deal in
+ *   the Software without restriction, including without limitation the rights to
+ *   use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ *   the Software, and to permit persons to whom the Software is furnished to do so,
+ *   subject to the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ *   FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ *   COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ *   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package xyz.rebasing.rebot.telegram.api.resilience;
+
+import java.lang.invoke.MethodHandles;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.jboss.logging.Logger;
+import xyz.rebasing.rebot.api.conf.BotConfig;
+import xyz.rebasing.rebot.api.conf.BotIdentity;
+
+/**
+ * Keeps a {@link Guard} per command and plugin, so an external api that hangs or keeps failing only degrades the
+ * command or plugin that depends on it instead of holding the lanes of the whole bot.
+ */
+@ApplicationScoped
+public class Resilience {
+
+    private final Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
+
+    @Inject
+    BotConfig config;
+
+    private final Map<String, Guard> guards = new ConcurrentHashMap<>();
+    private final AtomicInteger threads = new AtomicInteger();
+    // the guards bound how many calls of each command run at the same time, so the pool doesn't need a bound.
+    private final ExecutorService commandService = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "rebot-command-" + threads.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final ScheduledExecutorService timeouts = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "rebot-resilience-timer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @PreDestroy
+    void destroy() {
+        commandService.shutdownNow();
+        timeouts.shutdownNow();
+    }
+
+    /**
+     * @param name command or plugin name, the leading slash of commands is ignored
+     * @return the guard of the given command or plugin
+     */
+    public Guard guard(String name) {
+        String key = name.startsWith("/") ? name.substring(1) : name;
+        return guards.computeIfAbsent(key, k -> new Guard(k,
+                                                          config.resilienceConcurrency(k),
+                                                          config.resilienceTimeout(k),
+                                                          config.resilienceFailures(),
+                                                          TimeUnit.SECONDS.toMillis(config.resilienceOpen())));
+    }
+
+    /**
+     * @param bot bot the tasks run on behalf of
+     * @return executor for the blocking work of the commands
+     */
+    public Executor commandExecutor(BotIdentity bot) {
+        return task -> commandService.execute(() -> config.runAs(bot, task));
+    }
+
+    /**
+     * Same as {@link #callAsync(String, Executor, long, Function, Supplier)} waiting up to the guard timeout.
+     */
+    public <T> CompletionStage<T> callAsync(String name, Executor executor,
+                                            Function<Executor, CompletionStage<T>> call, Supplier<T> fallback) {
+        return callAsync(name, executor, guard(name).timeout(), call, fallback);
+    }
+
+    /**
+     * Calls a command or plugin through its guard without waiting for it. The returned stage completes with the
+     * call result, or with the fallback when the call is rejected, fails or doesn't complete within the timeout.
+     * The stage may complete on a timer thread, dependent work should run on an executor.
+     *
+     * @param name     command or plugin name
+     * @param executor where the blocking work of the call can run
+     * @param timeout  milliseconds to wait for the call
+     * @param call     starts the call on the given executor
+     * @param fallback result used when the call is rejected, fails or times out
+     * @return the call result or the fallback
+     */
+    public <T> CompletionStage<T> callAsync(String name, Executor executor, long timeout,
+                                            Function<Executor, CompletionStage<T>> call, Supplier<T> fallback) {
+        Guard guard = guard(name);
+        Guard.Permit permit = guard.tryAcquire();
+        if (null == permit) {
+            log.debugv("Call to {0} rejected, breaker is {1}", guard.name(), guard.state());
+            return CompletableFuture.completedFuture(fallback.get());
+        }
+        CompletionStage<T> stage;
+        try {
+            stage = call.apply(executor);
+        } catch (RejectedExecutionException e) {
+            permit.release();
+            log.warnv("Call to {0} rejected, all threads are busy", guard.name());
+            return CompletableFuture.completedFuture(fallback.get());
+        } catch (final RuntimeException e) {
+            stage = CompletableFuture.failedFuture(e);
+        }
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+        ScheduledFuture<?> timer = timeouts.schedule(() -> {
+            if (result.complete(fallback.get())) {
+                // the call keeps its permit until it really ends
+                guard.timedOut();
+                log.warnv("{0} did not reply within {1}ms", guard.name(), timeout);
+            }
+        }, timeout, TimeUnit.MILLISECONDS);
+        stage.whenComplete((value, error) -> {
+            permit.release();
+            timer.cancel(false);
+            if (null == error) {
+                if (result.complete(value)) {
+                    guard.succeeded();
+                }
+            } else if (result.complete(fallback.get())) {
+                guard.failed();
+                log.warnv("{0} failed: {1}", guard.name(), error.getMessage());
+            }
+        });
+        return result;
+    }
+
+    /**
+     * @return the state of each guard, by command or plugin name
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        new TreeMap<>(guards).forEach((name, guard) -> stats.put(name, guard.stats()));
+        return stats;
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ *   The MIT License (MIT)
+ *
+ *   Copyright (c) 2017 Rebasing.xyz ReBot
+ *
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy of
+ *   this software and associated documentation files (the "Software"), to deal in
+ *   the Software without restriction, including without limitation the rights to
+ *   use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ *   the Software, and to permit persons to whom the Software is furnished to do so,
+ *   subject to the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ *   FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ *   COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ *   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package xyz.rebasing.rebot.telegram.api.resilience;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import xyz.rebasing.rebot.api.conf.BotConfig;
+
+/**
+ * Limits how often commands are executed, so a user repeating a command can't burn the quota of the external api
+ * behind it nor the Telegram send budget of the bot. Each call takes a token from the bucket of the user in the chat
+ * and from the bucket of the command in the chat, buckets refill continuously at their rate up to their burst.
+ * <p>
+ * A bucket is a single timestamp updated through compare and set, the time at which it will be full again, so
+ * buckets that are full are dropped without losing anything and idle chats don't hold memory.
+ * <p>
+ * The warm-up updates are always allowed and take no tokens.
+ */
+@ApplicationScoped
+public class Throttle {
+
+    private static final long SWEEP_INTERVAL = TimeUnit.MINUTES.toNanos(1);
+
+    /**
+     * Result of a call, a throttled caller is only warned once until one of its calls is allowed again.
+     */
+    public enum Decision {
+        ALLOWED,
+        WARN,
+        SILENT
+    }
+
+    @Inject
+    BotConfig config;
+
+    private final Map<Key, Bucket> buckets = new ConcurrentHashMap<>();
+    private final Map<String, Limit> commandLimits = new ConcurrentHashMap<>();
+    private final AtomicLong lastSweep = new AtomicLong(System.nanoTime());
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder warned = new LongAdder();
+    private Limit userLimit;
+
+    @PostConstruct
+    void init() {
+        userLimit = Limit.of(config.throttleUserRate(), config.throttleUserBurst());
+    }
+
+    /**
+     * Takes a token from the user and the command buckets, the command bucket is untouched when the user one is empty.
+     *
+     * @param chatId  chat the command was sent to
+     * @param userId  user that sent it, 0 if unknown
+     * @param command command name, with the leading slash
+     * @return if the command can be executed, or if the caller should be warned otherwise
+     */
+    public Decision acquire(long chatId, long userId, String command) {
+        if (config.isWarmingUp()) {
+            return Decision.ALLOWED;
+        }
+        long now = System.nanoTime();
+        sweep(now);
+        Decision decision = Decision.ALLOWED;
+        if (userId != 0) {
+            decision = acquire(new Key(chatId, userId), userLimit, now);
+        }
+        if (decision == Decision.ALLOWED) {
+            String name = command.startsWith("/") ? command.substring(1) : command;
+            Limit limit = commandLimits.computeIfAbsent(name, n -> Limit.of(config.throttleCommandRate(n),
+                                                                            config.throttleCommandBurst(n)));
+            decision = acquire(new Key(chatId, name), limit, now);
+        }
+        if (decision == Decision.ALLOWED) {
+            allowed.increment();
+        } else {
+            throttled.increment();
+            if (decision == Decision.WARN) {
+                warned.increment();
+            }
+        }
+        return decision;
+    }
+
+    /**
+     * @return how many calls were allowed, throttled and warned, and how many buckets are not full
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("buckets", buckets.size());
+        stats.put("allowed", allowed.sum());
+        stats.put("throttled", throttled.sum());
+        stats.put("warned", warned.sum());
+        return stats;
+    }
+
+    private Decision acquire(Key key, Limit limit, long now) {
+        if (limit == Limit.NONE) {
+            return Decision.ALLOWED;
+        }
+        Bucket bucket = buckets.computeIfAbsent(key, k -> new Bucket(now));
+        if (bucket.tryTake(limit, now)) {
+            bucket.warned.set(false);
+            return Decision.ALLOWED;
+        }
+        return bucket.warned.compareAndSet(false, true) ? Decision.WARN : Decision.SILENT;
+    }
+
+    // full buckets are the same as missing ones, at most one caller sweeps per interval
+    private void sweep(long now) {
+        long last = lastSweep.get();
+        if (now - last >= SWEEP_INTERVAL && lastSweep.compareAndSet(last, now)) {
+            buckets.values().removeIf(bucket -> bucket.isFull(now));
+        }
+    }
+
+    private static final class Limit {
+
+        // no limit at all
+        private static final Limit NONE = new Limit(0, 0);
+
+        // nanoseconds between two tokens, and how far ahead of now the bucket may go
+        private final long interval;
+        private final long tolerance;
+
+        private Limit(long interval, long tolerance) {
+            this.interval = interval;
+            this.tolerance = tolerance;
+        }
+
+        /**
+         * @param rate  tokens per minute, 0 means unlimited
+         * @param burst calls allowed in a row when the bucket is full
+         */
+        private static Limit of(int rate, int burst) {
+            if (rate <= 0) {
+                return NONE;
+            }
+            long interval = TimeUnit.MINUTES.toNanos(1) / rate;
+            return new Limit(interval, interval * (Math.max(1, burst) - 1));
+        }
+    }
+
+    private static final class Bucket {
+
+        // when the bucket is full again, each token taken moves it one interval ahead
+        private final AtomicLong full;
+        private final AtomicBoolean warned = new AtomicBoolean();
+
+        private Bucket(long now) {
+            this.full = new AtomicLong(now);
+        }
+
+        private boolean tryTake(Limit limit, long now) {
+            while (true) {
+                long current = full.get();
+                long next = (current - now > 0 ? current : now) + limit.interval;
+                if (next - now > limit.tolerance + limit.interval) {
+                    return false;
+                }
+                if (full.compareAndSet(current, next)) {
+                    return true;
+                }
+            }
+        }
+
+        private boolean isFull(long now) {
+            return full.get() - now <= 0;
+        }
+    }
+
+    private static final class Key {
+
+        private final long chat;
+        // the user id or the command name
+        private final Object subject;
+
+        private Key(long chat, Object subject) {
+            this.chat = chat;
+            this.subject = subject;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return chat == key.chat && subject.equals(key.subject);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(chat, subject);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ *   The MIT License (MIT)
+ *
+ *   Copyright (c) 2017 Rebasing.xyz ReBot
+ *
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy of
+ *   this software and associated documentation files (the "Software"), to deal in
+ *   the Software without restriction, including without limitation the rights to
+ *   use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ *   the Software, and to permit persons to whom the Software is furnished to do so,
+ *   subject to the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ *   FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ *   COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ *   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package xyz.rebasing.rebot.telegram.api.settings;
+
+import java.util.Objects;
+
+/**
+ * Identifies a chat as seen by one bot, a group may have several of the bots served by this process and each of them
+ * keeps its own settings in it.
+ */
+public final class ChatKey {
+
+    private final String botId;
+    private final long chatId;
+
+    public ChatKey(String botId, long chatId) {
+        this.botId = botId;
+        this.chatId = chatId;
+    }
+
+    public String botId() {
+        return botId;
+    }
+
+    public long chatId() {
+        return chatId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ChatKey)) {
+            return false;
+        }
+        ChatKey key = (ChatKey) o;
+        return chatId == key.chatId && botId.equals(key.botId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(botId, chatId);
+    }
+
+    @Override
+    public String toString() {
+        return botId + "/" + chatId;
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ *   The MIT License (MIT)
+ *
+ *   Copyright (c) 2017 Rebasing.xyz ReBot
+ *
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy of
+ *   this software and associated documentation files (the "Software"), to deal in
+ *   the Software without restriction, including without limitation the rights to
+ *   use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ *   the Software, and to permit persons to whom the Software is furnished to do so,
+ *   subject to the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ *   FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ *   COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ *   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package xyz.rebasing.rebot.telegram.api.settings;
+
+import java.util.BitSet;
+
+/**
+ * Immutable snapshot of the settings of a chat, a change produces a new snapshot so the readers never see it
+ * half applied. The disabled commands and plugins are a bitmask indexed by their {@link CommandOrdinals}.
+ */
+public final class ChatSettings {
+
+    private final String locale;
+    private final boolean botEnabled;
+    private final BitSet disabledCommands;
+
+    public ChatSettings(String locale, boolean botEnabled, BitSet disabledCommands) {
+        this.locale = locale;
+        this.botEnabled = botEnabled;
+        this.disabledCommands = (BitSet) disabledCommands.clone();
+    }
+
+    public String locale() {
+        return locale;
+    }
+
+    public boolean isBotEnabled() {
+        return botEnabled;
+    }
+
+    /**
+     * @param ordinal ordinal of the command or plugin
+     * @return true unless the command or plugin was disabled in the chat
+     */
+    public boolean isCommandEnabled(int ordinal) {
+        return !disabledCommands.get(ordinal);
+    }
+
+    /**
+     * @return a copy of the bitmask of the commands and plugins disabled in the chat
+     */
+    public BitSet disabledCommands() {
+        return (BitSet) disabledCommands.clone();
+    }
+
+    public ChatSettings withLocale(String locale) {
+        return new ChatSettings(locale, botEnabled, disabledCommands);
+    }
+
+    public ChatSettings withBotEnabled(boolean botEnabled) {
+        return new ChatSettings(locale, botEnabled, disabledCommands);
+    }
+
+    /**
+     * @param ordinal ordinal of the command or plugin
+     * @param enabled the new state
+     * @return a copy of this snapshot with the given command enabled or disabled
+     */
+    public ChatSettings withCommand(int ordinal, boolean enabled) {
+        BitSet disabled = disabledCommands();
+        disabled.set(ordinal, !enabled);
+        return new ChatSettings(locale, botEnabled, disabled);
+    }
+
+    @Override
+    public String toString() {
+        return "ChatSettings{" +
+                "locale='" + locale + '\'' +
+                ", botEnabled=" + botEnabled +
+                ", disabledCommands=" + disabledCommands +
+                '}';
+    }
+}
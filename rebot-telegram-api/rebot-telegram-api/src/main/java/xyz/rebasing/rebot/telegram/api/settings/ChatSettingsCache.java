@@ -0,0 +1,125 @@
+/*
+ *   The MIT License (MIT)
+ *
+ *   Copyright (c) 2017 Rebasing.xyz ReBot
+ *
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy of
+ *   this software and associated documentation files (the "Software"), to deal in
+ *   the Software without restriction, including without limitation the rights to
+ *   use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ *   the Software, and to permit persons to whom the Software is furnished to do so,
+ *   subject to the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ *   FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ *   COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ *   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package xyz.rebasing.rebot.telegram.api.settings;
+
+import java.lang.invoke.MethodHandles;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.jboss.logging.Logger;
+import xyz.rebasing.rebot.api.conf.BotConfig;
+import xyz.rebasing.rebot.api.domain.Message;
+import xyz.rebasing.rebot.service.persistence.domain.ChatState;
+import xyz.rebasing.rebot.service.persistence.repository.ApiRepository;
+
+/**
+ * Keeps the settings of the chats in memory, so processing a message doesn't query the database to find the chat
+ * locale, whether the bot is enabled and which commands and plugins were disabled. Settings are kept per bot, a group
+ * may have several of the bots served by this process. The settings of a chat are loaded the first time one of its
+ * messages is processed, chats without a locale get one from the {@link LocaleResolver}.
+ * They are kept up to date by the administrative commands changing them, which write to the database first and then
+ * {@link #update(String, long, UnaryOperator)} the snapshot.
+ * <p>
+ * The snapshot is only refreshed by this process, changes made to the database by other means need a restart. The
+ * settings of the warm-up chat are loaded every time and never kept.
+ */
+@ApplicationScoped
+public class ChatSettingsCache {
+
+    private final Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
+
+    @Inject
+    BotConfig config;
+
+    @Inject
+    ApiRepository apiRepository;
+
+    @Inject
+    LocaleResolver localeResolver;
+
+    private final Map<ChatKey, ChatSettings> chats = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param message message received in the chat, used to resolve the locale the first time the chat is seen
+     * @return the settings of the chat the message was sent to, for the bot that received it, loaded from the database
+     * if not known yet
+     */
+    public ChatSettings get(Message message) {
+        ChatKey key = new ChatKey(config.botUserId(), message.getChat().getId());
+        if (config.isWarmingUp()) {
+            return load(key, message);
+        }
+        ChatSettings settings = chats.get(key);
+        if (null != settings) {
+            hits.increment();
+            return settings;
+        }
+        misses.increment();
+        // loading holds the entry, so a concurrent update of the same chat waits for it instead of being lost
+        return chats.computeIfAbsent(key, k -> load(k, message));
+    }
+
+    /**
+     * Applies a change already written to the database, chats not loaded yet will read it from there.
+     *
+     * @param botId  user id of the bot whose settings changed
+     * @param chatId chat id
+     * @param change the change
+     */
+    public void update(String botId, long chatId, UnaryOperator<ChatSettings> change) {
+        ChatKey key = new ChatKey(botId, chatId);
+        ChatSettings settings = chats.computeIfPresent(key, (k, current) -> change.apply(current));
+        log.debugv("Settings of chat {0} are now {1}", key, settings);
+    }
+
+    /**
+     * @return how many chats are known and how many lookups found them
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("chats", chats.size());
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("locales", localeResolver.stats());
+        return stats;
+    }
+
+    private ChatSettings load(ChatKey key, Message message) {
+        log.debugv("Loading settings of chat {0}", key);
+        Optional<ChatState> chat = apiRepository.findChat(key.botId(), key.chatId());
+        return new ChatSettings(chat.map(ChatState::getLocale).orElseGet(() -> localeResolver.resolve(message)),
+                                chat.map(ChatState::isBotEnabled).orElse(true),
+                                chat.map(ChatState::getDisabledCommands).orElseGet(BitSet::new));
+    }
+}
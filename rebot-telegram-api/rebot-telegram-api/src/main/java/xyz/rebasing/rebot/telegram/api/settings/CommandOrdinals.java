@@ -0,0 +1,105 @@
+/*
+ *   The MIT License (MIT)
+ *
+ *   Copyright (c) 2017 Rebasing.xyz ReBot
+ *
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy of
+ *   this software and associated documentation files (the "Software"), to deal in
+ *   the Software without restriction, including without limitation the rights to
+ *   use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ *   the Software, and to permit persons to whom the Software is furnished to do so,
+ *   subject to the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ *   FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ *   COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ *   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package xyz.rebasing.rebot.telegram.api.settings;
+
+import java.lang.invoke.MethodHandles;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.inject.Instance;
+import javax.inject.Inject;
+
+import org.jboss.logging.Logger;
+import xyz.rebasing.rebot.api.spi.CommandProvider;
+import xyz.rebasing.rebot.api.spi.PluginProvider;
+import xyz.rebasing.rebot.service.persistence.repository.ApiRepository;
+
+/**
+ * Stable ordinal of each command and plugin, the position of its bit in the disabled commands bitmask of the chats.
+ * The registered commands and plugins get theirs when the bean is created, names not known yet, e.g. a command
+ * disabled before being installed, get the next free one the first time they are used.
+ */
+@ApplicationScoped
+public class CommandOrdinals {
+
+    private final Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
+
+    @Inject
+    ApiRepository apiRepository;
+
+    @Inject
+    Instance<CommandProvider> commands;
+
+    @Inject
+    Instance<PluginProvider> plugins;
+
+    private final Map<String, Integer> ordinals = new ConcurrentHashMap<>();
+    // commands first, then plugins, the order /list replies with
+    private List<String> registeredNames;
+    private BitSet registered;
+
+    @PostConstruct
+    void load() {
+        ordinals.putAll(apiRepository.commandOrdinals());
+        registeredNames = Stream.concat(commands.stream().map(c -> c.name().replace("/", "")),
+                                        plugins.stream().map(PluginProvider::name))
+                .distinct()
+                .collect(Collectors.toList());
+        BitSet bits = new BitSet();
+        registeredNames.forEach(name -> bits.set(of(name)));
+        registered = bits;
+        log.debugv("Command ordinals: {0}", ordinals);
+    }
+
+    /**
+     * @param name command name without the leading slash or plugin name
+     * @return the ordinal of the given command or plugin
+     */
+    public int of(String name) {
+        return ordinals.computeIfAbsent(name, apiRepository::commandOrdinal);
+    }
+
+    /**
+     * @return the bits of every registered command and plugin
+     */
+    public BitSet registered() {
+        return (BitSet) registered.clone();
+    }
+
+    /**
+     * @param bits ordinals of commands or plugins
+     * @return the names of the registered commands and plugins whose bits are set, in registration order
+     */
+    public List<String> names(BitSet bits) {
+        return registeredNames.stream()
+                .filter(name -> bits.get(ordinals.get(name)))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ *   The MIT License (MIT)
+ *
+ *   Copyright (c) 2017 Rebasing.xyz ReBot
+ *
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy of
+ *   this software and associated documentation files (the "Software"), to deal in
+ *   the Software without restriction, including without limitation the rights to
+ *   use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ *   the Software, and to permit persons to whom the Software is furnished to do so,
+ *   subject to the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ *   FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ *   COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ *   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package xyz.rebasing.rebot.telegram.api.settings;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.jboss.logging.Logger;
+import xyz.rebasing.rebot.api.conf.BotConfig;
+import xyz.rebasing.rebot.api.domain.From;
+import xyz.rebasing.rebot.api.domain.Message;
+import xyz.rebasing.rebot.api.i18n.SupportedLocales;
+import xyz.rebasing.rebot.service.persistence.domain.ChatLocale;
+import xyz.rebasing.rebot.service.persistence.repository.LocaleRepository;
+
+/**
+ * Resolves the locale of the chats without one defined, loaded by the {@link ChatSettingsCache} which keeps the result.
+ * They get the locale matching the language_code of the user who sent the first message, or en_US, which is stored in
+ * background together with the other chats seen for the first time, instead of being written while the message is
+ * processed.
+ */
+@ApplicationScoped
+public class LocaleResolver {
+
+    private final Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
+
+    @Inject
+    BotConfig config;
+
+    @Inject
+    LocaleRepository localeRepository;
+
+    private final Map<ChatKey, ChatLocale> pending = new ConcurrentHashMap<>();
+    private final LongAdder persisted = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "rebot-locale-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    @SuppressWarnings("FutureReturnValueIgnored")
+    void start() {
+        writer.scheduleWithFixedDelay(this::flush, config.localeFlushInterval(), config.localeFlushInterval(),
+                                      TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(config.localeFlushInterval(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    /**
+     * @param message message received in a chat without a locale defined
+     * @return the locale to be used by the chat, stored in background
+     */
+    public String resolve(Message message) {
+        ChatKey key = new ChatKey(config.botUserId(), message.getChat().getId());
+        String fallback = Optional.ofNullable(message.getFrom())
+                .map(From::getLanguageCode)
+                .flatMap(SupportedLocales::fromLanguageCode)
+                .orElse(SupportedLocales.en_us)
+                .localeName();
+        // the warm-up chat is not stored
+        if (!config.isWarmingUp()) {
+            pending.putIfAbsent(key, new ChatLocale(key.botId(), key.chatId(), message.getChat().getTitle(), fallback));
+        }
+        log.debugv("Chat {0} has no locale defined, using {1}", key, fallback);
+        return fallback;
+    }
+
+    /**
+     * @return the number of chats waiting for their locale to be stored, stored and failed batches
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("pending", pending.size());
+        stats.put("persisted", persisted.sum());
+        stats.put("failures", failures.sum());
+        return stats;
+    }
+
+    private void flush() {
+        while (!pending.isEmpty()) {
+            List<ChatLocale> batch = new ArrayList<>();
+            Iterator<ChatLocale> it = pending.values().iterator();
+            while (it.hasNext() && batch.size() < config.localeFlushBatch()) {
+                batch.add(it.next());
+            }
+            try {
+                localeRepository.persistDefaultLocales(batch);
+                persisted.add(batch.size());
+                batch.forEach(chatLocale -> pending.remove(new ChatKey(chatLocale.getBotId(), chatLocale.getChatId()),
+                                                           chatLocale));
+            } catch (final Exception e) {
+                // kept pending, retried on the next run
+                failures.increment();
+                log.warnv("Unable to store the locale of {0} chats: {1}", batch.size(), e.getMessage());
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ *   The MIT License (MIT)
+ *
+ *   Copyright (c) 2017 Rebasing.xyz ReBot
+ *
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy of
+ *   this software and associated documentation files (the "Software"), to deal in
+ *   the Software without restriction, including without limitation the rights to
+ *   use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ *   the Software, and to permit persons to whom the Software is furnished to do so,
+ *   subject to the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ *   FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ *   COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ *   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package xyz.rebasing.rebot.telegram.api.stats;
+
+import java.lang.invoke.MethodHandles;
+import java.util.Map;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.jboss.logging.Logger;
+import xyz.rebasing.rebot.telegram.api.UpdateDispatcher;
+import xyz.rebasing.rebot.telegram.api.UpdatesReceiver;
+import xyz.rebasing.rebot.telegram.api.WarmUp;
+import xyz.rebasing.rebot.telegram.api.message.IncomeMessageProcessor;
+import xyz.rebasing.rebot.telegram.api.message.PluginFanOut;
+import xyz.rebasing.rebot.telegram.api.message.ResponseCache;
+import xyz.rebasing.rebot.telegram.api.resilience.Resilience;
+import xyz.rebasing.rebot.telegram.api.resilience.Throttle;
+import xyz.rebasing.rebot.telegram.api.settings.ChatSettingsCache;
+
+/**
+ * Exposes the internal counters of the bot, useful to follow how the updates are flowing.
+ */
+@Path("/stats")
+@ApplicationScoped
+public class StatsEndpoint {
+
+    private final Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Inject
+    UpdatesReceiver updatesReceiver;
+
+    @Inject
+    UpdateDispatcher dispatcher;
+
+    @Inject
+    IncomeMessageProcessor processor;
+
+    @Inject
+    PluginFanOut pluginFanOut;
+
+    @Inject
+    Resilience resilience;
+
+    @Inject
+    ResponseCache responseCache;
+
+    @Inject
+    Throttle throttle;
+
+    @Inject
+    WarmUp warmUp;
+
+    @Inject
+    ChatSettingsCache chatSettings;
+
+    @GET
+    @Path("updates")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response updates() {
+        return toJson(updatesReceiver.stats());
+    }
+
+    @GET
+    @Path("lanes")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response lanes() {
+        Map<String, Object> stats = dispatcher.stats();
+        stats.put("pendingMessages", processor.pending());
+        return toJson(stats);
+    }
+
+    @GET
+    @Path("plugins")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response plugins() {
+        return toJson(pluginFanOut.stats());
+    }
+
+    @GET
+    @Path("resilience")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response resilience() {
+        return toJson(resilience.stats());
+    }
+
+    @GET
+    @Path("responses")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response responses() {
+        return toJson(responseCache.stats());
+    }
+
+    @GET
+    @Path("throttle")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response throttle() {
+        return toJson(throttle.stats());
+    }
+
+    @GET
+    @Path("settings")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response settings() {
+        return toJson(chatSettings.stats());
+    }
+
+    @GET
+    @Path("warmup")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response warmUp() {
+        return toJson(warmUp.stats());
+    }
+
+    private Response toJson(Map<String, Object> stats) {
+        try {
+            return Response.ok(objectMapper.writeValueAsString(stats)).build();
+        } catch (final Exception e) {
+            log.warnv("Unable to serialize stats: {0}", e.getMessage());
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+}
@@ -34,15 +34,14 @@ public abstract class StringUtils {
      * @return the formatted string
      */
     public static String concat(String... parameters) {
-        String result = "";
+        StringBuilder result = new StringBuilder();
         for (int i = 1; i < parameters.length; i++) {
-            if (parameters.length > i + 1) {
-                result += parameters[i] + " ";
-            } else {
-                result += parameters[i];
+            if (i > 1) {
+                result.append(' ');
             }
+            result.append(parameters[i]);
         }
-        return result.toLowerCase(new Locale("en", "US"));
+        return result.toString().toLowerCase(Locale.US);
     }
 
 
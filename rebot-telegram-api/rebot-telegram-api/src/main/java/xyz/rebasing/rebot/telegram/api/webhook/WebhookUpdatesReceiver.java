@@ -0,0 +1,121 @@
+/*
+ *   The MIT License (MIT)
+ *
+ *   Copyright (c) 2017 Rebasing.xyz ReBot
+ *
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy of
+ *   this software and associated documentation files (the "Software"), to deal in
+ *   the Software without restriction, including without limitation the rights to
+ *   use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ *   the Software, and to permit persons to whom the Software is furnished to do so,
+ *   subject to the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ *   FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ *   COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ *   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package xyz.rebasing.rebot.telegram.api.webhook;
+
+import java.lang.invoke.MethodHandles;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.jboss.logging.Logger;
+import xyz.rebasing.rebot.api.conf.BotConfig;
+import xyz.rebasing.rebot.api.conf.BotIdentity;
+import xyz.rebasing.rebot.api.domain.MessageUpdate;
+import xyz.rebasing.rebot.telegram.api.UpdateDispatcher;
+
+/**
+ * Receives the updates pushed by Telegram when the bot runs with <b>xyz.rebasing.rebot.telegram.ingress=webhook</b>.
+ * Telegram waits for the response before delivering the next update to the same bot, so the update is handed off
+ * to the chat lanes of the {@link UpdateDispatcher} and the call is answered right away, the call only waits when
+ * the lane is full.
+ * The default bot receives its updates on /telegram/webhook, the other configured bots on /telegram/webhook/{name}.
+ */
+@Path("/telegram/webhook")
+@ApplicationScoped
+public class WebhookUpdatesReceiver {
+
+    private final Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
+
+    public static final String SECRET_TOKEN_HEADER = "X-Telegram-Bot-Api-Secret-Token";
+
+    @Inject
+    BotConfig config;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Inject
+    UpdateDispatcher dispatcher;
+
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    public Response receive(@HeaderParam(SECRET_TOKEN_HEADER) String secretToken, String body) {
+        return receive(config.bots().get(0), secretToken, body);
+    }
+
+    @POST
+    @Path("{bot}")
+    @Consumes(MediaType.APPLICATION_JSON)
+    public Response receive(@PathParam("bot") String bot, @HeaderParam(SECRET_TOKEN_HEADER) String secretToken, String body) {
+        return config.bot(bot)
+                .map(identity -> receive(identity, secretToken, body))
+                .orElseGet(() -> Response.status(Response.Status.NOT_FOUND).build());
+    }
+
+    private Response receive(BotIdentity bot, String secretToken, String body) {
+        if (!config.isWebhookIngress()) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+        if (!isAuthorized(secretToken)) {
+            log.warn("Webhook called with an invalid secret token, ignoring it.");
+            return Response.status(Response.Status.UNAUTHORIZED).build();
+        }
+        final MessageUpdate update;
+        try {
+            update = objectMapper.readValue(body, MessageUpdate.class);
+        } catch (final Exception e) {
+            log.warnv("Unable to parse the webhook update: {0}", e.getMessage());
+            return Response.status(Response.Status.BAD_REQUEST).build();
+        }
+        try {
+            dispatcher.dispatch(bot, update);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE).build();
+        }
+        return Response.ok().build();
+    }
+
+    /**
+     * Compares the received header in constant time with the configured secret, when no secret is configured
+     * every call is refused.
+     */
+    private boolean isAuthorized(String secretToken) {
+        return config.webhookSecret()
+                .map(secret -> null != secretToken && MessageDigest.isEqual(
+                        secret.getBytes(StandardCharsets.UTF_8),
+                        secretToken.getBytes(StandardCharsets.UTF_8)))
+                .orElse(false);
+    }
+}
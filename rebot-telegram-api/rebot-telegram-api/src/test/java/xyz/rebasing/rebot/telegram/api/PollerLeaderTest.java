@@ -0,0 +1,195 @@
+/*
+ *   The MIT License (MIT)
+ *
+ *   Copyright (c) 2017 Rebasing.xyz ReBot
+ *
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy of
+ *   this software and associated documentation files (the "Software"), to deal in
+ *   the Software without restriction, including without limitation the rights to
+ *   use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ *   the Software, and to permit persons to whom the Software is furnished to do so,
+ *   subject to the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ *   FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ *   COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ *   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package xyz.rebasing.rebot.telegram.api;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import xyz.rebasing.rebot.api.conf.BotConfig;
+import xyz.rebasing.rebot.api.conf.BotIdentity;
+import xyz.rebasing.rebot.service.persistence.repository.ApiRepository;
+
+public class PollerLeaderTest {
+
+    private static final BotIdentity BOT = new BotIdentity(BotIdentity.DEFAULT, "token", "1");
+    // the minimum lease, renewed every second and considered valid locally for two seconds
+    private static final int LEASE_SECONDS = 3;
+
+    private final AtomicLong clock = new AtomicLong();
+    private FakeLeases leases;
+    private List<String> events;
+
+    @Before
+    public void setUp() {
+        clock.set(TimeUnit.DAYS.toNanos(1));
+        leases = new FakeLeases();
+        events = new ArrayList<>();
+    }
+
+    @Test
+    public void testAcquire() {
+        PollerLeader leader = leader("node-a");
+        Assert.assertEquals(0L, leader.remaining(BOT));
+        leader.run();
+        Assert.assertEquals(Collections.singletonList("node-a acquired"), events);
+        Assert.assertEquals(2000L, leader.remaining(BOT));
+    }
+
+    @Test
+    public void testRenew() {
+        PollerLeader leader = leader("node-a");
+        leader.run();
+        advance(1000L);
+        Assert.assertEquals(1000L, leader.remaining(BOT));
+        leader.run();
+        // renewed without notifying the acquisition again
+        Assert.assertEquals(2000L, leader.remaining(BOT));
+        Assert.assertEquals(Collections.singletonList("node-a acquired"), events);
+    }
+
+    @Test
+    public void testExpiresWhileRenewalIsBlocked() {
+        PollerLeader leader = leader("node-a");
+        leader.run();
+        // the renewal is stuck on the database, polling stops once the local validity ran out
+        advance(2000L);
+        Assert.assertEquals(0L, leader.remaining(BOT));
+        // still before the database expires the lease
+        Assert.assertTrue(clock.get() < leases.validUntil.get(BOT.userId()));
+    }
+
+    @Test
+    public void testKeepsLeaseWhileDatabaseIsDown() {
+        PollerLeader leader = leader("node-a");
+        leader.run();
+        leases.down = true;
+        advance(1000L);
+        leader.run();
+        Assert.assertEquals(1000L, leader.remaining(BOT));
+        Assert.assertEquals(Collections.singletonList("node-a acquired"), events);
+
+        advance(1000L);
+        leader.run();
+        Assert.assertEquals(0L, leader.remaining(BOT));
+        Assert.assertEquals(List.of("node-a acquired", "node-a lost"), events);
+    }
+
+    @Test
+    public void testHandover() {
+        PollerLeader active = leader("node-a");
+        PollerLeader standby = leader("node-b");
+        active.run();
+        standby.run();
+        Assert.assertEquals(0L, standby.remaining(BOT));
+
+        // the active node stops renewing, the standby takes over once the lease expires on the database
+        advance(2000L);
+        standby.run();
+        Assert.assertEquals(0L, standby.remaining(BOT));
+        advance(1000L);
+        standby.run();
+        Assert.assertEquals(2000L, standby.remaining(BOT));
+        Assert.assertEquals(0L, active.remaining(BOT));
+
+        active.run();
+        Assert.assertEquals(List.of("node-a acquired", "node-b acquired", "node-a lost"), events);
+    }
+
+    @Test
+    public void testStopReleasesLease() {
+        PollerLeader active = leader("node-a");
+        PollerLeader standby = leader("node-b");
+        active.run();
+        active.stop();
+        Assert.assertEquals(0L, active.remaining(BOT));
+        standby.run();
+        Assert.assertEquals(List.of("node-a acquired", "node-a lost", "node-b acquired"), events);
+    }
+
+    private PollerLeader leader(String node) {
+        BotConfig config = new BotConfig() {
+            @Override
+            public List<BotIdentity> bots() {
+                return Collections.singletonList(BOT);
+            }
+
+            @Override
+            public String failoverNode() {
+                return node;
+            }
+
+            @Override
+            public int failoverLease() {
+                return LEASE_SECONDS;
+            }
+        };
+        return new PollerLeader(config, leases,
+                                bot -> events.add(node + " acquired"),
+                                bot -> events.add(node + " lost"),
+                                clock::get);
+    }
+
+    private void advance(long millis) {
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    /**
+     * Lease table timed by the same clock, standing for the database one.
+     */
+    private class FakeLeases extends ApiRepository {
+
+        private final Map<String, String> owners = new HashMap<>();
+        private final Map<String, Long> validUntil = new HashMap<>();
+        private boolean down;
+
+        @Override
+        public boolean acquireLease(String botId, String owner, long ttlMillis) {
+            if (down) {
+                throw new IllegalStateException("database unavailable");
+            }
+            String current = owners.get(botId);
+            if (null != current && !current.equals(owner) && validUntil.get(botId) > clock.get()) {
+                return false;
+            }
+            owners.put(botId, owner);
+            validUntil.put(botId, clock.get() + TimeUnit.MILLISECONDS.toNanos(ttlMillis));
+            return true;
+        }
+
+        @Override
+        public void releaseLease(String botId, String owner) {
+            if (owner.equals(owners.get(botId))) {
+                validUntil.put(botId, clock.get());
+            }
+        }
+    }
+}
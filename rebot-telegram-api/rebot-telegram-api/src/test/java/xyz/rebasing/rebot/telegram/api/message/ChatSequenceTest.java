@@ -0,0 +1,123 @@
+/*
+ *   The MIT License (MIT)
+ *
+ *   Copyright (c) 2017 Rebasing.xyz ReBot
+ *
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy of
+ *   this software and associated documentation files (the "Software"), to deal in
+ *   the Software without restriction, including without limitation the rights to
+ *   use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ *   the Software, and to permit persons to whom the Software is furnished to do so,
+ *   subject to the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ *   FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ *   COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ *   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package xyz.rebasing.rebot.telegram.api.message;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ChatSequenceTest {
+
+    private final List<String> started = Collections.synchronizedList(new ArrayList<>());
+
+    @Test
+    public void testMessagesOfAChatRunInOrder() throws Exception {
+        ChatSequence sequence = new ChatSequence(10);
+        CompletableFuture<Void> first = new CompletableFuture<>();
+        CompletionStage<Void> firstDone = sequence.then(1L, work("first", first));
+        CompletionStage<Void> secondDone = sequence.then(1L, work("second", CompletableFuture.completedFuture(null)));
+
+        Assert.assertEquals(List.of("first"), started);
+        Assert.assertEquals(2, sequence.pending());
+        Assert.assertFalse(secondDone.toCompletableFuture().isDone());
+
+        first.complete(null);
+        Assert.assertTrue(firstDone.toCompletableFuture().isDone());
+        Assert.assertTrue(secondDone.toCompletableFuture().isDone());
+        Assert.assertEquals(List.of("first", "second"), started);
+        Assert.assertEquals(0, sequence.pending());
+    }
+
+    @Test
+    public void testChatsDontWaitForEachOther() throws Exception {
+        ChatSequence sequence = new ChatSequence(10);
+        CompletableFuture<Void> first = new CompletableFuture<>();
+        sequence.then(1L, work("chat 1", first));
+        CompletionStage<Void> other = sequence.then(2L, work("chat 2", CompletableFuture.completedFuture(null)));
+
+        Assert.assertEquals(List.of("chat 1", "chat 2"), started);
+        Assert.assertTrue(other.toCompletableFuture().isDone());
+        Assert.assertEquals(1, sequence.pending());
+        first.complete(null);
+    }
+
+    @Test
+    public void testFailedMessageDoesntHoldTheChat() throws Exception {
+        ChatSequence sequence = new ChatSequence(10);
+        CompletableFuture<Void> first = new CompletableFuture<>();
+        CompletionStage<Void> firstDone = sequence.then(1L, work("first", first));
+        sequence.then(1L, () -> {
+            throw new IllegalStateException("not processed");
+        });
+        CompletionStage<Void> thirdDone = sequence.then(1L, work("third", CompletableFuture.completedFuture(null)));
+
+        first.completeExceptionally(new IllegalStateException("failed"));
+        // failures are logged, the returned stages always complete normally
+        Assert.assertFalse(firstDone.toCompletableFuture().isCompletedExceptionally());
+        Assert.assertTrue(thirdDone.toCompletableFuture().isDone());
+        Assert.assertEquals(List.of("first", "third"), started);
+        Assert.assertEquals(0, sequence.pending());
+    }
+
+    @Test
+    public void testCallersWaitBeyondTheLimit() throws Exception {
+        ChatSequence sequence = new ChatSequence(1);
+        CompletableFuture<Void> first = new CompletableFuture<>();
+        sequence.then(1L, work("first", first));
+
+        CountDownLatch submitted = new CountDownLatch(1);
+        Thread caller = new Thread(() -> {
+            try {
+                sequence.then(2L, work("second", CompletableFuture.completedFuture(null)));
+                submitted.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        caller.start();
+        Assert.assertFalse(submitted.await(200, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(List.of("first"), started);
+
+        first.complete(null);
+        Assert.assertTrue(submitted.await(5, TimeUnit.SECONDS));
+        caller.join();
+        Assert.assertEquals(List.of("first", "second"), started);
+        Assert.assertEquals(0, sequence.pending());
+    }
+
+    private Supplier<CompletionStage<Void>> work(String name, CompletionStage<Void> result) {
+        return () -> {
+            started.add(name);
+            return result;
+        };
+    }
+}
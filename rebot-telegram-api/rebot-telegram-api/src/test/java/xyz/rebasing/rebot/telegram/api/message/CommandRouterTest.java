@@ -0,0 +1,114 @@
+/*
+ *   The MIT License (MIT)
+ *
+ *   Copyright (c) 2017 Rebasing.xyz ReBot
+ *
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy of
+ *   this software and associated documentation files (the "Software"), to deal in
+ *   the Software without restriction, including without limitation the rights to
+ *   use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ *   the Software, and to permit persons to whom the Software is furnished to do so,
+ *   subject to the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ *   FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ *   COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ *   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package xyz.rebasing.rebot.telegram.api.message;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import javax.enterprise.inject.Instance;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import xyz.rebasing.rebot.api.domain.Chat;
+import xyz.rebasing.rebot.api.domain.Message;
+import xyz.rebasing.rebot.api.domain.MessageUpdate;
+import xyz.rebasing.rebot.api.spi.CommandProvider;
+import xyz.rebasing.rebot.api.spi.administrative.AdministrativeCommandProvider;
+
+public class CommandRouterTest {
+
+    private static final String BOT = "rebot";
+
+    @Test
+    public void testRouting() {
+        CommandRouter router = router(List.of(administrative("/enable")), List.of(command("/ping"), command("/weather")));
+        Assert.assertEquals("/ping", router.command("/ping").get().name());
+        Assert.assertFalse(router.administrativeCommand("/ping").isPresent());
+        Assert.assertEquals("/enable", router.administrativeCommand("/enable").get().name());
+        Assert.assertFalse(router.command("/enable").isPresent());
+        Assert.assertFalse(router.command(CommandRouter.HELP).isPresent());
+        Assert.assertEquals(List.of("/ping", "/weather"),
+                            router.commands().stream().map(CommandProvider::name).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testCommandName() {
+        CommandRouter router = router(List.of(), List.of(command("/ping")));
+        Assert.assertEquals(Optional.of("/ping"), router.commandName(update("/ping"), BOT));
+        Assert.assertEquals(Optional.of("/ping"), router.commandName(update("/ping@rebot now"), BOT));
+        Assert.assertEquals(Optional.empty(), router.commandName(update("/ping@otherBot"), BOT));
+        Assert.assertEquals(Optional.empty(), router.commandName(update("/ping++"), BOT));
+        Assert.assertEquals(Optional.empty(), router.commandName(update("ping"), BOT));
+        Assert.assertEquals(Optional.empty(), router.commandName(new MessageUpdate(), BOT));
+        // unknown commands are named but not routed
+        Assert.assertEquals(Optional.of("/unknown"), router.commandName(update("/unknown"), BOT));
+        Assert.assertFalse(router.command("/unknown").isPresent());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testDuplicatedCommand() {
+        router(List.of(), List.of(command("/ping"), command("/ping")));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testCommandShadowingAdministrativeCommand() {
+        router(List.of(administrative("/enable")), List.of(command("/enable")));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testCommandShadowingHelp() {
+        router(List.of(), List.of(command(CommandRouter.HELP)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static CommandRouter router(List<AdministrativeCommandProvider> administrative, List<CommandProvider> commands) {
+        CommandRouter router = new CommandRouter();
+        router.administrativeCommand = Mockito.mock(Instance.class);
+        Mockito.when(router.administrativeCommand.iterator()).thenAnswer(i -> administrative.iterator());
+        router.command = Mockito.mock(Instance.class);
+        Mockito.when(router.command.iterator()).thenAnswer(i -> commands.iterator());
+        router.init();
+        return router;
+    }
+
+    private static CommandProvider command(String name) {
+        CommandProvider command = Mockito.mock(CommandProvider.class);
+        Mockito.when(command.name()).thenReturn(name);
+        return command;
+    }
+
+    private static AdministrativeCommandProvider administrative(String name) {
+        AdministrativeCommandProvider command = Mockito.mock(AdministrativeCommandProvider.class);
+        Mockito.when(command.name()).thenReturn(name);
+        return command;
+    }
+
+    private static MessageUpdate update(String text) {
+        MessageUpdate update = new MessageUpdate();
+        update.setMessage(new Message(1L, new Chat(-1L, "chat"), text));
+        return update;
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ *   The MIT License (MIT)
+ *
+ *   Copyright (c) 2017 Rebasing.xyz ReBot
+ *
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy of
+ *   this software and associated documentation files (the "Software"), to deal in
+ *   the Software without restriction, including without limitation the rights to
+ *   use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ *   the Software, and to permit persons to whom the Software is furnished to do so,
+ *   subject to the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ *   FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ *   COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ *   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package xyz.rebasing.rebot.telegram.api.message;
+
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import xyz.rebasing.rebot.api.conf.BotConfig;
+import xyz.rebasing.rebot.api.conf.BotIdentity;
+import xyz.rebasing.rebot.api.spi.PluginProvider;
+import xyz.rebasing.rebot.telegram.api.resilience.Resilience;
+
+public class PluginFanOutTest {
+
+    private static final BotIdentity BOT = new BotIdentity(BotIdentity.DEFAULT, "token", "1");
+
+    private PluginFanOut fanOut;
+    private Resilience resilience;
+
+    @Before
+    public void setUp() throws Exception {
+        BotConfig config = new BotConfig() {
+            @Override
+            public BotIdentity currentBot() {
+                return BOT;
+            }
+
+            @Override
+            public int pluginsThreads() {
+                return 1;
+            }
+
+            @Override
+            public long pluginsDeadline() {
+                return 100L;
+            }
+
+            @Override
+            public int resilienceConcurrency(String name) {
+                return 1;
+            }
+
+            @Override
+            public long resilienceTimeout(String name) {
+                return 10000L;
+            }
+
+            @Override
+            public int resilienceFailures() {
+                return 5;
+            }
+
+            @Override
+            public int resilienceOpen() {
+                return 30;
+            }
+        };
+        resilience = new Resilience();
+        // the config of the resilience is injected by CDI, outside of this package
+        Field field = Resilience.class.getDeclaredField("config");
+        field.setAccessible(true);
+        field.set(resilience, config);
+
+        fanOut = new PluginFanOut();
+        fanOut.config = config;
+        fanOut.resilience = resilience;
+        fanOut.init();
+    }
+
+    @After
+    public void tearDown() {
+        fanOut.destroy();
+    }
+
+    @Test
+    public void testReply() throws Exception {
+        StringBuilder delivered = new StringBuilder();
+        fanOut.run(List.of(plugin("echo")),
+                   (plugin, executor) -> CompletableFuture.supplyAsync(() -> "pong", executor),
+                   (plugin, text) -> delivered.append(text))
+                .toCompletableFuture().get(1, TimeUnit.SECONDS);
+        Assert.assertEquals("pong", delivered.toString());
+        Assert.assertEquals(0L, fanOut.stats().get("cancelled"));
+    }
+
+    @Test
+    public void testHangingPluginIsCancelled() throws Exception {
+        CountDownLatch interrupted = new CountDownLatch(1);
+        StringBuilder delivered = new StringBuilder();
+        fanOut.run(List.of(plugin("hang")), (plugin, executor) -> CompletableFuture.supplyAsync(() -> {
+            try {
+                Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return "late";
+        }, executor), (plugin, text) -> delivered.append(text)).toCompletableFuture().get(1, TimeUnit.SECONDS);
+
+        Assert.assertTrue(interrupted.await(1, TimeUnit.SECONDS));
+        Assert.assertEquals("", delivered.toString());
+        Map<String, Object> stats = fanOut.stats();
+        Assert.assertEquals(1L, stats.get("cancelled"));
+        // the timer counts the timeout right after handing the fallback over
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (!Long.valueOf(1L).equals(resilience.guard("hang").stats().get("timedOut"))
+                && System.nanoTime() - deadline < 0) {
+            Thread.sleep(10L);
+        }
+        Assert.assertEquals(1L, resilience.guard("hang").stats().get("timedOut"));
+
+        // the only thread and the only permit of the plugin are free again
+        fanOut.run(List.of(plugin("hang")),
+                   (plugin, executor) -> CompletableFuture.supplyAsync(() -> "pong", executor),
+                   (plugin, text) -> delivered.append(text))
+                .toCompletableFuture().get(1, TimeUnit.SECONDS);
+        Assert.assertEquals("pong", delivered.toString());
+    }
+
+    private static PluginProvider plugin(String name) {
+        PluginProvider plugin = Mockito.mock(PluginProvider.class);
+        Mockito.when(plugin.name()).thenReturn(name);
+        return plugin;
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ *   The MIT License (MIT)
+ *
+ *   Copyright (c) 2017 Rebasing.xyz ReBot
+ *
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy of
+ *   this software and associated documentation files (the "Software"), to deal in
+ *   the Software without restriction, including without limitation the rights to
+ *   use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ *   the Software, and to permit persons to whom the Software is furnished to do so,
+ *   subject to the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ *   FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ *   COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ *   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package xyz.rebasing.rebot.telegram.api.message;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.enterprise.inject.Instance;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import xyz.rebasing.rebot.api.domain.Chat;
+import xyz.rebasing.rebot.api.domain.Message;
+import xyz.rebasing.rebot.api.domain.MessageUpdate;
+import xyz.rebasing.rebot.api.spi.PluginProvider;
+import xyz.rebasing.rebot.api.spi.PluginTrigger;
+
+public class PluginRouterTest {
+
+    private final List<PluginProvider> plugins = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        plugins.clear();
+    }
+
+    @Test
+    public void testNothingTriggered() {
+        plugin("karma", PluginTrigger.builder().literals("++", "--", "—", "–").edits(false).build());
+        Assert.assertEquals(Collections.emptyList(), triggered(router(), update("good morning", false)));
+    }
+
+    @Test
+    public void testKarmaTriggers() {
+        plugin("karma", PluginTrigger.builder().literals("++", "--", "—", "–").edits(false).build());
+        PluginRouter router = router();
+        Assert.assertEquals(List.of("karma"), triggered(router, update("java++", false)));
+        Assert.assertEquals(List.of("karma"), triggered(router, update("a b-- c", false)));
+        Assert.assertEquals(List.of("karma"), triggered(router, update("java—", false)));
+        Assert.assertEquals(List.of("karma"), triggered(router, update("java–", false)));
+        // a single dash is not a vote
+        Assert.assertEquals(Collections.emptyList(), triggered(router, update("e-mail", false)));
+        // edits are not counted twice
+        Assert.assertEquals(Collections.emptyList(), triggered(router, update("java++", true)));
+    }
+
+    @Test
+    public void testOverlappingLiterals() {
+        plugin("he", PluginTrigger.builder().literals("he").build());
+        plugin("she", PluginTrigger.builder().literals("she").build());
+        plugin("hers", PluginTrigger.builder().literals("hers").build());
+        plugin("his", PluginTrigger.builder().literals("his").build());
+        PluginRouter router = router();
+        // found through the failure links while matching the longer literals
+        Assert.assertEquals(List.of("he", "she", "hers"), triggered(router, update("USHERS", false)));
+        Assert.assertEquals(List.of("he", "his"), triggered(router, update("this hen", false)));
+    }
+
+    @Test
+    public void testPluginWithManyLiterals() {
+        plugin("chuck", PluginTrigger.builder().literals("chuck", "norris").build());
+        plugin("karma", PluginTrigger.builder().literals("++").build());
+        PluginRouter router = router();
+        Assert.assertEquals(List.of("chuck"), triggered(router, update("chuck norris", false)));
+        Assert.assertEquals(List.of("chuck", "karma"), triggered(router, update("norris++", false)));
+    }
+
+    @Test
+    public void testPrefixes() {
+        plugin("sed", PluginTrigger.builder().prefixes("s/").build());
+        PluginRouter router = router();
+        Assert.assertEquals(List.of("sed"), triggered(router, update("s/foo/bar/", false)));
+        Assert.assertEquals(List.of("sed"), triggered(router, update("S/foo/bar/", false)));
+        Assert.assertEquals(Collections.emptyList(), triggered(router, update("yes/no", false)));
+    }
+
+    @Test
+    public void testFieldsOnly() {
+        plugin("welcome", PluginTrigger.builder().fields("new_chat_member", "left_chat_participant").edits(false).build());
+        PluginRouter router = router();
+        MessageUpdate joined = update(null, false);
+        joined.getMessage().setAdditionalProperty("new_chat_member", Collections.emptyMap());
+        Assert.assertEquals(List.of("welcome"), triggered(router, joined));
+        MessageUpdate left = update(null, false);
+        left.getMessage().setAdditionalProperty("left_chat_participant", Collections.emptyMap());
+        Assert.assertEquals(List.of("welcome"), triggered(router, left));
+        Assert.assertEquals(Collections.emptyList(), triggered(router, update("new_chat_member", false)));
+    }
+
+    @Test
+    public void testAlways() {
+        plugin("sed-history", PluginTrigger.always());
+        plugin("karma", PluginTrigger.builder().literals("++").edits(false).build());
+        PluginRouter router = router();
+        Assert.assertEquals(List.of("sed-history"), triggered(router, update("hello", false)));
+        Assert.assertEquals(List.of("sed-history", "karma"), triggered(router, update("hello++", false)));
+        Assert.assertEquals(List.of("sed-history"), triggered(router, update("hello++", true)));
+    }
+
+    private void plugin(String name, PluginTrigger trigger) {
+        plugins.add(new PluginProvider() {
+            @Override
+            public String process(MessageUpdate update, String locale) {
+                return null;
+            }
+
+            @Override
+            public void load() {
+            }
+
+            @Override
+            public String name() {
+                return name;
+            }
+
+            @Override
+            public boolean deleteMessage() {
+                return false;
+            }
+
+            @Override
+            public long deleteMessageTimeout() {
+                return 0;
+            }
+
+            @Override
+            public PluginTrigger trigger() {
+                return trigger;
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private PluginRouter router() {
+        PluginRouter router = new PluginRouter();
+        router.plugin = Mockito.mock(Instance.class);
+        Mockito.when(router.plugin.iterator()).thenAnswer(i -> plugins.iterator());
+        router.init();
+        return router;
+    }
+
+    private static List<String> triggered(PluginRouter router, MessageUpdate update) {
+        return router.triggered(update).stream().map(PluginProvider::name).collect(Collectors.toList());
+    }
+
+    private static MessageUpdate update(String text, boolean edited) {
+        MessageUpdate update = new MessageUpdate();
+        update.setMessage(new Message(1L, new Chat(-1L, "chat"), text));
+        update.setEdited(edited);
+        return update;
+    }
+}
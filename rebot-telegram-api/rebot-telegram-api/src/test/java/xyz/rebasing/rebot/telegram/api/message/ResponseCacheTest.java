@@ -0,0 +1,145 @@
+/*
+ *   The MIT License (MIT)
+ *
+ *   Copyright (c) 2017 Rebasing.xyz ReBot
+ *
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy of
+ *   this software and associated documentation files (the "Software"), to deal in
+ *   the Software without restriction, including without limitation the rights to
+ *   use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ *   the Software, and to permit persons to whom the Software is furnished to do so,
+ *   subject to the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ *   FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ *   COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ *   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package xyz.rebasing.rebot.telegram.api.message;
+
+import java.util.Optional;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import xyz.rebasing.rebot.api.conf.BotConfig;
+import xyz.rebasing.rebot.api.spi.InvalidateResponses;
+
+public class ResponseCacheTest {
+
+    private static final String BOT = "1";
+    private static final String OTHER_BOT = "2";
+
+    private ResponseCache cache;
+    private boolean warmingUp;
+
+    @Before
+    public void setUp() {
+        warmingUp = false;
+        cache = new ResponseCache();
+        cache.config = new BotConfig() {
+            @Override
+            public int responsesSize() {
+                return 2;
+            }
+
+            @Override
+            public boolean isWarmingUp() {
+                return warmingUp;
+            }
+        };
+    }
+
+    @Test
+    public void testPutAndGet() {
+        cache.put(key("/currency", "usd  brl", 1L), "5.0", 60);
+        // arguments are normalized
+        Assert.assertEquals(Optional.of("5.0"), cache.get(key("/currency", " usd brl ", 1L)));
+        // shared by every chat
+        Assert.assertEquals(Optional.of("5.0"), cache.get(key("/currency", "usd brl", 2L)));
+        Assert.assertEquals(Optional.empty(), cache.get(key("/currency", "usd eur", 1L)));
+    }
+
+    @Test
+    public void testNotKept() {
+        cache.put(key("/ping", "", 1L), "pong", 0);
+        cache.put(key("/uptime", "", 1L), null, 60);
+        Assert.assertEquals(Optional.empty(), cache.get(key("/ping", "", 1L)));
+        Assert.assertEquals(Optional.empty(), cache.get(key("/uptime", "", 1L)));
+    }
+
+    @Test
+    public void testComputedAcrossInvalidationIsNotKept() {
+        ResponseCache.Key key = key("/currency", "", 1L);
+        // the response is still being computed when the invalidation happens
+        cache.onInvalidate(InvalidateResponses.commands("/currency"));
+        Assert.assertEquals("stale", cache.put(key, "stale", 60));
+        Assert.assertEquals(Optional.empty(), cache.get(key("/currency", "", 1L)));
+
+        cache.put(key("/currency", "", 1L), "fresh", 60);
+        Assert.assertEquals(Optional.of("fresh"), cache.get(key("/currency", "", 1L)));
+    }
+
+    @Test
+    public void testInvalidateCommand() {
+        cache.put(key("/currency", "", 1L), "5.0", 60);
+        cache.put(key("/ping", "", 1L), "pong", 60);
+        cache.onInvalidate(InvalidateResponses.commands("/currency"));
+        Assert.assertEquals(Optional.empty(), cache.get(key("/currency", "", 1L)));
+        Assert.assertEquals(Optional.of("pong"), cache.get(key("/ping", "", 1L)));
+        cache.onInvalidate(InvalidateResponses.all());
+        Assert.assertEquals(Optional.empty(), cache.get(key("/ping", "", 1L)));
+    }
+
+    @Test
+    public void testInvalidateChat() {
+        cache.put(chatKey(BOT, 1L), "chat 1", 60);
+        cache.put(chatKey(BOT, 2L), "chat 2", 60);
+        cache.onInvalidate(InvalidateResponses.chat(BOT, 1L));
+        Assert.assertEquals(Optional.empty(), cache.get(chatKey(BOT, 1L)));
+        Assert.assertEquals(Optional.of("chat 2"), cache.get(chatKey(BOT, 2L)));
+    }
+
+    @Test
+    public void testPerBot() {
+        // each bot in a group has its own settings, so its own responses
+        cache.put(chatKey(BOT, 1L), "bot 1", 60);
+        Assert.assertEquals(Optional.empty(), cache.get(chatKey(OTHER_BOT, 1L)));
+        cache.put(chatKey(OTHER_BOT, 1L), "bot 2", 60);
+        cache.onInvalidate(InvalidateResponses.chat(BOT, 1L));
+        Assert.assertEquals(Optional.empty(), cache.get(chatKey(BOT, 1L)));
+        Assert.assertEquals(Optional.of("bot 2"), cache.get(chatKey(OTHER_BOT, 1L)));
+    }
+
+    @Test
+    public void testSizeLimit() {
+        cache.put(key("/a", "", 1L), "a", 60);
+        cache.put(key("/b", "", 1L), "b", 60);
+        cache.put(key("/c", "", 1L), "c", 60);
+        Assert.assertEquals(2, cache.stats().get("size"));
+        Assert.assertEquals(1L, cache.stats().get("evicted"));
+        Assert.assertEquals(Optional.of("c"), cache.get(key("/c", "", 1L)));
+    }
+
+    @Test
+    public void testWarmUpIsNotKept() {
+        warmingUp = true;
+        cache.put(key("/ping", "", 1L), "pong", 60);
+        warmingUp = false;
+        Assert.assertEquals(Optional.empty(), cache.get(key("/ping", "", 1L)));
+    }
+
+    private ResponseCache.Key key(String command, String args, long chatId) {
+        return cache.key(command, Optional.of(args), "en_US", BOT, chatId, false);
+    }
+
+    private ResponseCache.Key chatKey(String botId, long chatId) {
+        return cache.key("/faq", Optional.empty(), "en_US", botId, chatId, true);
+    }
+}
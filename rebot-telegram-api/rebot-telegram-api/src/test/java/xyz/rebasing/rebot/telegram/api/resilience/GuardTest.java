@@ -0,0 +1,109 @@
+/*
+ *   The MIT License (MIT)
+ *
+ *   Copyright (c) 2017 Rebasing.xyz ReBot
+ *
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy of
+ *   this software and associated documentation files (the "Software"), to deal in
+ *   the Software without restriction, including without limitation the rights to
+ *   use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ *   the Software, and to permit persons to whom the Software is furnished to do so,
+ *   subject to the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ *   FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ *   COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ *   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package xyz.rebasing.rebot.telegram.api.resilience;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class GuardTest {
+
+    private static final long OPEN_MILLIS = 100L;
+
+    @Test
+    public void testOpensAfterConsecutiveFailures() {
+        Guard guard = new Guard("ping", 4, 1000L, 2, OPEN_MILLIS);
+        call(guard).failed();
+        // a success resets the count
+        call(guard).succeeded();
+        call(guard).failed();
+        Assert.assertEquals(Guard.State.CLOSED, guard.state());
+        call(guard).timedOut();
+        Assert.assertEquals(Guard.State.OPEN, guard.state());
+        Assert.assertNull(guard.tryAcquire());
+        Assert.assertEquals(1L, guard.stats().get("shortCircuited"));
+    }
+
+    @Test
+    public void testClosesAfterSuccessfulTrial() throws InterruptedException {
+        Guard guard = open();
+        Thread.sleep(OPEN_MILLIS + 50L);
+        Guard.Permit trial = guard.tryAcquire();
+        Assert.assertNotNull(trial);
+        Assert.assertEquals(Guard.State.HALF_OPEN, guard.state());
+        // a single trial call at a time
+        Assert.assertNull(guard.tryAcquire());
+        trial.release();
+        guard.succeeded();
+        Assert.assertEquals(Guard.State.CLOSED, guard.state());
+        Assert.assertNotNull(guard.tryAcquire());
+    }
+
+    @Test
+    public void testOpensAgainAfterFailedTrial() throws InterruptedException {
+        Guard guard = open();
+        Thread.sleep(OPEN_MILLIS + 50L);
+        Guard.Permit trial = guard.tryAcquire();
+        Assert.assertNotNull(trial);
+        trial.release();
+        guard.failed();
+        Assert.assertEquals(Guard.State.OPEN, guard.state());
+        Assert.assertNull(guard.tryAcquire());
+    }
+
+    @Test
+    public void testBulkhead() {
+        Guard guard = new Guard("ping", 2, 1000L, 5, OPEN_MILLIS);
+        Guard.Permit first = guard.tryAcquire();
+        Guard.Permit second = guard.tryAcquire();
+        Assert.assertNotNull(first);
+        Assert.assertNotNull(second);
+        Assert.assertNull(guard.tryAcquire());
+        Assert.assertEquals(1L, guard.stats().get("rejected"));
+        Assert.assertEquals(2, guard.stats().get("inFlight"));
+
+        // releasing twice gives a single slot back
+        first.release();
+        first.release();
+        Assert.assertEquals(1, guard.stats().get("inFlight"));
+        Assert.assertNotNull(guard.tryAcquire());
+        Assert.assertNull(guard.tryAcquire());
+        // rejections by the bulkhead don't open the breaker
+        Assert.assertEquals(Guard.State.CLOSED, guard.state());
+    }
+
+    private static Guard open() {
+        Guard guard = new Guard("ping", 4, 1000L, 1, OPEN_MILLIS);
+        call(guard).failed();
+        Assert.assertEquals(Guard.State.OPEN, guard.state());
+        return guard;
+    }
+
+    // the permit is released right away, only the outcome matters
+    private static Guard call(Guard guard) {
+        Guard.Permit permit = guard.tryAcquire();
+        Assert.assertNotNull(permit);
+        permit.release();
+        return guard;
+    }
+}
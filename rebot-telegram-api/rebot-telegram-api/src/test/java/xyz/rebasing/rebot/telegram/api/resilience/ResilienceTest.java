@@ -0,0 +1,128 @@
+/*
+ *   The MIT License (MIT)
+ *
+ *   Copyright (c) 2017 Rebasing.xyz ReBot
+ *
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy of
+ *   this software and associated documentation files (the "Software"), to deal in
+ *   the Software without restriction, including without limitation the rights to
+ *   use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ *   the Software, and to permit persons to whom the Software is furnished to do so,
+ *   subject to the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ *   FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ *   COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ *   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package xyz.rebasing.rebot.telegram.api.resilience;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import xyz.rebasing.rebot.api.conf.BotConfig;
+
+public class ResilienceTest {
+
+    private Resilience resilience;
+
+    @Before
+    public void setUp() {
+        resilience = new Resilience();
+        resilience.config = new BotConfig() {
+            @Override
+            public int resilienceConcurrency(String name) {
+                return 1;
+            }
+
+            @Override
+            public long resilienceTimeout(String name) {
+                return 100L;
+            }
+
+            @Override
+            public int resilienceFailures() {
+                return 2;
+            }
+
+            @Override
+            public int resilienceOpen() {
+                return 30;
+            }
+        };
+    }
+
+    @After
+    public void tearDown() {
+        resilience.destroy();
+    }
+
+    @Test
+    public void testResult() throws Exception {
+        String result = resilience.<String>callAsync("/ping", Runnable::run,
+                                                     e -> CompletableFuture.completedFuture("pong"), () -> "fallback")
+                .toCompletableFuture().get(1, TimeUnit.SECONDS);
+        Assert.assertEquals("pong", result);
+        Assert.assertEquals(1L, resilience.guard("ping").stats().get("succeeded"));
+    }
+
+    @Test
+    public void testBreakerOpensOnFailuresAndTimeouts() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        Assert.assertEquals("fallback", call(e -> {
+            calls.incrementAndGet();
+            throw new IllegalStateException("down");
+        }));
+        // never completes, the caller gets the fallback after the timeout
+        Assert.assertEquals("fallback", call(e -> {
+            calls.incrementAndGet();
+            return new CompletableFuture<>();
+        }));
+        // the timer counts the timeout right after handing the fallback over
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (resilience.guard("ping").state() != Guard.State.OPEN && System.nanoTime() - deadline < 0) {
+            Thread.sleep(10L);
+        }
+        Assert.assertEquals(Guard.State.OPEN, resilience.guard("ping").state());
+        Assert.assertEquals(1L, resilience.guard("ping").stats().get("failed"));
+        Assert.assertEquals(1L, resilience.guard("ping").stats().get("timedOut"));
+
+        // rejected without being called while open
+        Assert.assertEquals("fallback", call(e -> {
+            calls.incrementAndGet();
+            return CompletableFuture.completedFuture("pong");
+        }));
+        Assert.assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void testTimedOutCallKeepsItsPermit() throws Exception {
+        CompletableFuture<String> hanging = new CompletableFuture<>();
+        Assert.assertEquals("fallback", call(e -> hanging));
+        // the hanging call still holds the only slot
+        Assert.assertEquals("fallback", call(e -> CompletableFuture.completedFuture("pong")));
+        Assert.assertEquals(1L, resilience.guard("ping").stats().get("rejected"));
+
+        hanging.complete("late");
+        Assert.assertEquals("pong", call(e -> CompletableFuture.completedFuture("pong")));
+    }
+
+    private String call(Function<Executor, CompletionStage<String>> call) throws Exception {
+        return resilience.callAsync("/ping", Runnable::run, call, () -> "fallback")
+                .toCompletableFuture().get(1, TimeUnit.SECONDS);
+    }
+}
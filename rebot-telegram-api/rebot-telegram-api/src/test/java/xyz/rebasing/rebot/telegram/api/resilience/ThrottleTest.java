@@ -0,0 +1,121 @@
+/*
+ *   The MIT License (MIT)
+ *
+ *   Copyright (c) 2017 Rebasing.xyz ReBot
+ *
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy of
+ *   this software and associated documentation files (the "Software"), to deal in
+ *   the Software without restriction, including without limitation the rights to
+ *   use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ *   the Software, and to permit persons to whom the Software is furnished to do so,
+ *   subject to the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be included in all
+ *   copies or substantial portions of the Software.
+ *
+ *   THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *   IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ *   FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ *   COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ *   IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ *   CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package xyz.rebasing.rebot.telegram.api.resilience;
+
+import org.junit.Assert;
+import org.junit.Test;
+import xyz.rebasing.rebot.api.conf.BotConfig;
+
+public class ThrottleTest {
+
+    private static final long CHAT = -1L;
+
+    @Test
+    public void testBurst() {
+        // a token per second, three in a row
+        Throttle throttle = throttle(60, 3, 0, 0);
+        Assert.assertEquals(Throttle.Decision.ALLOWED, throttle.acquire(CHAT, 1L, "/ping"));
+        Assert.assertEquals(Throttle.Decision.ALLOWED, throttle.acquire(CHAT, 1L, "/ping"));
+        Assert.assertEquals(Throttle.Decision.ALLOWED, throttle.acquire(CHAT, 1L, "/ping"));
+        Assert.assertEquals(Throttle.Decision.WARN, throttle.acquire(CHAT, 1L, "/ping"));
+        Assert.assertEquals(Throttle.Decision.SILENT, throttle.acquire(CHAT, 1L, "/ping"));
+        // other users and chats have their own buckets
+        Assert.assertEquals(Throttle.Decision.ALLOWED, throttle.acquire(CHAT, 2L, "/ping"));
+        Assert.assertEquals(Throttle.Decision.ALLOWED, throttle.acquire(-2L, 1L, "/ping"));
+        Assert.assertEquals(5L, throttle.stats().get("allowed"));
+        Assert.assertEquals(2L, throttle.stats().get("throttled"));
+        Assert.assertEquals(1L, throttle.stats().get("warned"));
+    }
+
+    @Test
+    public void testRefill() throws InterruptedException {
+        // a token every 100ms, one at a time
+        Throttle throttle = throttle(600, 1, 0, 0);
+        Assert.assertEquals(Throttle.Decision.ALLOWED, throttle.acquire(CHAT, 1L, "/ping"));
+        Assert.assertEquals(Throttle.Decision.WARN, throttle.acquire(CHAT, 1L, "/ping"));
+        Thread.sleep(150L);
+        Assert.assertEquals(Throttle.Decision.ALLOWED, throttle.acquire(CHAT, 1L, "/ping"));
+        // warned again once throttled after an allowed call
+        Assert.assertEquals(Throttle.Decision.WARN, throttle.acquire(CHAT, 1L, "/ping"));
+    }
+
+    @Test
+    public void testCommandBucket() {
+        Throttle throttle = throttle(0, 0, 60, 2);
+        Assert.assertEquals(Throttle.Decision.ALLOWED, throttle.acquire(CHAT, 1L, "/ping"));
+        Assert.assertEquals(Throttle.Decision.ALLOWED, throttle.acquire(CHAT, 2L, "ping"));
+        // shared by every user of the chat
+        Assert.assertEquals(Throttle.Decision.WARN, throttle.acquire(CHAT, 3L, "/ping"));
+        Assert.assertEquals(Throttle.Decision.ALLOWED, throttle.acquire(CHAT, 3L, "/weather"));
+    }
+
+    @Test
+    public void testEmptyUserBucketKeepsCommandTokens() {
+        Throttle throttle = throttle(60, 1, 60, 2);
+        Assert.assertEquals(Throttle.Decision.ALLOWED, throttle.acquire(CHAT, 1L, "/ping"));
+        Assert.assertEquals(Throttle.Decision.WARN, throttle.acquire(CHAT, 1L, "/ping"));
+        Assert.assertEquals(Throttle.Decision.ALLOWED, throttle.acquire(CHAT, 2L, "/ping"));
+    }
+
+    @Test
+    public void testUnlimited() {
+        Throttle throttle = throttle(0, 0, 0, 0);
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals(Throttle.Decision.ALLOWED, throttle.acquire(CHAT, 1L, "/ping"));
+        }
+        Assert.assertEquals(0, throttle.stats().get("buckets"));
+    }
+
+    private static Throttle throttle(int userRate, int userBurst, int commandRate, int commandBurst) {
+        Throttle throttle = new Throttle();
+        throttle.config = new BotConfig() {
+            @Override
+            public int throttleUserRate() {
+                return userRate;
+            }
+
+            @Override
+            public int throttleUserBurst() {
+                return userBurst;
+            }
+
+            @Override
+            public int throttleCommandRate(String name) {
+                return commandRate;
+            }
+
+            @Override
+            public int throttleCommandBurst(String name) {
+                return commandBurst;
+            }
+
+            @Override
+            public boolean isWarmingUp() {
+                return false;
+            }
+        };
+        throttle.init();
+        return throttle;
+    }
+}
@@ -23,6 +23,8 @@
 
 package xyz.rebasing.rebot;
 
+import java.util.concurrent.CompletionStage;
+
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 
@@ -37,7 +39,7 @@ public class ReBot implements ReBotLongPoolingBot {
     IncomeMessageProcessor msg;
 
     @Override
-    public void onUpdateReceived(MessageUpdate update) {
-        msg.process(update);
+    public CompletionStage<Void> onUpdateReceived(MessageUpdate update) {
+        return msg.process(update);
     }
 }
\ No newline at end of file
@@ -37,6 +37,7 @@ import xyz.rebasing.rebot.api.spi.CommandProvider;
 import xyz.rebasing.rebot.api.spi.PluginProvider;
 import xyz.rebasing.rebot.api.spi.administrative.AdministrativeCommandProvider;
 import xyz.rebasing.rebot.telegram.api.UpdatesReceiver;
+import xyz.rebasing.rebot.telegram.api.WarmUp;
 
 @ApplicationScoped
 public class Startup {
@@ -55,6 +56,9 @@ public class Startup {
     @Inject
     UpdatesReceiver receiver;
 
+    @Inject
+    WarmUp warmUp;
+
     void onStart(@Observes StartupEvent ev) {
         log.info("ReBot is starting...");
         // Loading commands
@@ -62,6 +66,8 @@ public class Startup {
         administrativeCommand.forEach(command -> command.load());
         // loading plugins
         plugins.forEach(plugin -> plugin.load());
+        // the first updates are only received once the processing path is warm, if enabled
+        warmUp.run();
         receiver.start();
     }
 